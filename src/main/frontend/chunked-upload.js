@@ -0,0 +1,135 @@
+/**
+ * File picker that sends the chosen file to /api/uploads in chunks, several at a time, and
+ * resumes where it left off if the page is reloaded or the connection drops. Fires
+ * "upload-complete" with the upload id once the server has the whole file.
+ */
+class ChunkedUpload extends HTMLElement {
+
+  static get observedAttributes() {
+    return ['accept'];
+  }
+
+  constructor() {
+    super();
+    this.parallel = 3;
+    this.maxAttempts = 5;
+    this.attachShadow({ mode: 'open' }).innerHTML = `
+      <style>
+        :host { display: block; }
+        progress { width: 100%; }
+        .status { font-size: var(--lumo-font-size-s, 0.875rem); color: var(--lumo-secondary-text-color, #666); }
+      </style>
+      <input type="file">
+      <progress max="1" value="0" hidden></progress>
+      <div class="status"></div>`;
+    this.input = this.shadowRoot.querySelector('input');
+    this.progress = this.shadowRoot.querySelector('progress');
+    this.status = this.shadowRoot.querySelector('.status');
+    this.input.addEventListener('change', () => {
+      if (this.input.files.length > 0) {
+        this.upload(this.input.files[0]).catch(error => this.fail(error));
+      }
+    });
+  }
+
+  attributeChangedCallback(name, oldValue, newValue) {
+    if (name === 'accept') {
+      this.input.accept = newValue || '';
+    }
+  }
+
+  headers(extra) {
+    const headers = Object.assign({}, extra);
+    if (this.csrfHeader && this.csrfToken) {
+      headers[this.csrfHeader] = this.csrfToken;
+    }
+    return headers;
+  }
+
+  async request(method, path, body, contentType) {
+    const response = await fetch('/api/uploads' + path, {
+      method,
+      body,
+      credentials: 'same-origin',
+      headers: this.headers(contentType ? { 'Content-Type': contentType } : {})
+    });
+    if (!response.ok) {
+      const error = new Error(`${method} ${path} failed: ${response.status} ${await response.text()}`);
+      error.status = response.status;
+      throw error;
+    }
+    return response.status === 204 ? null : response.json();
+  }
+
+  async upload(file) {
+    const resumeKey = `chunked-upload:${file.name}:${file.size}:${file.lastModified}`;
+    let upload = null;
+    const previous = localStorage.getItem(resumeKey);
+    if (previous) {
+      upload = await this.request('GET', '/' + previous).catch(() => null);
+    }
+    if (!upload) {
+      upload = await this.request('POST', '', JSON.stringify({
+        fileName: file.name,
+        contentType: file.type || 'application/octet-stream',
+        size: file.size
+      }), 'application/json');
+      localStorage.setItem(resumeKey, upload.id);
+    }
+
+    const received = new Set(upload.received);
+    const pending = [];
+    for (let index = 0; index < upload.chunkCount; index++) {
+      if (!received.has(index)) {
+        pending.push(index);
+      }
+    }
+    let done = received.size;
+    this.showProgress(done, upload.chunkCount);
+
+    const worker = async () => {
+      while (pending.length > 0) {
+        const index = pending.shift();
+        const start = index * upload.chunkSize;
+        const chunk = file.slice(start, Math.min(file.size, start + upload.chunkSize));
+        await this.sendChunk(upload.id, index, chunk);
+        this.showProgress(++done, upload.chunkCount);
+      }
+    };
+    await Promise.all(Array.from({ length: this.parallel }, worker));
+
+    const completed = await this.request('POST', `/${upload.id}/complete`);
+    localStorage.removeItem(resumeKey);
+    this.status.textContent = `${file.name} uploaded`;
+    this.dispatchEvent(new CustomEvent('upload-complete', {
+      detail: { uploadId: completed.id, fileName: completed.fileName }
+    }));
+  }
+
+  async sendChunk(id, index, chunk) {
+    for (let attempt = 1; ; attempt++) {
+      try {
+        await this.request('PUT', `/${id}/chunks/${index}`, chunk, 'application/octet-stream');
+        return;
+      } catch (error) {
+        if (attempt >= this.maxAttempts || (error.status >= 400 && error.status < 500)) {
+          throw error;
+        }
+        await new Promise(resolve => setTimeout(resolve, 500 * 2 ** attempt));
+      }
+    }
+  }
+
+  showProgress(done, total) {
+    this.progress.hidden = false;
+    this.progress.value = total === 0 ? 1 : done / total;
+    this.status.textContent = `Uploading: ${Math.round(this.progress.value * 100)}%`;
+  }
+
+  fail(error) {
+    this.status.textContent = 'Upload interrupted. Choose the same file again to resume.';
+    this.dispatchEvent(new CustomEvent('upload-failed', { detail: { message: String(error.message || error) } }));
+  }
+}
+
+customElements.define('chunked-upload', ChunkedUpload);
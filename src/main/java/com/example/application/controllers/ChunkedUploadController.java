@@ -0,0 +1,103 @@
+package com.example.application.controllers;
+
+import com.example.application.services.ChunkedUploadService;
+import com.example.application.services.ChunkedUploadSession;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.BitSet;
+
+/**
+ * Resumable chunked upload protocol used by the {@code chunked-upload} web component:
+ *
+ * <ol>
+ *   <li>{@code POST /api/uploads} with the file name, type and size starts an upload and returns
+ *       its id and chunk size.</li>
+ *   <li>{@code PUT /api/uploads/{id}/chunks/{index}} sends one chunk as the raw request body.
+ *       Chunks may be sent in any order and concurrently.</li>
+ *   <li>{@code GET /api/uploads/{id}} reports which chunks have arrived, so an interrupted upload
+ *       can send only the rest.</li>
+ *   <li>{@code POST /api/uploads/{id}/complete} assembles the file once every chunk is in.</li>
+ * </ol>
+ *
+ * The completed upload is then claimed by the view that saves the material.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class ChunkedUploadController {
+
+    public record StartRequest(String fileName, String contentType, long size) {
+    }
+
+    public record UploadStatus(String id, String fileName, long size, int chunkSize, int chunkCount,
+                               int[] received, boolean complete) {
+
+        static UploadStatus of(ChunkedUploadSession session) {
+            BitSet received = session.getReceived();
+            return new UploadStatus(session.getId(), session.getFileName(), session.getSize(),
+                    session.getChunkSize(), session.getChunkCount(), received.stream().toArray(), session.isComplete());
+        }
+    }
+
+    @Autowired
+    private ChunkedUploadService uploadService;
+
+    @PostMapping
+    public ResponseEntity<UploadStatus> start(@RequestBody StartRequest start, Principal principal) throws IOException {
+        ChunkedUploadSession session = uploadService.start(principal.getName(), start.fileName(), start.contentType(), start.size());
+        return ResponseEntity.status(HttpStatus.CREATED).body(UploadStatus.of(session));
+    }
+
+    @GetMapping("/{id}")
+    public UploadStatus status(@PathVariable String id, Principal principal) {
+        return UploadStatus.of(session(id, principal));
+    }
+
+    @PutMapping(value = "/{id}/chunks/{index}", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<Void> chunk(@PathVariable String id, @PathVariable int index, HttpServletRequest request,
+                                      Principal principal) throws IOException {
+        uploadService.writeChunk(session(id, principal), index, request.getInputStream());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/{id}/complete")
+    public UploadStatus complete(@PathVariable String id, Principal principal) throws IOException {
+        return UploadStatus.of(uploadService.complete(session(id, principal)));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abort(@PathVariable String id, Principal principal) {
+        uploadService.abort(session(id, principal));
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException ex) {
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<String> conflict(IllegalStateException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    private ChunkedUploadSession session(String id, Principal principal) {
+        return uploadService.find(id, principal.getName())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.application.controllers;
+
+import com.example.application.services.DownloadBandwidthScheduler;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletRequestEvent;
+import jakarta.servlet.ServletRequestListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Closes a download's {@link DownloadBandwidthScheduler.Stream} once the container has completed
+ * the request, rather than when the controller returns. A file handed to sendfile is only sent
+ * after that, so closing the stream in the controller would free the user's slot before any byte
+ * had gone out.
+ *
+ * Tomcat may still be finishing a large sendfile transfer when it completes the request, so for
+ * unpaced downloads the slot bounds a user's concurrent requests rather than the exact time their
+ * bytes are on the wire.
+ */
+@Component
+class DownloadSlotReleaser implements ServletRequestListener {
+
+    private static final String STREAM_ATTR = DownloadSlotReleaser.class.getName() + ".stream";
+
+    /**
+     * Arranges for {@code stream} to be closed when {@code request} completes.
+     */
+    static void closeOnCompletion(ServletRequest request, DownloadBandwidthScheduler.Stream stream) {
+        request.setAttribute(STREAM_ATTR, stream);
+    }
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent event) {
+        if (event.getServletRequest().getAttribute(STREAM_ATTR) instanceof DownloadBandwidthScheduler.Stream stream) {
+            stream.close();
+        }
+    }
+}
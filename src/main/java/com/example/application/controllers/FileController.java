@@ -1,41 +1,219 @@
 package com.example.application.controllers;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import com.example.application.data.LearningMaterial;
+import com.example.application.services.DownloadBandwidthScheduler;
+import com.example.application.services.HotFileCache;
+import com.example.application.services.LearningMaterialService;
+import com.example.application.services.MaterialArchiveService;
+import com.example.application.services.MaterialCompressor;
+import com.example.application.storage.MaterialStore;
+import com.example.application.storage.StoredFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import java.net.MalformedURLException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 @Controller
 public class FileController {
 
-    private final Path fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
+    private static final Pattern CONTENT_KEY = Pattern.compile("[0-9a-f]{64}");
 
-    @GetMapping("/download/{fileName:.+}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String fileName) {
+    // The bytes behind a stored name never change, so clients and proxies may keep them for good
+    private static final String CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365))
+            .cachePublic()
+            .immutable()
+            .getHeaderValue();
+
+    @Autowired
+    private LearningMaterialService materialService;
+
+    @Autowired
+    private MaterialStore materialStore;
+
+    @Autowired
+    private DownloadBandwidthScheduler bandwidthScheduler;
+
+    @Autowired
+    private HotFileCache hotFileCache;
+
+    @Autowired
+    private MaterialArchiveService archiveService;
+
+    /**
+     * Sends the file of a material. The URL names the storage key as well as the material, so a
+     * material's new upload gets a new URL and the response can be cached as immutable. Identical
+     * uploads share a key, so the material decides the name and type the file is sent with.
+     */
+    @GetMapping("/download/{materialId}/{fileName:.+}")
+    public void downloadFile(@PathVariable Long materialId, @PathVariable String fileName,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<LearningMaterial> material = materialService.findById(materialId)
+                .filter(candidate -> fileName.equals(candidate.getFilePath()));
+        Optional<StoredFile> stored;
         try {
-            Path filePath = fileStorageLocation.resolve(fileName).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            if (resource.exists()) {
-                String contentType = "application/octet-stream";
-                
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
+            stored = material.isEmpty() ? Optional.empty() : materialStore.stat(fileName);
+        } catch (IllegalArgumentException ex) {
+            stored = Optional.empty();
+        }
+        if (stored.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        StoredFile file = stored.get();
+
+        // Content-addressed files may have a precompressed variant, sent when the client accepts it
+        Optional<StoredFile> gzipped = Optional.empty();
+        if (CONTENT_KEY.matcher(fileName).matches()) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (acceptsGzip(request)) {
+                gzipped = materialStore.stat(MaterialCompressor.gzipKey(fileName));
+            }
+        }
+        String etag = entityTag(file, gzipped.isPresent());
+        if (gzipped.isPresent()) {
+            file = gzipped.get();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        if (new ServletWebRequest(request, response).checkNotModified(etag, file.lastModified())) {
+            return;
+        }
+
+        String downloadName = material.map(LearningMaterial::getFileName).orElse(fileName);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(downloadName, StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        Optional<DownloadBandwidthScheduler.Stream> slot = bandwidthScheduler.open(downloader(request));
+        if (slot.isEmpty()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "10");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        // The body may still be going out through sendfile after this returns
+        DownloadSlotReleaser.closeOnCompletion(request, slot.get());
+        // HEAD requests don't need the contents, and shouldn't count towards making a file hot
+        try (HotFileCache.Lease cached = "HEAD".equals(request.getMethod()) ? null : hotFileCache.get(file).orElse(null)) {
+            FileRangeSender.send(request, response, materialStore, file, contentType(material, downloadName).toString(), etag,
+                    new FileRangeSender.Delivery(slot.get(), cached));
+        }
+    }
+
+    /**
+     * All materials for a subject, or every material if no subject is given, as one ZIP archive
+     * built while it is sent. The archive is written on the request thread, like single downloads,
+     * so a large or paced archive is not cut off by the container's async timeout.
+     */
+    @GetMapping("/download/archive")
+    public void downloadArchive(@RequestParam(required = false) String subject,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<LearningMaterial> materials = materialService.findMaterialsBySubject(subject);
+        Optional<DownloadBandwidthScheduler.Stream> slot = bandwidthScheduler.open(downloader(request));
+        if (slot.isEmpty()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "10");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        try (DownloadBandwidthScheduler.Stream stream = slot.get()) {
+            String archiveName = (subject == null || subject.isBlank() || subject.equals("All Subjects") ? "all" : subject)
+                    + "-materials.zip";
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename(archiveName, StandardCharsets.UTF_8)
+                    .build()
+                    .toString());
+            archiveService.writeArchive(materials, stream.wrap(response.getOutputStream()));
+        }
+    }
+
+    /**
+     * Downloads are shared out per signed-in user, or per address for anything unauthenticated.
+     */
+    private static String downloader(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? "user:" + principal.getName() : "addr:" + request.getRemoteAddr();
+    }
+
+    /**
+     * Files stored under their SHA-256 use it as the entity tag, with a suffix for the gzip variant
+     * since it is a different representation. Older files, stored under a unique generated name, are
+     * tagged by size and modification time.
+     */
+    private String entityTag(StoredFile file, boolean gzipped) {
+        if (CONTENT_KEY.matcher(file.key()).matches()) {
+            return "\"" + file.key() + (gzipped ? "-gzip" : "") + "\"";
+        }
+        return "\"" + Long.toHexString(file.size()) + "-" + Long.toHexString(file.lastModified()) + "\"";
+    }
+
+    /**
+     * True if {@code Accept-Encoding} allows gzip, either by name or through {@code *}, with a
+     * non-zero quality.
+     */
+    static boolean acceptsGzip(HttpServletRequest request) {
+        Boolean wildcard = null;
+        for (Enumeration<String> headers = request.getHeaders(HttpHeaders.ACCEPT_ENCODING); headers.hasMoreElements(); ) {
+            for (String coding : headers.nextElement().split(",")) {
+                String[] parts = coding.split(";");
+                String name = parts[0].trim().toLowerCase();
+                boolean acceptable = true;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim().toLowerCase();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            acceptable = Double.parseDouble(parameter.substring(2)) > 0;
+                        } catch (NumberFormatException ex) {
+                            acceptable = false;
+                        }
+                    }
+                }
+                if (name.equals("gzip") || name.equals("x-gzip")) {
+                    return acceptable;
+                }
+                if (name.equals("*")) {
+                    wildcard = acceptable;
+                }
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    /**
+     * Uses the type recorded at upload time, falling back to a guess from the file name.
+     */
+    private MediaType contentType(Optional<LearningMaterial> material, String downloadName) {
+        String fileType = material.map(LearningMaterial::getFileType).orElse(null);
+        if (fileType != null && !fileType.isBlank()) {
+            try {
+                MediaType type = MediaType.parseMediaType(fileType);
+                if (type.isConcrete()) {
+                    return type;
+                }
+            } catch (InvalidMediaTypeException ex) {
+                // The browser sent something unusable; guess from the name instead
             }
-        } catch (MalformedURLException ex) {
-            return ResponseEntity.badRequest().build();
         }
+        return MediaTypeFactory.getMediaType(downloadName).orElse(MediaType.APPLICATION_OCTET_STREAM);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,275 @@
+package com.example.application.controllers;
+
+import com.example.application.services.DownloadBandwidthScheduler;
+import com.example.application.services.HotFileCache;
+import com.example.application.storage.MaterialStore;
+import com.example.application.storage.StoredFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Writes a stored file, or byte ranges of it, to a servlet response.
+ *
+ * When the store keeps the file locally, full bodies and single ranges are handed to Tomcat's
+ * sendfile if the connector supports it, so the bytes never enter the JVM. Otherwise, and for
+ * multi-range responses, the file is copied to the response with {@link FileChannel#transferTo}.
+ * The servlet response is only an {@link OutputStream}, so the bytes still pass through a small
+ * heap buffer on their way; this just saves a read loop of our own. Files in a remote store are
+ * streamed range by range. Paced downloads are always copied through their
+ * {@link DownloadBandwidthScheduler.Stream}, since sendfile would bypass the pacing; an unpaced
+ * stream must stay open until the request completes, as sendfile only runs after this returns.
+ * Files already in memory are written from there.
+ */
+final class FileRangeSender {
+
+    static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private FileRangeSender() {
+    }
+
+    /**
+     * Sends {@code file} from {@code store} honouring the request's {@code Range} header. Any headers the caller wants
+     * on the response (disposition, validators) must be set before calling this.
+     *
+     * @param etag the strong entity tag of the file, quoted, used to evaluate {@code If-Range};
+     *        may be null
+     */
+    static void send(HttpServletRequest request, HttpServletResponse response, MaterialStore store, StoredFile file,
+                     String contentType, String etag) throws IOException {
+        send(request, response, store, file, contentType, etag, new Delivery(null, null));
+    }
+
+    /**
+     * Like {@link #send(HttpServletRequest, HttpServletResponse, MaterialStore, StoredFile, String, String)},
+     * with the body written as {@code delivery} says.
+     */
+    static void send(HttpServletRequest request, HttpServletResponse response, MaterialStore store, StoredFile file,
+                     String contentType, String etag, Delivery delivery) throws IOException {
+        Body body = new Body(request, response, delivery);
+        long length = file.size();
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        List<HttpRange> ranges;
+        try {
+            ranges = parseRanges(request, length, etag, file.lastModified());
+        } catch (IllegalArgumentException ex) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (!"HEAD".equals(request.getMethod())) {
+                sendRegion(body, store, file, 0, length);
+            }
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(length);
+            long end = ranges.get(0).getRangeEnd(length);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            response.setContentLengthLong(end - start + 1);
+            if (!"HEAD".equals(request.getMethod())) {
+                sendRegion(body, store, file, start, end - start + 1);
+            }
+            return;
+        }
+
+        sendMultipart(body, store, file, contentType, ranges, length);
+    }
+
+    /**
+     * Returns the requested ranges, or an empty list when the whole file should be sent.
+     *
+     * @throws IllegalArgumentException if the header is malformed, asks for too many ranges,
+     *         starts past the end of the file or adds up to more than the file itself
+     */
+    private static List<HttpRange> parseRanges(HttpServletRequest request, long length, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isIfRangeSatisfied(request, etag, lastModified)) {
+            return List.of();
+        }
+        List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+        long total = 0;
+        for (HttpRange range : ranges) {
+            if (length == 0 || range.getRangeStart(length) >= length) {
+                throw new IllegalArgumentException("Range starts past the end of the file");
+            }
+            total += range.getRangeEnd(length) - range.getRangeStart(length) + 1;
+        }
+        if (total > length) {
+            throw new IllegalArgumentException("Requested ranges exceed the file length");
+        }
+        return ranges;
+    }
+
+    /**
+     * A conditional range request only gets partial content while the representation it refers to
+     * is unchanged. An entity tag must match strongly, so weak tags never do, and a date must be
+     * exactly the last modification time, to the second.
+     */
+    private static boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return lastModified / 1000 == request.getDateHeader(HttpHeaders.IF_RANGE) / 1000;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private static void sendRegion(Body body, MaterialStore store, StoredFile file, long position, long count) throws IOException {
+        HttpServletRequest request = body.request();
+        Delivery delivery = body.delivery();
+        if (delivery.cached() != null) {
+            copyRegion(delivery.cached(), position, count, body.outputStream());
+            return;
+        }
+        Optional<Path> localFile = store.localPath(file.key());
+        boolean paced = delivery.stream() != null && delivery.stream().isPaced();
+        if (localFile.isPresent() && !paced && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, localFile.get().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, position);
+            request.setAttribute(SENDFILE_END_ATTR, position + count);
+            if (delivery.stream() != null) {
+                delivery.stream().recordSent(count);
+            }
+            return;
+        }
+        copyRegion(store, file, localFile, position, count, body.outputStream());
+    }
+
+    private static void sendMultipart(Body body, MaterialStore store, StoredFile file, String contentType,
+                                      List<HttpRange> ranges, long length) throws IOException {
+        HttpServletRequest request = body.request();
+        HttpServletResponse response = body.response();
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + (end - start + 1);
+        }
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += trailer.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        OutputStream out = body.outputStream();
+        HotFileCache.Lease cached = body.delivery().cached();
+        Optional<Path> localFile = cached != null ? Optional.empty() : store.localPath(file.key());
+        for (int i = 0; i < ranges.size(); i++) {
+            long start = ranges.get(i).getRangeStart(length);
+            long end = ranges.get(i).getRangeEnd(length);
+            out.write(partHeaders.get(i));
+            if (cached != null) {
+                copyRegion(cached, start, end - start + 1, out);
+            } else {
+                copyRegion(store, file, localFile, start, end - start + 1, out);
+            }
+        }
+        out.write(trailer);
+    }
+
+    private static void copyRegion(MaterialStore store, StoredFile file, Optional<Path> localFile,
+                                   long position, long count, OutputStream out) throws IOException {
+        if (localFile.isPresent()) {
+            try (FileChannel channel = FileChannel.open(localFile.get(), StandardOpenOption.READ)) {
+                transfer(channel, position, count, Channels.newChannel(out));
+            }
+            return;
+        }
+        try (InputStream in = store.open(file.key(), position, count)) {
+            if (in.transferTo(out) != count) {
+                throw new IOException("File ended before " + count + " bytes could be sent");
+            }
+        }
+    }
+
+    private static void copyRegion(HotFileCache.Lease cached, long position, long count, OutputStream out) throws IOException {
+        ByteBuffer region = cached.content().duplicate();
+        region.limit((int) (position + count)).position((int) position);
+        WritableByteChannel target = Channels.newChannel(out);
+        while (region.hasRemaining()) {
+            target.write(region);
+        }
+        cached.recordServed(count);
+    }
+
+    /**
+     * How a download is written.
+     *
+     * @param stream the download stream the body is accounted to, and written through when it is
+     *        paced, or null
+     * @param cached the file's cached contents if they are already in memory, or null
+     */
+    record Delivery(DownloadBandwidthScheduler.Stream stream, HotFileCache.Lease cached) {
+    }
+
+    /**
+     * Where the response body goes: straight to the response, or through the download stream.
+     */
+    private record Body(HttpServletRequest request, HttpServletResponse response, Delivery delivery) {
+
+        OutputStream outputStream() throws IOException {
+            OutputStream out = response.getOutputStream();
+            return delivery.stream() != null ? delivery.stream().wrap(out) : out;
+        }
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long written = channel.transferTo(position, remaining, target);
+            if (written <= 0) {
+                throw new IOException("File ended before " + count + " bytes could be sent");
+            }
+            position += written;
+            remaining -= written;
+        }
+    }
+}
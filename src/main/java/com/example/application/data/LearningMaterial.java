@@ -1,15 +1,17 @@
 package com.example.application.data;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "learning_material")
+@Table(name = "learning_material", indexes = @Index(name = "idx_learning_material_file_path", columnList = "file_path"))
 public class LearningMaterial {
 
     @Id
@@ -18,7 +20,14 @@ public class LearningMaterial {
 
     private String title;
     private String description;
+
+    // Storage key of the file: the SHA-256 of its content. Several materials may share one.
+    @Column(name = "file_path")
     private String filePath;
+
+    // Name of the file as uploaded, used when it is downloaded
+    private String fileName;
+    private Long fileSize;
     private String fileType;
     private LocalDateTime uploadedDate;
     private LocalDateTime createdAt;
@@ -65,6 +74,22 @@ public class LearningMaterial {
         this.filePath = filePath;
     }
 
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
     public String getFileType() {
         return fileType;
     }
@@ -1,16 +1,27 @@
 package com.example.application.data;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
+import java.util.Optional;
  
 @Repository
 public interface LearningMaterialRepository extends JpaRepository<LearningMaterial, Long> {
     List<LearningMaterial> findByUploadedBy(User user);
     List<LearningMaterial> findAllByOrderByCreatedAtDesc();
 
+    // Number of materials sharing a stored file; the file may be removed once this reaches zero
+    long countByFilePath(String filePath);
+
+    Optional<LearningMaterial> findFirstByFilePath(String filePath);
+
+    // Distinct stored file keys in ascending order, a page at a time, for reconciling against storage
+    @Query("SELECT DISTINCT lm.filePath FROM LearningMaterial lm WHERE lm.filePath > :after ORDER BY lm.filePath")
+    List<String> findFilePathsAfter(@Param("after") String after, Pageable pageable);
+
     // Find materials optionally filtered by teacher's subject area
     @Query("SELECT lm FROM LearningMaterial lm JOIN lm.uploadedBy u JOIN TeacherProfile tp ON tp.user = u WHERE (:subject IS NULL OR tp.subjectArea = :subject)")
     List<LearningMaterial> findMaterialsBySubject(@Param("subject") String subject);
@@ -0,0 +1,61 @@
+package com.example.application.data;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Stores a set of question ids in one column, sorted and encoded as varint deltas: ids drawn from
+ * the same bank tend to be close together, so a 20 question sample takes some 25 bytes rather than
+ * 20 rows of a join table.
+ */
+@Converter
+public class QuestionIdsConverter implements AttributeConverter<long[], byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(long[] ids) {
+        if (ids == null) {
+            return null;
+        }
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sorted.length * 2);
+        long previous = 0;
+        for (long id : sorted) {
+            long delta = id - previous;
+            while ((delta & ~0x7FL) != 0) {
+                out.write((int) (delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.write((int) delta);
+            previous = id;
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public long[] convertToEntityAttribute(byte[] column) {
+        if (column == null) {
+            return null;
+        }
+        long[] ids = new long[column.length];
+        int count = 0;
+        long previous = 0;
+        int i = 0;
+        while (i < column.length) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = column[i++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += delta;
+            ids[count++] = previous;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+}
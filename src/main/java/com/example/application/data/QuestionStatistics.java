@@ -0,0 +1,110 @@
+package com.example.application.data;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Running totals for item analysis of one question as part of one quiz, over the completed
+ * attempts that answered it. Question bank questions have totals for each quiz drawing them, as
+ * the attempt scores they are correlated with differ by quiz.
+ *
+ * Rows are only ever added to in place, with JDBC updates from
+ * {@link com.example.application.services.ItemAnalysis}, so this entity is read-only.
+ */
+@Entity
+@Table(name = "quiz_item_stats")
+@IdClass(QuestionStatistics.Key.class)
+public class QuestionStatistics {
+
+    @Id
+    @Column(name = "quiz_id")
+    private Long quizId;
+
+    @Id
+    @Column(name = "question_id")
+    private Long questionId;
+
+    private long attempts;
+
+    @Column(name = "correct_count")
+    private long correct;
+
+    // Sums of the attempts' scores and of their squares, and of the scores of the correct answers
+    @Column(name = "score_sum")
+    private long scoreSum;
+
+    @Column(name = "score_square_sum")
+    private long scoreSquareSum;
+
+    @Column(name = "correct_score_sum")
+    private long correctScoreSum;
+
+    // How often each option of a choice question was selected
+    @ElementCollection
+    @CollectionTable(name = "quiz_item_options", joinColumns = {
+            @JoinColumn(name = "quiz_id", referencedColumnName = "quiz_id"),
+            @JoinColumn(name = "question_id", referencedColumnName = "question_id")})
+    @MapKeyColumn(name = "option_text")
+    @Column(name = "selections")
+    private Map<String, Long> optionSelections = new HashMap<>();
+
+    public static class Key implements Serializable {
+
+        private Long quizId;
+        private Long questionId;
+
+        public Key() {
+        }
+
+        public Key(Long quizId, Long questionId) {
+            this.quizId = quizId;
+            this.questionId = questionId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key other && Objects.equals(quizId, other.quizId) && Objects.equals(questionId, other.questionId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(quizId, questionId);
+        }
+    }
+
+    public Long getQuizId() {
+        return quizId;
+    }
+
+    public Long getQuestionId() {
+        return questionId;
+    }
+
+    public long getAttempts() {
+        return attempts;
+    }
+
+    public long getCorrect() {
+        return correct;
+    }
+
+    public long getScoreSum() {
+        return scoreSum;
+    }
+
+    public long getScoreSquareSum() {
+        return scoreSquareSum;
+    }
+
+    public long getCorrectScoreSum() {
+        return correctScoreSum;
+    }
+
+    public Map<String, Long> getOptionSelections() {
+        return optionSelections;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.application.data;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface QuestionStatisticsRepository extends JpaRepository<QuestionStatistics, QuestionStatistics.Key> {
+
+    // One row per question of the quiz, however many attempts the totals cover
+    @Query("SELECT s.questionId AS questionId, q.questionText AS questionText, s.attempts AS attempts, s.correct AS correct, "
+            + "s.scoreSum AS scoreSum, s.scoreSquareSum AS scoreSquareSum, s.correctScoreSum AS correctScoreSum "
+            + "FROM QuestionStatistics s LEFT JOIN QuizQuestion q ON q.id = s.questionId "
+            + "WHERE s.quizId = :quizId ORDER BY s.questionId")
+    List<ItemTotals> findItemTotals(@Param("quizId") Long quizId);
+
+    @Query("SELECT s.questionId AS questionId, KEY(o) AS optionText, VALUE(o) AS selections "
+            + "FROM QuestionStatistics s JOIN s.optionSelections o "
+            + "WHERE s.quizId = :quizId ORDER BY s.questionId, VALUE(o) DESC")
+    List<OptionSelections> findOptionSelections(@Param("quizId") Long quizId);
+
+    interface ItemTotals {
+        Long getQuestionId();
+        String getQuestionText();
+        long getAttempts();
+        long getCorrect();
+        long getScoreSum();
+        long getScoreSquareSum();
+        long getCorrectScoreSum();
+    }
+
+    interface OptionSelections {
+        Long getQuestionId();
+        String getOptionText();
+        long getSelections();
+    }
+}
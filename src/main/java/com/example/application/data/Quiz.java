@@ -33,6 +33,11 @@ public class Quiz extends AbstractEntity {
     @OneToMany(mappedBy = "quiz", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<QuizQuestion> questions = new ArrayList<>();
 
+    // Questions drawn from the question bank for each attempt, on top of the quiz's own
+    @ElementCollection
+    @CollectionTable(name = "quiz_sampling_rules", joinColumns = @JoinColumn(name = "quiz_id"))
+    private List<SamplingRule> samplingRules = new ArrayList<>();
+
     // Getters and Setters
     public String getTitle() {
         return title;
@@ -99,4 +104,12 @@ public class Quiz extends AbstractEntity {
         questions.remove(question);
         question.setQuiz(null);
     }
+
+    public List<SamplingRule> getSamplingRules() {
+        return samplingRules;
+    }
+
+    public void setSamplingRules(List<SamplingRule> samplingRules) {
+        this.samplingRules = samplingRules;
+    }
 }
\ No newline at end of file
@@ -5,7 +5,8 @@ import jakarta.validation.constraints.NotNull;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "quiz_attempts")
+// Covers "has this student completed this quiz" without touching the table
+@Table(name = "quiz_attempts", indexes = @Index(name = "idx_attempt_quiz_completed_student", columnList = "quiz_id, is_completed, student_id"))
 public class QuizAttempt extends AbstractEntity {
 
     @ManyToOne
@@ -30,6 +31,17 @@ public class QuizAttempt extends AbstractEntity {
     @Column(name = "is_completed")
     private boolean completed = false;
 
+    // Orders the questions and options this attempt sees, see AttemptShuffle; null for attempts
+    // started before shuffling, which see the quiz unshuffled
+    @Column(name = "shuffle_seed")
+    private Long shuffleSeed;
+
+    // The question bank questions drawn for this attempt, asked along with the quiz's own; null
+    // for quizzes that don't sample
+    @Convert(converter = QuestionIdsConverter.class)
+    @Column(name = "sampled_question_ids", length = 2048)
+    private long[] sampledQuestionIds;
+
     // Getters and Setters
     public Quiz getQuiz() {
         return quiz;
@@ -78,4 +90,20 @@ public class QuizAttempt extends AbstractEntity {
     public void setCompleted(boolean completed) {
         this.completed = completed;
     }
-} 
\ No newline at end of file
+
+    public Long getShuffleSeed() {
+        return shuffleSeed;
+    }
+
+    public void setShuffleSeed(Long shuffleSeed) {
+        this.shuffleSeed = shuffleSeed;
+    }
+
+    public long[] getSampledQuestionIds() {
+        return sampledQuestionIds;
+    }
+
+    public void setSampledQuestionIds(long[] sampledQuestionIds) {
+        this.sampledQuestionIds = sampledQuestionIds;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.application.data;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * What a student answered to one question in a quiz attempt.
+ */
+@Entity
+@Table(name = "quiz_attempt_answers", indexes = @Index(name = "idx_attempt_answer_attempt", columnList = "attempt_id"))
+public class QuizAttemptAnswer extends AbstractEntity {
+
+    // Longest answer stored, for submitted and autosaved answers alike
+    public static final int MAX_ANSWER_LENGTH = 4000;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "attempt_id")
+    @NotNull
+    private QuizAttempt attempt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "question_id")
+    @NotNull
+    private QuizQuestion question;
+
+    @Column(name = "answer_text", length = MAX_ANSWER_LENGTH)
+    private String answerText;
+
+    @Column(name = "is_correct")
+    private boolean correct = false;
+
+    public QuizAttemptAnswer() {
+    }
+
+    public QuizAttemptAnswer(QuizAttempt attempt, QuizQuestion question, String answerText, boolean correct) {
+        this.attempt = attempt;
+        this.question = question;
+        this.answerText = answerText;
+        this.correct = correct;
+    }
+
+    // Getters and Setters
+    public QuizAttempt getAttempt() {
+        return attempt;
+    }
+
+    public void setAttempt(QuizAttempt attempt) {
+        this.attempt = attempt;
+    }
+
+    public QuizQuestion getQuestion() {
+        return question;
+    }
+
+    public void setQuestion(QuizQuestion question) {
+        this.question = question;
+    }
+
+    public String getAnswerText() {
+        return answerText;
+    }
+
+    public void setAnswerText(String answerText) {
+        this.answerText = answerText;
+    }
+
+    public boolean isCorrect() {
+        return correct;
+    }
+
+    public void setCorrect(boolean correct) {
+        this.correct = correct;
+    }
+}
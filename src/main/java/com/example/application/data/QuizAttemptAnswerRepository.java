@@ -0,0 +1,34 @@
+package com.example.application.data;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface QuizAttemptAnswerRepository extends JpaRepository<QuizAttemptAnswer, Long> {
+
+    // Question ids and answers for one attempt, without loading the questions themselves
+    @Query("SELECT a.question.id AS questionId, a.answerText AS answerText, a.correct AS correct FROM QuizAttemptAnswer a WHERE a.attempt.id = :attemptId")
+    List<AnswerView> findAnswersByAttemptId(@Param("attemptId") Long attemptId);
+
+    // All stored answers of a batch of attempts, for regrading them
+    @Query("SELECT a.id AS id, a.attempt.id AS attemptId, a.question.id AS questionId, a.answerText AS answerText, a.correct AS correct FROM QuizAttemptAnswer a WHERE a.attempt.id IN :attemptIds")
+    List<StoredAnswer> findAnswersByAttemptIds(@Param("attemptIds") Collection<Long> attemptIds);
+
+    interface StoredAnswer {
+        Long getId();
+        Long getAttemptId();
+        Long getQuestionId();
+        String getAnswerText();
+        boolean isCorrect();
+    }
+
+    interface AnswerView {
+        Long getQuestionId();
+        String getAnswerText();
+        boolean isCorrect();
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.application.data;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,8 +16,53 @@ public interface QuizAttemptRepository extends JpaRepository<QuizAttempt, Long>
     List<QuizAttempt> findByQuiz(Quiz quiz);
     List<QuizAttempt> findByQuizAndStudentAndCompletedTrue(Quiz quiz, User student);
     boolean existsByQuizAndStudentAndCompletedTrue(Quiz quiz, User student);
+    Optional<QuizAttempt> findFirstByQuizAndStudentAndCompletedFalseOrderByStartTimeDesc(Quiz quiz, User student);
 
     // New method to fetch attempt with quiz and its questions
     @Query("SELECT DISTINCT qa FROM QuizAttempt qa JOIN FETCH qa.quiz q LEFT JOIN FETCH q.questions WHERE qa.id = :id")
     Optional<QuizAttempt> findByIdAndFetchQuizWithQuestions(@Param("id") Long id);
+
+    // What grading needs to know about an attempt, without loading it or its quiz
+    @Query("SELECT qa.id AS id, q.id AS quizId, q.version AS quizVersion, qa.student.id AS studentId, qa.completed AS completed, qa.sampledQuestionIds AS sampledQuestionIds FROM QuizAttempt qa JOIN qa.quiz q WHERE qa.id = :id")
+    Optional<GradingInfo> findGradingInfo(@Param("id") Long id);
+
+    @Query("SELECT qa.id AS id, q.id AS quizId, q.version AS quizVersion, qa.student.id AS studentId, qa.completed AS completed, qa.sampledQuestionIds AS sampledQuestionIds FROM QuizAttempt qa JOIN qa.quiz q WHERE qa.id IN :ids")
+    List<GradingInfo> findGradingInfo(@Param("ids") Collection<Long> ids);
+
+    long countByQuizIdAndCompletedTrue(Long quizId);
+
+    @Query("SELECT DISTINCT qa.student.id FROM QuizAttempt qa WHERE qa.quiz.id = :quizId AND qa.completed = true")
+    List<Long> findStudentIdsWhoCompleted(@Param("quizId") Long quizId);
+
+    // Attempts still open on quizzes with a time limit, to restore their deadlines
+    @Query("SELECT qa.id AS id, qa.startTime AS startTime, q.durationMinutes AS durationMinutes FROM QuizAttempt qa JOIN qa.quiz q WHERE qa.completed = false AND q.durationMinutes IS NOT NULL")
+    List<OpenAttempt> findOpenTimedAttempts();
+
+    interface OpenAttempt {
+        Long getId();
+        LocalDateTime getStartTime();
+        Integer getDurationMinutes();
+    }
+
+    // Keyset pagination over a quiz's completed attempts: the next page starts after the last id seen
+    @Query("SELECT qa.id AS id, qa.score AS score, qa.sampledQuestionIds AS sampledQuestionIds FROM QuizAttempt qa WHERE qa.quiz.id = :quizId AND qa.completed = true AND qa.id > :afterId ORDER BY qa.id")
+    List<AttemptScore> findCompletedScores(@Param("quizId") Long quizId, @Param("afterId") Long afterId, Pageable page);
+
+    @Query("SELECT qa.id AS id, qa.score AS score, qa.sampledQuestionIds AS sampledQuestionIds FROM QuizAttempt qa WHERE qa.quiz.id = :quizId AND qa.completed = true AND qa.completionTime >= :since AND qa.id > :afterId ORDER BY qa.id")
+    List<AttemptScore> findCompletedScoresSince(@Param("quizId") Long quizId, @Param("since") LocalDateTime since, @Param("afterId") Long afterId, Pageable page);
+
+    interface AttemptScore {
+        Long getId();
+        Integer getScore();
+        long[] getSampledQuestionIds();
+    }
+
+    interface GradingInfo {
+        Long getId();
+        Long getQuizId();
+        int getQuizVersion();
+        Long getStudentId();
+        boolean isCompleted();
+        long[] getSampledQuestionIds();
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.example.application.data;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * An answer autosaved while a quiz attempt is in progress, so the attempt can be resumed. Replaced
+ * by {@link QuizAttemptAnswer}s when the attempt is submitted.
+ */
+@Entity
+@Table(name = "quiz_draft_answers",
+        uniqueConstraints = @UniqueConstraint(name = "uk_draft_answer_attempt_question", columnNames = {"attempt_id", "question_id"}))
+public class QuizDraftAnswer extends AbstractEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "attempt_id")
+    @NotNull
+    private QuizAttempt attempt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "question_id")
+    @NotNull
+    private QuizQuestion question;
+
+    @Column(name = "answer_text", length = QuizAttemptAnswer.MAX_ANSWER_LENGTH)
+    private String answerText;
+
+    public QuizDraftAnswer() {
+    }
+
+    public QuizDraftAnswer(QuizAttempt attempt, QuizQuestion question, String answerText) {
+        this.attempt = attempt;
+        this.question = question;
+        this.answerText = answerText;
+    }
+
+    // Getters and Setters
+    public QuizAttempt getAttempt() {
+        return attempt;
+    }
+
+    public void setAttempt(QuizAttempt attempt) {
+        this.attempt = attempt;
+    }
+
+    public QuizQuestion getQuestion() {
+        return question;
+    }
+
+    public void setQuestion(QuizQuestion question) {
+        this.question = question;
+    }
+
+    public String getAnswerText() {
+        return answerText;
+    }
+
+    public void setAnswerText(String answerText) {
+        this.answerText = answerText;
+    }
+}
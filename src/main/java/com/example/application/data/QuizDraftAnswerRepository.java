@@ -0,0 +1,29 @@
+package com.example.application.data;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface QuizDraftAnswerRepository extends JpaRepository<QuizDraftAnswer, Long> {
+
+    @Query("SELECT d FROM QuizDraftAnswer d WHERE d.attempt.id IN :attemptIds")
+    List<QuizDraftAnswer> findByAttemptIds(@Param("attemptIds") Collection<Long> attemptIds);
+
+    @Query("SELECT d.attempt.id AS attemptId, d.question.id AS questionId, d.answerText AS answerText FROM QuizDraftAnswer d WHERE d.attempt.id IN :attemptIds")
+    List<DraftView> findDraftsByAttemptIds(@Param("attemptIds") Collection<Long> attemptIds);
+
+    @Modifying
+    @Query("DELETE FROM QuizDraftAnswer d WHERE d.attempt.id IN :attemptIds")
+    int deleteByAttemptIds(@Param("attemptIds") Collection<Long> attemptIds);
+
+    interface DraftView {
+        Long getAttemptId();
+        Long getQuestionId();
+        String getAnswerText();
+    }
+}
@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Entity
 @Table(name = "quiz_questions")
@@ -32,6 +34,16 @@ public class QuizQuestion extends AbstractEntity {
     @OneToMany(mappedBy = "question", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<QuizAnswer> answers = new ArrayList<>();
 
+    // Tagged questions make up the question bank that quizzes sample from, see QuestionBankIndex
+    @ElementCollection
+    @CollectionTable(name = "quiz_question_tags", joinColumns = @JoinColumn(name = "question_id"),
+            indexes = @Index(name = "idx_question_tag", columnList = "tag"))
+    @Column(name = "tag")
+    private Set<String> tags = new HashSet<>();
+
+    // From 1 (easiest) to 5, or null if not rated
+    private Integer difficulty;
+
     // Getters and Setters
     public Quiz getQuiz() {
         return quiz;
@@ -90,4 +102,20 @@ public class QuizQuestion extends AbstractEntity {
         answers.remove(answer);
         answer.setQuestion(null);
     }
-}
\ No newline at end of file
+
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(Set<String> tags) {
+        this.tags = tags;
+    }
+
+    public Integer getDifficulty() {
+        return difficulty;
+    }
+
+    public void setDifficulty(Integer difficulty) {
+        this.difficulty = difficulty;
+    }
+}
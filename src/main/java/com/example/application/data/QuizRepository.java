@@ -4,6 +4,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,7 +18,71 @@ public interface QuizRepository extends JpaRepository<Quiz, Long> {
     @Query("SELECT q FROM Quiz q JOIN q.createdBy u JOIN TeacherProfile tp ON tp.user = u WHERE q.isActive = true AND (:subject IS NULL OR tp.subjectArea = :subject)")
     List<Quiz> findActiveQuizzesBySubject(@Param("subject") String subject);
 
+    // The current version of a quiz, which cached snapshots of it are keyed on
+    @Query("SELECT q.version FROM Quiz q WHERE q.id = :id")
+    Optional<Integer> findVersion(@Param("id") Long id);
+
     // New method to fetch Quiz with Questions
     @Query("SELECT q FROM Quiz q LEFT JOIN FETCH q.questions WHERE q.id = :id")
     Optional<Quiz> findByIdWithQuestions(@Param("id") Long id);
-} 
\ No newline at end of file
+
+    // A quiz and its questions for rendering, one row per question (a single row with a null
+    // question id when there are none); answer options come from findAnswerOptions, since the two
+    // bags can't be fetched in one query
+    @Query("SELECT q.id AS quizId, q.version AS version, q.title AS title, q.description AS description, "
+            + "q.durationMinutes AS durationMinutes, q.isActive AS active, SIZE(q.samplingRules) AS ruleCount, "
+            + "qq.id AS questionId, qq.questionText AS questionText, qq.questionType AS questionType, qq.correctAnswer AS correctAnswer "
+            + "FROM Quiz q LEFT JOIN q.questions qq WHERE q.id = :id ORDER BY qq.id")
+    List<QuizQuestionView> findQuestionViews(@Param("id") Long id);
+
+    @Query("SELECT qq.id AS questionId, a.answerText AS answerText FROM QuizAnswer a JOIN a.question qq "
+            + "WHERE qq.quiz.id = :id ORDER BY qq.id, a.displayOrder, a.id")
+    List<AnswerOptionView> findAnswerOptions(@Param("id") Long id);
+
+    // The same for question bank questions, whichever quiz they belong to
+    @Query("SELECT qq.id AS questionId, qq.questionText AS questionText, qq.questionType AS questionType, qq.correctAnswer AS correctAnswer "
+            + "FROM QuizQuestion qq WHERE qq.id IN :ids ORDER BY qq.id")
+    List<QuestionView> findQuestionViewsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT qq.id AS questionId, a.answerText AS answerText FROM QuizAnswer a JOIN a.question qq "
+            + "WHERE qq.id IN :ids ORDER BY qq.id, a.displayOrder, a.id")
+    List<AnswerOptionView> findAnswerOptionsByQuestionIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT qq FROM QuizQuestion qq WHERE qq.id IN :ids")
+    List<QuizQuestion> findQuestionsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT r FROM Quiz q JOIN q.samplingRules r WHERE q.id = :id")
+    List<SamplingRule> findSamplingRules(@Param("id") Long id);
+
+    // Every tag of every question, to index the question bank
+    @Query("SELECT qq.id AS questionId, t AS tag, qq.difficulty AS difficulty FROM QuizQuestion qq JOIN qq.tags t")
+    List<TaggedQuestion> findTaggedQuestions();
+
+    interface QuestionView {
+        Long getQuestionId();
+        String getQuestionText();
+        String getQuestionType();
+        String getCorrectAnswer();
+    }
+
+    interface QuizQuestionView extends QuestionView {
+        Long getQuizId();
+        int getVersion();
+        String getTitle();
+        String getDescription();
+        Integer getDurationMinutes();
+        boolean isActive();
+        int getRuleCount();
+    }
+
+    interface AnswerOptionView {
+        Long getQuestionId();
+        String getAnswerText();
+    }
+
+    interface TaggedQuestion {
+        Long getQuestionId();
+        String getTag();
+        Integer getDifficulty();
+    }
+}
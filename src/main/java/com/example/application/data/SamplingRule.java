@@ -0,0 +1,58 @@
+package com.example.application.data;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.validation.constraints.NotEmpty;
+
+/**
+ * Part of a quiz's definition: draw {@code count} random questions tagged {@code tag} from the
+ * question bank, optionally only of one difficulty.
+ */
+@Embeddable
+public class SamplingRule {
+
+    @Column(name = "tag")
+    @NotEmpty
+    private String tag;
+
+    // Null for any difficulty
+    @Column(name = "difficulty")
+    private Integer difficulty;
+
+    @Column(name = "question_count")
+    private int count;
+
+    public SamplingRule() {
+    }
+
+    public SamplingRule(String tag, Integer difficulty, int count) {
+        this.tag = tag;
+        this.difficulty = difficulty;
+        this.count = count;
+    }
+
+    // Getters and Setters
+    public String getTag() {
+        return tag;
+    }
+
+    public void setTag(String tag) {
+        this.tag = tag;
+    }
+
+    public Integer getDifficulty() {
+        return difficulty;
+    }
+
+    public void setDifficulty(Integer difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
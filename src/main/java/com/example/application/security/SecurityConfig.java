@@ -37,6 +37,15 @@ public class SecurityConfig extends VaadinWebSecurity {
                     AntPathRequestMatcher.antMatcher("/api/test"), // Keep existing if needed
                     AntPathRequestMatcher.antMatcher("/signup") // Permit access to signup page
                 ).permitAll());
+
+        // Only teachers and admins upload materials
+        http.authorizeHttpRequests(auth ->
+                auth.requestMatchers(AntPathRequestMatcher.antMatcher("/api/uploads/**")).hasAnyRole("TEACHER", "ADMIN"));
+
+        // Any signed-in user may check health; metrics and any other actuator endpoint are for admins
+        http.authorizeHttpRequests(auth -> auth
+                .requestMatchers(AntPathRequestMatcher.antMatcher("/actuator/health/**")).authenticated()
+                .requestMatchers(AntPathRequestMatcher.antMatcher("/actuator/**")).hasRole("ADMIN"));
         
         // Configure Vaadin security
         super.configure(http);
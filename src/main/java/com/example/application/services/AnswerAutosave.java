@@ -0,0 +1,247 @@
+package com.example.application.services;
+
+import com.example.application.data.QuizAttemptAnswer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Autosaves the answers of quiz attempts in progress, so an attempt survives a browser crash or a
+ * server restart.
+ *
+ * Answer changes are buffered in memory per attempt, where a later change to a question replaces
+ * the earlier one. An attempt's buffered answers are written once the student has paused for the
+ * quiet period, or once they have been buffered for the maximum delay while the student keeps
+ * clicking, with all attempts due at that point written in one transaction. A student clicking
+ * through a quiz therefore costs a few writes rather than one per click.
+ *
+ * Answers being written stay visible to {@link #restore} until the write has committed, so an
+ * attempt restored or submitted in the meantime doesn't lose them.
+ *
+ * If that transaction fails, the attempts are written one at a time, so that one attempt that
+ * can't be stored doesn't hold back everybody else's. An attempt failing on its own is retried
+ * with the next flush, and dropped after a few failures.
+ */
+@Service
+public class AnswerAutosave {
+
+    private static final Logger log = LoggerFactory.getLogger(AnswerAutosave.class);
+
+    // Failed writes of one attempt's answers before they are given up on
+    static final int MAX_FAILURES = 5;
+
+    @Autowired
+    private QuizService quizService;
+
+    @Value("${app.quiz.autosave.quiet-period:PT3S}")
+    private Duration quietPeriod;
+
+    @Value("${app.quiz.autosave.max-delay:PT20S}")
+    private Duration maxDelay;
+
+    private final Map<Long, PendingAnswers> pending = new ConcurrentHashMap<>();
+    // Taken out of pending and not yet committed; no longer modified
+    private final Map<Long, PendingAnswers> inFlight = new ConcurrentHashMap<>();
+    private final Counter changes;
+    private final Counter written;
+    private final Counter dropped;
+
+    public AnswerAutosave(MeterRegistry registry) {
+        Gauge.builder("gradsy.quiz.autosave.pending", pending, Map::size)
+                .description("Quiz attempts with answers waiting to be autosaved")
+                .register(registry);
+        this.changes = Counter.builder("gradsy.quiz.autosave.changes")
+                .description("Answer changes made during quiz attempts")
+                .register(registry);
+        this.written = Counter.builder("gradsy.quiz.autosave.written")
+                .description("Answers written by autosave")
+                .register(registry);
+        this.dropped = Counter.builder("gradsy.quiz.autosave.dropped")
+                .description("Quiz attempts whose autosaved answers could not be written")
+                .register(registry);
+    }
+
+    /**
+     * Records a changed answer, to be saved shortly. A null answer records that the student
+     * cleared it, and removes any answer saved before.
+     *
+     * @throws IllegalArgumentException if the answer is longer than can be stored
+     */
+    public void record(Long attemptId, Long questionId, String answer) {
+        if (answer != null && answer.length() > QuizAttemptAnswer.MAX_ANSWER_LENGTH) {
+            throw new IllegalArgumentException("Answers are limited to " + QuizAttemptAnswer.MAX_ANSWER_LENGTH + " characters.");
+        }
+        changes.increment();
+        long now = System.nanoTime();
+        pending.compute(attemptId, (id, answers) -> {
+            PendingAnswers result = answers != null ? answers : new PendingAnswers(now);
+            result.answers.put(questionId, answer);
+            result.lastChange = now;
+            return result;
+        });
+    }
+
+    /**
+     * The answers given so far in an attempt, saved or still buffered.
+     */
+    public Map<Long, String> restore(Long attemptId) {
+        return restore(List.of(attemptId)).get(attemptId);
+    }
+
+    /**
+     * The answers given so far in some attempts, by attempt id, read with a single query.
+     */
+    public Map<Long, Map<Long, String>> restore(Collection<Long> attemptIds) {
+        // Copied before reading the table, so answers committed in between are found in one or the other
+        Map<Long, Map<Long, String>> unsaved = new HashMap<>();
+        for (Long attemptId : attemptIds) {
+            Map<Long, String> attemptAnswers = new HashMap<>();
+            PendingAnswers writing = inFlight.get(attemptId);
+            if (writing != null) {
+                attemptAnswers.putAll(writing.answers);
+            }
+            pending.computeIfPresent(attemptId, (id, buffered) -> {
+                attemptAnswers.putAll(buffered.answers);
+                return buffered;
+            });
+            unsaved.put(attemptId, attemptAnswers);
+        }
+
+        Map<Long, Map<Long, String>> answers = quizService.findDraftAnswers(attemptIds);
+        for (Long attemptId : attemptIds) {
+            Map<Long, String> attemptAnswers = answers.computeIfAbsent(attemptId, id -> new HashMap<>());
+            attemptAnswers.putAll(unsaved.get(attemptId));
+            // Cleared since they were saved
+            attemptAnswers.values().removeIf(Objects::isNull);
+        }
+        return answers;
+    }
+
+    /**
+     * Drops the buffered answers of an attempt that has been submitted.
+     */
+    public void discard(Long attemptId) {
+        pending.remove(attemptId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.quiz.autosave.flush-interval:PT1S}")
+    public void flushDue() {
+        flush(false);
+    }
+
+    @PreDestroy
+    void flushAll() {
+        flush(true);
+    }
+
+    /**
+     * Writes the buffered answers of the attempts that are due, or of all attempts.
+     *
+     * @return the number of answers written
+     */
+    int flush(boolean all) {
+        long now = System.nanoTime();
+        Map<Long, PendingAnswers> due = new HashMap<>();
+        for (Long attemptId : pending.keySet()) {
+            pending.computeIfPresent(attemptId, (id, answers) -> {
+                if (all || now - answers.lastChange >= quietPeriod.toNanos() || now - answers.firstChange >= maxDelay.toNanos()) {
+                    due.put(id, answers);
+                    inFlight.put(id, answers);
+                    return null;
+                }
+                return answers;
+            });
+        }
+        if (due.isEmpty()) {
+            return 0;
+        }
+        try {
+            return saveDue(due, now);
+        } finally {
+            // Committed, or back in pending for a retry
+            due.forEach(inFlight::remove);
+        }
+    }
+
+    /**
+     * Writes the due attempts in one transaction, or one at a time if that fails.
+     */
+    private int saveDue(Map<Long, PendingAnswers> due, long now) {
+        try {
+            return save(due);
+        } catch (RuntimeException ex) {
+            if (due.size() == 1) {
+                due.forEach((attemptId, answers) -> retryLater(attemptId, answers, now, ex));
+                return 0;
+            }
+            log.warn("Autosaving the answers of {} quiz attempts failed, saving them one at a time", due.size(), ex);
+        }
+        int count = 0;
+        for (Map.Entry<Long, PendingAnswers> attempt : due.entrySet()) {
+            try {
+                count += save(Map.of(attempt.getKey(), attempt.getValue()));
+            } catch (RuntimeException ex) {
+                retryLater(attempt.getKey(), attempt.getValue(), now, ex);
+            }
+        }
+        return count;
+    }
+
+    private int save(Map<Long, PendingAnswers> attempts) {
+        Map<Long, Map<Long, String>> answers = new HashMap<>();
+        attempts.forEach((attemptId, pendingAnswers) -> answers.put(attemptId, pendingAnswers.answers));
+        int count = quizService.saveDraftAnswers(answers);
+        written.increment(count);
+        return count;
+    }
+
+    private void retryLater(Long attemptId, PendingAnswers failed, long now, RuntimeException ex) {
+        if (failed.failures + 1 >= MAX_FAILURES) {
+            log.error("Giving up autosaving the answers of quiz attempt {} after {} failures", attemptId, MAX_FAILURES, ex);
+            dropped.increment();
+            return;
+        }
+        log.warn("Autosaving the answers of quiz attempt {} failed, retrying", attemptId, ex);
+        // Back into the buffer, behind anything answered since
+        pending.compute(attemptId, (id, buffered) -> {
+            PendingAnswers result = buffered != null ? buffered : new PendingAnswers(now);
+            failed.answers.forEach((questionId, answer) -> {
+                // Not putIfAbsent, which would overwrite an answer cleared since
+                if (!result.answers.containsKey(questionId)) {
+                    result.answers.put(questionId, answer);
+                }
+            });
+            result.failures = failed.failures + 1;
+            return result;
+        });
+    }
+
+    // Guarded by the pending map
+    private static final class PendingAnswers {
+        final Map<Long, String> answers = new HashMap<>();
+        final long firstChange;
+        long lastChange;
+        // Consecutive failed writes
+        int failures;
+
+        PendingAnswers(long now) {
+            this.firstChange = now;
+            this.lastChange = now;
+        }
+    }
+}
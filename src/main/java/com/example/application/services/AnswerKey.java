@@ -0,0 +1,215 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.QuizQuestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A quiz's questions compiled for grading: question ids mapped to dense indexes, with a matcher
+ * compiled by the {@link QuestionGrader} of each question's type and the points of each question,
+ * in plain arrays. Grading a submission is then a scan over the submitted answers with no entities
+ * involved.
+ *
+ * Instances are immutable and belong to one version of the quiz, see {@link AnswerKeyCache}.
+ */
+public final class AnswerKey {
+
+    private final long quizId;
+    private final int version;
+    // Ascending, so a question's index is found by binary search
+    private final long[] questionIds;
+    private final String[] questionTypes;
+    private final QuestionGrader.Matcher[] matchers;
+    private final int[] points;
+    private final boolean sampled;
+    // Question bank questions, which only count for the attempts that drew them; null if none
+    private final boolean[] drawnOnly;
+    // Of the questions every attempt is asked
+    private final int totalPoints;
+
+    /**
+     * The outcome of grading one submission. Arrays are indexed like {@link #getQuestionId(int)}.
+     *
+     * @param answers what was submitted for each question, or null where nothing was
+     */
+    public record Grade(String[] answers, boolean[] correct, int earnedPoints, int totalPoints) {
+
+        /**
+         * The score as a whole percentage of the available points.
+         */
+        public int score() {
+            return totalPoints > 0 ? (int) ((long) earnedPoints * 100 / totalPoints) : 0;
+        }
+    }
+
+    private AnswerKey(long quizId, int version, long[] questionIds, String[] questionTypes, QuestionGrader.Matcher[] matchers, int[] points, boolean sampled, boolean[] drawnOnly) {
+        this.quizId = quizId;
+        this.version = version;
+        this.questionIds = questionIds;
+        this.questionTypes = questionTypes;
+        this.matchers = matchers;
+        this.points = points;
+        this.sampled = sampled;
+        this.drawnOnly = drawnOnly;
+        int total = 0;
+        for (int i = 0; i < points.length; i++) {
+            total += drawnOnly == null || !drawnOnly[i] ? points[i] : 0;
+        }
+        this.totalPoints = total;
+    }
+
+    /**
+     * Compiles the answer key of {@code quiz}, whose questions must be loaded.
+     */
+    public static AnswerKey compile(Quiz quiz, QuestionGraders graders) {
+        return compile(quiz, List.of(), graders, false);
+    }
+
+    /**
+     * Compiles the answer key of {@code quiz}, whose questions must be loaded, along with the
+     * question bank questions its {@link com.example.application.data.SamplingRule}s draw from.
+     */
+    public static AnswerKey compile(Quiz quiz, Collection<QuizQuestion> bank, QuestionGraders graders) {
+        return compile(quiz, bank, graders, true);
+    }
+
+    private static AnswerKey compile(Quiz quiz, Collection<QuizQuestion> bank, QuestionGraders graders, boolean sampled) {
+        Set<Long> own = new HashSet<>();
+        List<QuizQuestion> questions = new ArrayList<>(quiz.getQuestions());
+        questions.forEach(question -> own.add(question.getId()));
+        bank.stream().filter(question -> !own.contains(question.getId())).forEach(questions::add);
+        questions.sort(Comparator.comparing(QuizQuestion::getId));
+
+        long[] questionIds = new long[questions.size()];
+        String[] questionTypes = new String[questions.size()];
+        QuestionGrader.Matcher[] matchers = new QuestionGrader.Matcher[questions.size()];
+        int[] points = new int[questions.size()];
+        boolean[] drawnOnly = own.size() < questions.size() ? new boolean[questions.size()] : null;
+        for (int i = 0; i < questions.size(); i++) {
+            QuizQuestion question = questions.get(i);
+            questionIds[i] = question.getId();
+            questionTypes[i] = question.getQuestionType();
+            matchers[i] = graders.matcher(question.getQuestionType(), question.getCorrectAnswer());
+            points[i] = question.getPoints() != null ? Math.max(0, question.getPoints()) : 1;
+            if (drawnOnly != null) {
+                drawnOnly[i] = !own.contains(question.getId());
+            }
+        }
+        return new AnswerKey(quiz.getId(), quiz.getVersion(), questionIds, questionTypes, matchers, points, sampled, drawnOnly);
+    }
+
+    /**
+     * Grades {@code answers}, given by question id. Answers to questions not in the quiz are ignored.
+     */
+    public Grade grade(Map<Long, String> answers) {
+        return grade(answers, null);
+    }
+
+    /**
+     * Grades the {@code answers} of an attempt that drew the question bank questions
+     * {@code drawn}, ascending, or none if null. Answers to questions it wasn't asked are ignored,
+     * and the score is out of the points of the questions it was asked.
+     */
+    public Grade grade(Map<Long, String> answers, long[] drawn) {
+        String[] given = new String[questionIds.length];
+        boolean[] correct = new boolean[questionIds.length];
+        int earned = 0;
+        int total = totalPoints;
+        if (drawnOnly != null && drawn != null) {
+            for (long id : drawn) {
+                int index = indexOf(id);
+                if (index >= 0 && drawnOnly[index]) {
+                    total += points[index];
+                }
+            }
+        }
+        for (Map.Entry<Long, String> answer : answers.entrySet()) {
+            int index = indexOf(answer.getKey());
+            if (index < 0 || answer.getValue() == null || !isAsked(index, drawn)) {
+                continue;
+            }
+            given[index] = answer.getValue();
+            if (matchers[index].matches(answer.getValue())) {
+                correct[index] = true;
+                earned += points[index];
+            }
+        }
+        return new Grade(given, correct, earned, total);
+    }
+
+    private boolean isAsked(int index, long[] drawn) {
+        return drawnOnly == null || !drawnOnly[index] || (drawn != null && Arrays.binarySearch(drawn, questionIds[index]) >= 0);
+    }
+
+    /**
+     * The dense index of a question, or a negative number if it is not part of this quiz.
+     */
+    public int indexOf(Long questionId) {
+        return questionId == null ? -1 : Arrays.binarySearch(questionIds, questionId);
+    }
+
+    public long getQuizId() {
+        return quizId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Whether the quiz draws questions from the question bank.
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    public int getQuestionCount() {
+        return questionIds.length;
+    }
+
+    public long getQuestionId(int index) {
+        return questionIds[index];
+    }
+
+    public String getQuestionType(int index) {
+        return questionTypes[index];
+    }
+
+    public int getTotalPoints() {
+        return totalPoints;
+    }
+
+    /**
+     * Trims an answer, collapses runs of whitespace and ignores case, so "Paris " and "paris"
+     * are the same answer.
+     */
+    static String normalize(String answer) {
+        if (answer == null) {
+            return null;
+        }
+        String trimmed = answer.strip();
+        StringBuilder normalized = null;
+        boolean inSpace = false;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            char folded = Character.isWhitespace(c) ? ' ' : Character.toLowerCase(c);
+            boolean skip = folded == ' ' && inSpace;
+            if (normalized == null && (folded != c || skip)) {
+                normalized = new StringBuilder(trimmed.length()).append(trimmed, 0, i);
+            }
+            if (normalized != null && !skip) {
+                normalized.append(folded);
+            }
+            inSpace = folded == ' ';
+        }
+        return normalized == null ? trimmed : normalized.toString();
+    }
+}
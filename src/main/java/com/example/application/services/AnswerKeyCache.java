@@ -0,0 +1,90 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.QuizRepository;
+import com.example.application.data.SamplingRule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiled {@link AnswerKey}s by quiz, so that a burst of submissions for the same quiz loads its
+ * questions once rather than once per submission.
+ *
+ * Entries are cached by quiz id and {@code version}. {@link QuizService#saveQuiz} moves the version
+ * whenever a quiz or its questions are saved, so a submission graded against the version it reads
+ * never gets a key compiled for an earlier one; evicting on save only frees the memory sooner.
+ *
+ * The key of a quiz with sampling rules also covers the question bank questions they draw from.
+ * Those belong to other quizzes and don't move this quiz's version, so such keys are dropped with
+ * {@link #evictSampled()} when the question bank changes.
+ */
+@Service
+public class AnswerKeyCache {
+
+    @Autowired
+    private QuizRepository quizRepository;
+
+    @Autowired
+    private QuestionBankIndex questionBankIndex;
+
+    @Autowired
+    private QuestionGraders questionGraders;
+
+    private final Cache<VersionedQuiz, AnswerKey> keys;
+
+    public AnswerKeyCache(MeterRegistry registry) {
+        this.keys = Caffeine.newBuilder()
+                .maximumSize(1_000)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, keys, "gradsy.quiz.answer-keys");
+    }
+
+    /**
+     * The answer key of version {@code version} of a quiz, compiled from the database if it isn't
+     * cached yet.
+     *
+     * @throws IllegalArgumentException if the quiz doesn't exist
+     */
+    public AnswerKey get(long quizId, int version) {
+        // Concurrent misses for the same version wait for one compile instead of each running it
+        return keys.get(new VersionedQuiz(quizId, version), this::compile);
+    }
+
+    private AnswerKey compile(VersionedQuiz key) {
+        Quiz quiz = quizRepository.findByIdWithQuestions(key.quizId())
+                .orElseThrow(() -> new IllegalArgumentException("Quiz with ID " + key.quizId() + " not found."));
+        List<SamplingRule> rules = quizRepository.findSamplingRules(key.quizId());
+        if (rules.isEmpty()) {
+            return AnswerKey.compile(quiz, questionGraders);
+        }
+        List<Long> pool = Arrays.stream(questionBankIndex.pool(rules)).boxed().toList();
+        return AnswerKey.compile(quiz, pool.isEmpty() ? List.of() : quizRepository.findQuestionsByIds(pool), questionGraders);
+    }
+
+    /**
+     * Drops every cached version of a quiz.
+     */
+    public void evict(Long quizId) {
+        if (quizId != null) {
+            keys.asMap().keySet().removeIf(key -> key.quizId() == quizId);
+        }
+    }
+
+    /**
+     * Drops the keys of quizzes with sampling rules, for when the question bank changes.
+     */
+    public void evictSampled() {
+        keys.asMap().values().removeIf(AnswerKey::isSampled);
+    }
+
+    private record VersionedQuiz(long quizId, int version) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.application.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The order in which one attempt sees a quiz's questions and each question's answer options,
+ * derived from the attempt's {@code shuffleSeed} rather than stored.
+ *
+ * Shuffles are Fisher-Yates over {@link Random}, whose sequence for a given seed is fixed by its
+ * specification, so the quiz page and the results page rebuild the same order in O(n), also after
+ * a restart or an upgrade. Inputs must come in a canonical order (questions by id, options by
+ * display order) for the result to be reproducible. Attempts without a seed, started before
+ * shuffling was introduced, keep that canonical order.
+ */
+public final class AttemptShuffle {
+
+    // Spreads question ids so that neighbouring questions get unrelated option orders
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private AttemptShuffle() {
+    }
+
+    /**
+     * The questions of an attempt in the order it shows them.
+     */
+    public static <T> List<T> questions(List<T> byId, Long seed) {
+        return shuffle(byId, seed);
+    }
+
+    /**
+     * The answer options of one question in the order an attempt shows them.
+     */
+    public static <T> List<T> options(List<T> byDisplayOrder, Long seed, long questionId) {
+        return shuffle(byDisplayOrder, seed != null ? seed ^ (questionId * GOLDEN_GAMMA) : null);
+    }
+
+    private static <T> List<T> shuffle(List<T> items, Long seed) {
+        List<T> shuffled = new ArrayList<>(items);
+        if (seed != null) {
+            Collections.shuffle(shuffled, new Random(seed));
+        }
+        return shuffled;
+    }
+}
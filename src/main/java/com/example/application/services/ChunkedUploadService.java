@@ -0,0 +1,245 @@
+package com.example.application.services;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Resumable uploads sent in fixed-size chunks, for files too large to send in one request.
+ *
+ * Each chunk is written straight to its offset in a staging file, so chunks can arrive in any
+ * order and in parallel, and a chunk that failed is simply sent again. Only a copy buffer per
+ * request is held in memory whatever the file size. Once every chunk is in, the file is hashed and
+ * can be handed to {@link LearningMaterialService#saveLearningMaterial(com.example.application.data.LearningMaterial, StagedUpload, com.example.application.data.User)}.
+ *
+ * The staging file is allocated at its full size when the upload starts, so the number of open
+ * uploads per user and the bytes reserved by all of them together are capped.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    @Autowired
+    private LearningMaterialService materialService;
+
+    @Value("${app.upload.chunk-size:8MB}")
+    private DataSize chunkSize;
+
+    @Value("${app.upload.max-size:20GB}")
+    private DataSize maxSize;
+
+    @Value("${app.upload.max-open-per-user:3}")
+    private int maxOpenPerUser;
+
+    @Value("${app.upload.max-reserved:50GB}")
+    private DataSize maxReserved;
+
+    private final Map<String, ChunkedUploadSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Picks up the uploads left open by the previous run, so they count towards the limits.
+     */
+    @PostConstruct
+    void loadOpenSessions() throws IOException {
+        try (Stream<Path> staged = Files.list(materialService.getStagingLocation())) {
+            staged.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith("chunked-") && name.endsWith(".state"))
+                    .map(name -> name.substring("chunked-".length(), name.length() - ".state".length()))
+                    .forEach(id -> find(id, null));
+        }
+        log.info("{} chunked uploads can be resumed", sessions.size());
+    }
+
+    /**
+     * Starts an upload, reserving {@code size} bytes for it in the staging area.
+     *
+     * @throws IllegalArgumentException if the size is out of range
+     * @throws IllegalStateException if {@code owner} has too many uploads open, or the staging area
+     *         has no room left for the file
+     */
+    public synchronized ChunkedUploadSession start(String owner, String fileName, String contentType, long size) throws IOException {
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("A file name is required");
+        }
+        if (size < 0 || size > maxSize.toBytes()) {
+            throw new IllegalArgumentException("File size must be between 0 and " + maxSize.toMegabytes() + " MB");
+        }
+        // Abandoned uploads whose staging files were cleaned up no longer hold any space
+        sessions.values().removeIf(session -> !Files.exists(session.getDataFile()));
+        long open = sessions.values().stream().filter(session -> session.getOwner().equals(owner)).count();
+        if (open >= maxOpenPerUser) {
+            throw new IllegalStateException("You already have " + open + " uploads open, finish or cancel one first");
+        }
+        long reserved = sessions.values().stream().mapToLong(ChunkedUploadSession::getSize).sum();
+        if (reserved + size > maxReserved.toBytes()) {
+            throw new IllegalStateException("Too many large uploads are in progress, try again later");
+        }
+        int chunk = (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize.toBytes()));
+        String id = UUID.randomUUID().toString();
+        Path dataFile = dataFile(id);
+        try (RandomAccessFile file = new RandomAccessFile(dataFile.toFile(), "rw")) {
+            file.setLength(size);
+        }
+        ChunkedUploadSession session = new ChunkedUploadSession(id, owner, fileName, contentType, size, chunk,
+                dataFile, stateFile(id), new BitSet(), null);
+        session.save();
+        sessions.put(id, session);
+        return session;
+    }
+
+    /**
+     * Looks up an upload belonging to {@code owner}, reloading its state from disk after a restart.
+     */
+    public Optional<ChunkedUploadSession> find(String id, String owner) {
+        if (!isValidId(id)) {
+            return Optional.empty();
+        }
+        ChunkedUploadSession session = sessions.get(id);
+        if (session == null && Files.exists(stateFile(id))) {
+            try {
+                session = sessions.computeIfAbsent(id, key -> {
+                    try {
+                        return ChunkedUploadSession.load(key, dataFile(key), stateFile(key));
+                    } catch (IOException ex) {
+                        throw new RuntimeException("Could not read upload state " + key, ex);
+                    }
+                });
+            } catch (RuntimeException ex) {
+                return Optional.empty();
+            }
+        }
+        if (session == null || !Files.exists(session.getDataFile())) {
+            // Abandoned long enough for the staging area to be cleaned
+            sessions.remove(id);
+            return Optional.empty();
+        }
+        return session.getOwner().equals(owner) ? Optional.of(session) : Optional.empty();
+    }
+
+    /**
+     * Writes one chunk from {@code body} to its place in the staging file.
+     *
+     * @throws IllegalArgumentException if the index is out of range or the body is not exactly
+     *         the chunk's length
+     */
+    public void writeChunk(ChunkedUploadSession session, int index, InputStream body) throws IOException {
+        if (session.isComplete()) {
+            throw new IllegalStateException("Upload " + session.getId() + " is already complete");
+        }
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Chunk index out of range: " + index);
+        }
+        long offset = session.chunkOffset(index);
+        long length = session.chunkLength(index);
+
+        ReadableByteChannel source = Channels.newChannel(body);
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(session.getDataFile(), StandardOpenOption.WRITE)) {
+            while (true) {
+                int read = source.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                if (written + buffer.position() > length) {
+                    throw new IllegalArgumentException("Chunk " + index + " is longer than " + length + " bytes");
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, offset + written);
+                }
+                buffer.clear();
+            }
+        }
+        if (written != length) {
+            throw new IllegalArgumentException("Chunk " + index + " has " + written + " bytes, expected " + length);
+        }
+        session.markReceived(index);
+    }
+
+    /**
+     * Finishes an upload once all chunks are in by computing the SHA-256 of the assembled file.
+     *
+     * @throws IllegalStateException if chunks are still missing
+     */
+    public ChunkedUploadSession complete(ChunkedUploadSession session) throws IOException {
+        if (session.isComplete()) {
+            return session;
+        }
+        if (!session.isAllReceived()) {
+            throw new IllegalStateException("Upload " + session.getId() + " is missing chunks");
+        }
+        MessageDigest digest = StagedUpload.newDigest();
+        try (InputStream in = Files.newInputStream(session.getDataFile())) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        session.markComplete(StagedUpload.toHex(digest));
+        return session;
+    }
+
+    /**
+     * Hands a completed upload over for saving. The session is forgotten; its staging file now
+     * belongs to the caller.
+     */
+    public Optional<StagedUpload> claim(String id, String owner) {
+        Optional<ChunkedUploadSession> found = find(id, owner).filter(ChunkedUploadSession::isComplete);
+        found.ifPresent(session -> {
+            sessions.remove(id);
+            materialService.discardStagingFile(session.getStateFile());
+        });
+        return found.map(session -> new StagedUpload(session.getDataFile(), session.getFileName(),
+                session.getContentType(), session.getSize(), session.getSha256()));
+    }
+
+    public void abort(ChunkedUploadSession session) {
+        sessions.remove(session.getId());
+        materialService.discardStagingFile(session.getDataFile());
+        materialService.discardStagingFile(session.getStateFile());
+    }
+
+    private Path dataFile(String id) {
+        return materialService.getStagingLocation().resolve("chunked-" + id + ".part");
+    }
+
+    private Path stateFile(String id) {
+        return materialService.getStagingLocation().resolve("chunked-" + id + ".state");
+    }
+
+    private static boolean isValidId(String id) {
+        try {
+            return id != null && UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+}
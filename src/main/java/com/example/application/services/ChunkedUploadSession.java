@@ -0,0 +1,164 @@
+package com.example.application.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Properties;
+
+/**
+ * State of one resumable upload: where its bytes go and which chunks have arrived.
+ *
+ * The chunk bitmap is persisted to a small sidecar file next to the data after every chunk, so an
+ * upload can be resumed after a server restart as well as after a dropped connection.
+ */
+public class ChunkedUploadSession {
+
+    private final String id;
+    private final String owner;
+    private final String fileName;
+    private final String contentType;
+    private final long size;
+    private final int chunkSize;
+    private final Path dataFile;
+    private final Path stateFile;
+    private final BitSet received;
+    private String sha256;
+
+    ChunkedUploadSession(String id, String owner, String fileName, String contentType, long size, int chunkSize,
+                         Path dataFile, Path stateFile, BitSet received, String sha256) {
+        this.id = id;
+        this.owner = owner;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.dataFile = dataFile;
+        this.stateFile = stateFile;
+        this.received = received;
+        this.sha256 = sha256;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkCount() {
+        return (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+    }
+
+    public long chunkOffset(int index) {
+        return (long) index * chunkSize;
+    }
+
+    public long chunkLength(int index) {
+        return Math.min(chunkSize, size - chunkOffset(index));
+    }
+
+    Path getDataFile() {
+        return dataFile;
+    }
+
+    Path getStateFile() {
+        return stateFile;
+    }
+
+    public synchronized BitSet getReceived() {
+        return (BitSet) received.clone();
+    }
+
+    public synchronized boolean isReceived(int index) {
+        return received.get(index);
+    }
+
+    public synchronized boolean isAllReceived() {
+        return received.nextClearBit(0) >= getChunkCount();
+    }
+
+    public synchronized String getSha256() {
+        return sha256;
+    }
+
+    public synchronized boolean isComplete() {
+        return sha256 != null;
+    }
+
+    synchronized void markReceived(int index) throws IOException {
+        received.set(index);
+        save();
+    }
+
+    synchronized void markComplete(String sha256) throws IOException {
+        this.sha256 = sha256;
+        save();
+    }
+
+    /**
+     * Writes the session state to its sidecar, replacing the previous one atomically.
+     */
+    synchronized void save() throws IOException {
+        Properties state = new Properties();
+        state.setProperty("owner", owner);
+        state.setProperty("fileName", fileName);
+        if (contentType != null) {
+            state.setProperty("contentType", contentType);
+        }
+        state.setProperty("size", Long.toString(size));
+        state.setProperty("chunkSize", Integer.toString(chunkSize));
+        state.setProperty("received", Base64.getEncoder().encodeToString(received.toByteArray()));
+        if (sha256 != null) {
+            state.setProperty("sha256", sha256);
+        }
+
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            state.store(out, null);
+        }
+        try {
+            Files.move(temp, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static ChunkedUploadSession load(String id, Path dataFile, Path stateFile) throws IOException {
+        Properties state = new Properties();
+        try (var in = Files.newInputStream(stateFile)) {
+            state.load(in);
+        }
+        return new ChunkedUploadSession(id,
+                state.getProperty("owner"),
+                state.getProperty("fileName"),
+                state.getProperty("contentType"),
+                Long.parseLong(state.getProperty("size")),
+                Integer.parseInt(state.getProperty("chunkSize")),
+                dataFile,
+                stateFile,
+                BitSet.valueOf(Base64.getDecoder().decode(state.getProperty("received", ""))),
+                state.getProperty("sha256"));
+    }
+}
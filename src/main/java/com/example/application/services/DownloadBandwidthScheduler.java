@@ -0,0 +1,238 @@
+package com.example.application.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares the download bandwidth fairly between users.
+ *
+ * Every download runs as a {@link Stream} opened for the user requesting it. A user may only have
+ * a few streams in flight; further requests are turned away at once rather than parking a request
+ * thread, so opening many connections neither buys a bigger share nor ties up the connector. When
+ * a bandwidth budget is configured, the bytes written are paced by two token buckets: a global one
+ * at the full budget and one per user at an equal share of it among the users currently
+ * downloading. A single user gets the whole budget, and each newcomer immediately takes their
+ * share from the others.
+ *
+ * Contention shows up as requests turned away for lack of a slot and as streams waiting in
+ * {@code pace} for their tokens.
+ */
+@Service
+public class DownloadBandwidthScheduler {
+
+    private static final long MIN_BURST_BYTES = 64 * 1024;
+    private static final long BURST_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Bytes per second for all downloads together; zero disables pacing
+    @Value("${app.download.bandwidth:0}")
+    private DataSize bandwidth;
+
+    @Value("${app.download.max-streams-per-user:4}")
+    private int maxStreamsPerUser;
+
+    private final Map<String, UserShare> users = new ConcurrentHashMap<>();
+    private final TokenBucket globalBucket = new TokenBucket();
+    private final AtomicInteger activeUsers = new AtomicInteger();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicInteger pacedStreams = new AtomicInteger();
+    private final Counter bytesSent;
+    private final Counter rejected;
+
+    public DownloadBandwidthScheduler(MeterRegistry registry) {
+        Gauge.builder("gradsy.download.active", activeStreams, AtomicInteger::get)
+                .description("Downloads currently being sent")
+                .register(registry);
+        Gauge.builder("gradsy.download.users", activeUsers, AtomicInteger::get)
+                .description("Users with at least one download being sent")
+                .register(registry);
+        this.bytesSent = Counter.builder("gradsy.download.sent")
+                .description("Bytes of material sent to clients")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("gradsy.download.waiting", pacedStreams, AtomicInteger::get)
+                .description("Downloads currently waiting for their share of the bandwidth")
+                .register(registry);
+        this.rejected = Counter.builder("gradsy.download.rejected")
+                .description("Downloads turned away because the user had no free slot")
+                .register(registry);
+    }
+
+    /**
+     * Opens a download stream for {@code user}, unless they already have the maximum number of
+     * downloads in flight.
+     *
+     * @return the stream, to be closed when the response is written, or empty if all of the user's
+     *         slots are taken
+     */
+    public Optional<Stream> open(String user) {
+        UserShare share = users.compute(user, (key, existing) -> {
+            UserShare result = existing != null ? existing : new UserShare(maxStreamsPerUser);
+            result.references++;
+            return result;
+        });
+        if (!share.slots.tryAcquire()) {
+            release(user);
+            rejected.increment();
+            return Optional.empty();
+        }
+        if (share.streams.getAndIncrement() == 0) {
+            activeUsers.incrementAndGet();
+        }
+        activeStreams.incrementAndGet();
+        return Optional.of(new Stream(user, share));
+    }
+
+    /**
+     * The number of downloads currently being sent.
+     */
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    private void release(String user) {
+        users.computeIfPresent(user, (key, share) -> --share.references == 0 ? null : share);
+    }
+
+    /**
+     * Blocks until {@code bytes} may be sent for {@code share}.
+     */
+    private void pace(UserShare share, long bytes) throws InterruptedIOException {
+        bytesSent.increment(bytes);
+        long rate = bandwidth.toBytes();
+        if (rate <= 0) {
+            return;
+        }
+        double userRate = (double) rate / Math.max(1, activeUsers.get());
+        long now = System.nanoTime();
+        long wait = Math.max(globalBucket.reserve(bytes, rate, now), share.bucket.reserve(bytes, userRate, now));
+        if (wait > 0) {
+            pacedStreams.incrementAndGet();
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while pacing a download");
+            } finally {
+                pacedStreams.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * One download in flight. Closing it frees the user's slot, so it must stay open until the
+     * whole body has been sent.
+     */
+    public final class Stream implements AutoCloseable {
+        private final String user;
+        private final UserShare share;
+        private boolean closed;
+
+        private Stream(String user, UserShare share) {
+            this.user = user;
+            this.share = share;
+        }
+
+        /**
+         * True if downloads are paced, in which case the body must be written through
+         * {@link #wrap(OutputStream)} rather than handed to the container's sendfile.
+         */
+        public boolean isPaced() {
+            return bandwidth.toBytes() > 0;
+        }
+
+        /**
+         * Wraps the response body so that writes are paced to this user's share.
+         */
+        public OutputStream wrap(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    pace(share, 1);
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        int piece = (int) Math.min(len, MIN_BURST_BYTES);
+                        pace(share, piece);
+                        out.write(b, off, piece);
+                        off += piece;
+                        len -= piece;
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // The container owns the response stream
+                    flush();
+                }
+            };
+        }
+
+        /**
+         * Records bytes handed to the container to send on this stream's behalf, e.g. through sendfile.
+         */
+        public void recordSent(long bytes) {
+            bytesSent.increment(bytes);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            activeStreams.decrementAndGet();
+            if (share.streams.decrementAndGet() == 0) {
+                activeUsers.decrementAndGet();
+            }
+            share.slots.release();
+            release(user);
+        }
+    }
+
+    private static final class UserShare {
+        final Semaphore slots;
+        final AtomicInteger streams = new AtomicInteger();
+        final TokenBucket bucket = new TokenBucket();
+        // Open streams and ones being opened, guarded by the users map
+        int references;
+
+        UserShare(int maxStreams) {
+            this.slots = new Semaphore(Math.max(1, maxStreams));
+        }
+    }
+
+    /**
+     * Token bucket whose rate may change between calls. Callers reserve tokens up front and are
+     * told how long to wait before using them, so a large write is never starved by small ones.
+     */
+    static final class TokenBucket {
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        synchronized long reserve(long bytes, double bytesPerSecond, long now) {
+            double burst = Math.max(MIN_BURST_BYTES, bytesPerSecond * BURST_WINDOW_NANOS / 1e9);
+            tokens = Math.min(burst, tokens + (now - lastRefill) * bytesPerSecond / 1e9);
+            lastRefill = now;
+            tokens -= bytes;
+            return tokens >= 0 ? 0 : (long) (-tokens / bytesPerSecond * 1e9);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.application.services;
+
+import com.example.application.storage.MaterialStore;
+import com.example.application.storage.StoredFile;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the contents of the most downloaded material files in memory, outside the Java heap.
+ *
+ * Eviction is Caffeine's W-TinyLFU, which weighs how often a file is requested as well as how
+ * recently, so a burst of one-off downloads doesn't push out the files everyone is fetching. A file
+ * is only read into the cache on its second request within a short window, so files downloaded
+ * once don't cost a copy into memory either. Stored files never change under their key, so entries
+ * only need invalidating when {@link LearningMaterialService} removes a file.
+ *
+ * Direct buffers are otherwise only freed once the garbage collector gets round to them, which
+ * could leave far more than the configured size allocated. Each file's memory is therefore freed
+ * as soon as it has been evicted and the last download reading it has closed its {@link Lease}.
+ */
+@Service
+public class HotFileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(HotFileCache.class);
+
+    private final MaterialStore materialStore;
+    private final long maxFileSize;
+    private final Cache<String, Entry> contents;
+    // Keys requested recently but not yet cached
+    private final Cache<String, Boolean> seen;
+    private final Counter servedBytes;
+    // Including evicted files still being sent
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    public HotFileCache(MaterialStore materialStore, MeterRegistry registry,
+                        @Value("${app.download.cache.size:128MB}") DataSize size,
+                        @Value("${app.download.cache.max-file-size:16MB}") DataSize maxFileSize) {
+        this.materialStore = materialStore;
+        this.maxFileSize = Math.min(maxFileSize.toBytes(), size.toBytes());
+        this.contents = Caffeine.newBuilder()
+                .maximumWeight(size.toBytes())
+                .weigher((String key, Entry entry) -> entry.content.capacity())
+                // Evicts on the thread that added a file, so memory is given back as soon as it's over
+                .executor(Runnable::run)
+                .removalListener((String key, Entry entry, RemovalCause cause) -> entry.release())
+                .recordStats()
+                .build();
+        this.seen = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+
+        CaffeineCacheMetrics.monitor(registry, contents, "gradsy.download.cache");
+        Gauge.builder("gradsy.download.cache.bytes", contents,
+                        cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Bytes of material held in the download cache")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("gradsy.download.cache.allocated", allocatedBytes, AtomicLong::get)
+                .description("Direct memory held by the download cache, including evicted files still being sent")
+                .baseUnit("bytes")
+                .register(registry);
+        this.servedBytes = Counter.builder("gradsy.download.cache.served")
+                .description("Bytes of downloads sent from the cache instead of being read from storage")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Returns the contents of {@code file}, reading it into the cache if it has been asked for
+     * before and is small enough. The contents stay valid until the returned lease is closed.
+     */
+    public Optional<Lease> get(StoredFile file) {
+        if (file.size() > maxFileSize) {
+            return Optional.empty();
+        }
+        Entry entry = contents.getIfPresent(file.key());
+        if (entry == null) {
+            if (seen.asMap().putIfAbsent(file.key(), Boolean.TRUE) == null) {
+                return Optional.empty();
+            }
+            entry = contents.get(file.key(), key -> load(file));
+            if (entry == null) {
+                return Optional.empty();
+            }
+            seen.invalidate(file.key());
+        }
+        if (!entry.retain()) {
+            // Evicted and freed in the meantime
+            return Optional.empty();
+        }
+        return Optional.of(new Lease(entry, servedBytes));
+    }
+
+    /**
+     * Drops a file that was changed or removed from the store.
+     */
+    public void invalidate(String key) {
+        contents.invalidate(key);
+        seen.invalidate(key);
+    }
+
+    private Entry load(StoredFile file) {
+        Entry entry = new Entry(ByteBuffer.allocateDirect((int) file.size()));
+        ByteBuffer content = entry.content;
+        try (InputStream in = materialStore.open(file.key(), 0, file.size());
+             ReadableByteChannel channel = Channels.newChannel(in)) {
+            while (content.hasRemaining()) {
+                if (channel.read(content) < 0) {
+                    log.warn("Stored file {} is shorter than its recorded {} bytes, not caching it", file.key(), file.size());
+                    entry.release();
+                    return null;
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Could not read {} into the download cache: {}", file.key(), ex.getMessage());
+            entry.release();
+            return null;
+        }
+        content.flip();
+        return entry;
+    }
+
+    /**
+     * A download's hold on a cached file. Its memory is not freed before the lease is closed.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final ByteBuffer content;
+        private final Counter servedBytes;
+        private boolean closed;
+
+        private Lease(Entry entry, Counter servedBytes) {
+            this.entry = entry;
+            this.content = entry.content.asReadOnlyBuffer();
+            this.servedBytes = servedBytes;
+        }
+
+        /**
+         * The file's contents, as a read-only view of its own; callers may move its position freely
+         * but must not use it after closing the lease.
+         */
+        public ByteBuffer content() {
+            return content;
+        }
+
+        /**
+         * Records bytes of the contents written to a response, which may be fewer than the whole
+         * file, e.g. for a range request.
+         */
+        public void recordServed(long bytes) {
+            servedBytes.increment(bytes);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                entry.release();
+            }
+        }
+    }
+
+    /**
+     * A cached file, counting the cache itself and each open lease as a reference.
+     */
+    private final class Entry {
+        private final ByteBuffer content;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Entry(ByteBuffer content) {
+            this.content = content;
+            allocatedBytes.addAndGet(content.capacity());
+        }
+
+        boolean retain() {
+            for (int count = references.get(); count > 0; count = references.get()) {
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                allocatedBytes.addAndGet(-content.capacity());
+                DirectMemory.free(content);
+            }
+        }
+    }
+
+    /**
+     * Frees a direct buffer right away through {@code sun.misc.Unsafe#invokeCleaner}, where the
+     * runtime allows it, rather than whenever the garbage collector finds it unreachable.
+     */
+    private static final class DirectMemory {
+        private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+        static void free(ByteBuffer buffer) {
+            if (INVOKE_CLEANER == null) {
+                return;
+            }
+            try {
+                INVOKE_CLEANER.invokeExact(buffer);
+            } catch (Throwable ex) {
+                log.warn("Could not free a download cache buffer, leaving it to the garbage collector", ex);
+            }
+        }
+
+        private static MethodHandle findInvokeCleaner() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                return MethodHandles.lookup()
+                        .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                        .bindTo(theUnsafe.get(null));
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                log.info("Download cache buffers will be freed by the garbage collector: {}", ex.toString());
+                return null;
+            }
+        }
+    }
+}
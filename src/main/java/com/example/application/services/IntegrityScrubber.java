@@ -0,0 +1,267 @@
+package com.example.application.services;
+
+import com.example.application.storage.MaterialStore;
+import com.example.application.storage.StoredFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Re-reads stored materials in the background and checks them against the checksum taken at
+ * upload, so truncated or corrupted files are found before a student downloads them.
+ *
+ * Files are stored under the SHA-256 of their contents, so the key is the checksum: a file verifies
+ * if its contents still hash to its name. Gzip variants are decompressed and checked against the
+ * key of the file they were made from. Files stored under generated names from before content
+ * addressing have no checksum and are skipped.
+ *
+ * A pass reads each file front to back in large buffers, on a low-priority thread, at no more than
+ * a fixed number of bytes per second, and pauses while many downloads are in flight so it doesn't
+ * compete with them for the disk.
+ */
+@Service
+public class IntegrityScrubber {
+
+    private static final Logger log = LoggerFactory.getLogger(IntegrityScrubber.class);
+
+    private static final Pattern CONTENT_KEY = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long BUSY_PAUSE_MILLIS = 1000;
+
+    @Autowired
+    private MaterialStore materialStore;
+
+    @Autowired
+    private DownloadBandwidthScheduler downloads;
+
+    @Value("${app.storage.scrub.bytes-per-second:16MB}")
+    private DataSize bytesPerSecond;
+
+    // The scan waits while more downloads than this are being sent
+    @Value("${app.storage.scrub.busy-downloads:8}")
+    private int busyDownloads;
+
+    private final Map<String, ScrubFailure> failures = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Instant lastPassStarted;
+    private volatile Instant lastPassCompleted;
+    private volatile int lastPassVerified;
+
+    private final Counter verifiedFiles;
+    private final Counter scannedBytes;
+    private final Counter detectedFailures;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "integrity-scrubber");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * A stored file that failed verification.
+     *
+     * @param detectedAt when the problem was first seen
+     * @param lastConfirmed when the problem was last seen, so failures fixed or removed since can be dropped
+     */
+    public record ScrubFailure(String key, long size, String problem, Instant detectedAt, Instant lastConfirmed) {
+    }
+
+    public IntegrityScrubber(MeterRegistry registry) {
+        this.verifiedFiles = Counter.builder("gradsy.storage.scrub.verified")
+                .description("Stored files whose checksum was verified")
+                .register(registry);
+        this.scannedBytes = Counter.builder("gradsy.storage.scrub.scanned")
+                .description("Bytes read by the integrity scrubber")
+                .baseUnit("bytes")
+                .register(registry);
+        this.detectedFailures = Counter.builder("gradsy.storage.scrub.failures")
+                .description("Checksum failures detected by the integrity scrubber")
+                .register(registry);
+        Gauge.builder("gradsy.storage.scrub.corrupt", failures, Map::size)
+                .description("Stored files currently known to fail verification")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.storage.scrub.interval:PT24H}", initialDelayString = "${app.storage.scrub.initial-delay:PT1H}")
+    public void scheduledPass() {
+        startPass();
+    }
+
+    /**
+     * Starts a pass over all stored files in the background, unless one is already running.
+     *
+     * @return true if a pass was started
+     */
+    public boolean startPass() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                runPass();
+            } catch (IOException | UncheckedIOException ex) {
+                log.warn("Integrity scrub failed", ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                log.info("Integrity scrub interrupted");
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void runPass() throws IOException, InterruptedException {
+        Instant started = Instant.now();
+        lastPassStarted = started;
+        Pacer pacer = new Pacer(bytesPerSecond.toBytes());
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int verified = 0;
+        int failed = 0;
+
+        try (Stream<StoredFile> stored = materialStore.list()) {
+            for (Iterator<StoredFile> files = stored.iterator(); files.hasNext(); ) {
+                StoredFile file = files.next();
+                String originalKey = MaterialCompressor.originalKey(file.key());
+                if (!CONTENT_KEY.matcher(originalKey).matches()) {
+                    continue;
+                }
+                String problem = verify(file, originalKey, buffer, pacer);
+                if (problem == null) {
+                    verified++;
+                    verifiedFiles.increment();
+                    failures.remove(file.key());
+                } else if (materialStore.stat(file.key()).isPresent()) {
+                    // Files deleted while being read are not failures
+                    failed++;
+                    recordFailure(file, problem);
+                }
+            }
+        }
+
+        // Anything not seen again in this pass has been fixed or deleted
+        failures.values().removeIf(failure -> failure.lastConfirmed().isBefore(started));
+        lastPassVerified = verified;
+        lastPassCompleted = Instant.now();
+        log.info("Integrity scrub: {} files verified, {} failed", verified, failed);
+    }
+
+    /**
+     * Reads {@code file} through and checks it hashes to {@code originalKey}.
+     *
+     * @return a description of the problem, or null if the file is intact
+     */
+    private String verify(StoredFile file, String originalKey, byte[] buffer, Pacer pacer) throws InterruptedException {
+        MessageDigest digest = StagedUpload.newDigest();
+        long read = 0;
+        try (InputStream raw = materialStore.open(file.key(), 0, file.size());
+             InputStream in = originalKey.equals(file.key()) ? raw : new GZIPInputStream(raw, BUFFER_SIZE)) {
+            int n;
+            while ((n = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+                digest.update(buffer, 0, n);
+                read += n;
+                scannedBytes.increment(n);
+                pacer.pace(n);
+                while (downloads.getActiveStreams() > busyDownloads) {
+                    TimeUnit.MILLISECONDS.sleep(BUSY_PAUSE_MILLIS);
+                }
+            }
+        } catch (IOException ex) {
+            return "Unreadable after " + read + " bytes: " + ex.getMessage();
+        }
+        if (!StagedUpload.toHex(digest).equals(originalKey)) {
+            return "Checksum mismatch (" + read + " bytes read)";
+        }
+        return null;
+    }
+
+    private void recordFailure(StoredFile file, String problem) {
+        Instant now = Instant.now();
+        failures.compute(file.key(), (key, previous) -> {
+            if (previous == null) {
+                detectedFailures.increment();
+                log.error("Stored file {} failed verification: {}", key, problem);
+                return new ScrubFailure(key, file.size(), problem, now, now);
+            }
+            return new ScrubFailure(key, file.size(), problem, previous.detectedAt(), now);
+        });
+    }
+
+    public List<ScrubFailure> getFailures() {
+        return failures.values().stream()
+                .sorted(Comparator.comparing(ScrubFailure::detectedAt).reversed())
+                .toList();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Instant getLastPassStarted() {
+        return lastPassStarted;
+    }
+
+    public Instant getLastPassCompleted() {
+        return lastPassCompleted;
+    }
+
+    public int getLastPassVerified() {
+        return lastPassVerified;
+    }
+
+    /**
+     * Keeps reads to a fixed number of bytes per second. Time spent paused doesn't build up credit
+     * beyond a second's worth.
+     */
+    private static class Pacer {
+        private final long bytesPerSecond;
+        private long next = System.nanoTime();
+
+        Pacer(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void pace(long read) throws InterruptedException {
+            if (bytesPerSecond <= 0) {
+                return;
+            }
+            next = Math.max(next, System.nanoTime() - TimeUnit.SECONDS.toNanos(1)) + (long) (read * 1e9 / bytesPerSecond);
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.application.services;
+
+import com.example.application.data.QuestionStatisticsRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Item analysis of quiz questions: how many students answer each question correctly, how well the
+ * question tells strong students from weak ones (the point-biserial correlation between answering
+ * it correctly and the attempt's score), and how often each option of a choice question is picked.
+ *
+ * Rather than scanning every attempt when a teacher asks, each question keeps running totals in
+ * {@code quiz_item_stats}: answers, correct answers, and the sums of the attempts' scores, of their
+ * squares and of the scores of correct answers, from which the correlation follows directly. The
+ * totals grow with {@link QuizAttemptCompletedEvent}s once their transaction commits. Completions
+ * are summed in memory and added to the table every few seconds by a single writer, so a burst of
+ * submissions updates each question's row once. Totals of the last few seconds are therefore lost
+ * if the server stops abruptly; {@link #rebuild} recomputes them from the stored answers.
+ *
+ * A quiz's analysis is read with two queries whose size depends on its questions only, and cached
+ * until its totals next change.
+ */
+@Service
+public class ItemAnalysis {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemAnalysis.class);
+
+    // Updates and inserts take the same parameters, so rows that don't exist yet can be inserted as they are
+    private static final String UPDATE_ITEM = "UPDATE quiz_item_stats SET attempts = attempts + ?, correct_count = correct_count + ?, "
+            + "score_sum = score_sum + ?, score_square_sum = score_square_sum + ?, correct_score_sum = correct_score_sum + ? "
+            + "WHERE quiz_id = ? AND question_id = ?";
+    private static final String INSERT_ITEM = "INSERT INTO quiz_item_stats "
+            + "(attempts, correct_count, score_sum, score_square_sum, correct_score_sum, quiz_id, question_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_OPTION = "UPDATE quiz_item_options SET selections = selections + ? "
+            + "WHERE quiz_id = ? AND question_id = ? AND option_text = ?";
+    private static final String INSERT_OPTION = "INSERT INTO quiz_item_options (selections, quiz_id, question_id, option_text) VALUES (?, ?, ?, ?)";
+
+    private static final String TOTALS_FROM_ANSWERS = "SELECT a.question_id, COUNT(*), "
+            + "SUM(CASE WHEN a.is_correct THEN 1 ELSE 0 END), SUM(t.score), SUM(CAST(t.score AS BIGINT) * t.score), "
+            + "SUM(CASE WHEN a.is_correct THEN t.score ELSE 0 END) "
+            + "FROM quiz_attempt_answers a JOIN quiz_attempts t ON t.id = a.attempt_id "
+            + "WHERE t.quiz_id = ? AND t.is_completed = TRUE AND t.score IS NOT NULL GROUP BY a.question_id";
+    private static final String COMPLETED_ATTEMPTS = "SELECT id FROM quiz_attempts WHERE quiz_id = ? AND is_completed = TRUE AND score IS NOT NULL";
+    private static final String OPTIONS_FROM_ANSWERS = "SELECT a.question_id, q.question_type, a.answer_text, COUNT(*) "
+            + "FROM quiz_attempt_answers a JOIN quiz_attempts t ON t.id = a.attempt_id JOIN quiz_questions q ON q.id = a.question_id "
+            + "WHERE t.quiz_id = ? AND t.is_completed = TRUE AND t.score IS NOT NULL AND q.question_type IN (?, ?) "
+            + "GROUP BY a.question_id, q.question_type, a.answer_text";
+
+    private static final int MAX_OPTION_LENGTH = 255;
+
+    @Autowired
+    private QuestionStatisticsRepository questionStatisticsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<Long, PendingTotals> pending = new ConcurrentHashMap<>();
+    private final Cache<Long, List<Item>> analyses;
+    // Completions of quizzes being rebuilt, held back until it is known whether the rebuild counted them
+    private final Map<Long, List<QuizAttemptCompletedEvent>> rebuilding = new ConcurrentHashMap<>();
+    // The attempts each recent rebuild counted, whose completion events may still come in late
+    private final Cache<Long, Set<Long>> rebuilt = Caffeine.newBuilder()
+            .maximumSize(100)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * The analysis of one question.
+     *
+     * @param attempts       completed attempts that answered the question
+     * @param discrimination the point-biserial correlation between answering correctly and the
+     *                       attempt's score, from -1 to 1, or NaN while everyone got the same
+     * @param options        how often each option was selected, most selected first; empty for
+     *                       questions that aren't multiple choice or multiple select
+     */
+    public record Item(Long questionId, String questionText, long attempts, long correct, double discrimination,
+                       Map<String, Long> options) {
+
+        /**
+         * The share of correct answers, from 0 (nobody) to 1 (everybody), or NaN if unanswered.
+         */
+        public double difficulty() {
+            return attempts > 0 ? (double) correct / attempts : Double.NaN;
+        }
+    }
+
+    public ItemAnalysis(MeterRegistry registry) {
+        this.analyses = Caffeine.newBuilder()
+                .maximumSize(500)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, analyses, "gradsy.quiz.item-analysis");
+        Gauge.builder("gradsy.quiz.item-analysis.pending", pending, Map::size)
+                .description("Quizzes with completions not yet added to their item statistics")
+                .register(registry);
+    }
+
+    /**
+     * The analysis of each question of a quiz answered so far, by question id. Completions of the
+     * last few seconds may not be included yet.
+     */
+    public List<Item> analyse(Long quizId) {
+        return analyses.get(quizId, this::load);
+    }
+
+    @TransactionalEventListener
+    public void attemptCompleted(QuizAttemptCompletedEvent event) {
+        if (event.answerKey() == null || event.grade() == null) {
+            return;
+        }
+        rebuilding.compute(event.quizId(), (quizId, held) -> {
+            if (held != null) {
+                held.add(event);
+                return held;
+            }
+            Set<Long> counted = rebuilt.getIfPresent(quizId);
+            if (counted == null || !counted.contains(event.attemptId())) {
+                add(event);
+            }
+            return null;
+        });
+    }
+
+    private void add(QuizAttemptCompletedEvent event) {
+        AnswerKey answerKey = event.answerKey();
+        AnswerKey.Grade grade = event.grade();
+        long score = grade.score();
+        pending.compute(event.quizId(), (quizId, totals) -> {
+            PendingTotals result = totals != null ? totals : new PendingTotals();
+            for (int i = 0; i < answerKey.getQuestionCount(); i++) {
+                String answer = grade.answers()[i];
+                if (answer == null) {
+                    continue;
+                }
+                long questionId = answerKey.getQuestionId(i);
+                boolean correct = grade.correct()[i];
+                result.addItem(questionId, 1, correct ? 1 : 0, score, score * score, correct ? score : 0);
+                for (String option : options(answerKey.getQuestionType(i), answer)) {
+                    result.addOption(questionId, option, 1);
+                }
+            }
+            return result;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.quiz.item-analysis.flush-interval:PT5S}")
+    public void flushPending() {
+        flush();
+    }
+
+    @PreDestroy
+    void flushAll() {
+        flush();
+    }
+
+    /**
+     * Adds the totals summed up since the last flush to the table.
+     *
+     * @return the number of quizzes whose totals were written
+     */
+    synchronized int flush() {
+        Map<Long, PendingTotals> due = new TreeMap<>();
+        for (Long quizId : pending.keySet()) {
+            PendingTotals totals = pending.remove(quizId);
+            if (totals != null) {
+                due.put(quizId, totals);
+            }
+        }
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> due.forEach(this::write));
+            analyses.invalidateAll(due.keySet());
+            return due.size();
+        } catch (RuntimeException ex) {
+            log.warn("Updating the item statistics of {} quizzes failed, retrying", due.size(), ex);
+            due.forEach((quizId, totals) -> pending.merge(quizId, totals, PendingTotals::addAll));
+            return 0;
+        }
+    }
+
+    /**
+     * Recomputes a quiz's totals from the stored answers of its completed attempts, for when they
+     * have been regraded, or were completed before totals were kept. This scans all of the quiz's
+     * attempts, so it is for occasional use only.
+     *
+     * An attempt's completion event only arrives after its commit, so it may come in while the
+     * stored answers are read, or even after, for an attempt they include. Events for the quiz are
+     * held back until the rebuild knows which attempts it counted, and those attempts are ignored
+     * if their events turn up later still.
+     */
+    public synchronized void rebuild(Long quizId) {
+        rebuilding.put(quizId, new ArrayList<>());
+        // Completions summed up so far are in the stored answers already
+        PendingTotals dropped = pending.remove(quizId);
+        Set<Long> counted = new HashSet<>();
+        try {
+            PendingTotals totals = new PendingTotals();
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            // The attempts counted must be exactly the ones summed up
+            tx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+            tx.executeWithoutResult(status -> {
+                counted.addAll(jdbcTemplate.queryForList(COMPLETED_ATTEMPTS, Long.class, quizId));
+                jdbcTemplate.query(TOTALS_FROM_ANSWERS, rs -> {
+                    totals.addItem(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6));
+                }, quizId);
+                jdbcTemplate.query(OPTIONS_FROM_ANSWERS, rs -> {
+                    for (String option : options(rs.getString(2), rs.getString(3))) {
+                        totals.addOption(rs.getLong(1), option, rs.getLong(4));
+                    }
+                }, quizId, QuestionGraders.MULTIPLE_CHOICE, QuestionGraders.MULTIPLE_SELECT);
+                deleteTotals(quizId);
+                write(quizId, totals);
+            });
+            rebuilt.put(quizId, counted);
+        } catch (RuntimeException ex) {
+            // Nothing was rebuilt, so the totals still need what was summed up
+            counted.clear();
+            if (dropped != null) {
+                pending.merge(quizId, dropped, PendingTotals::addAll);
+            }
+            throw ex;
+        } finally {
+            rebuilding.compute(quizId, (id, held) -> {
+                held.stream().filter(event -> !counted.contains(event.attemptId())).forEach(this::add);
+                return null;
+            });
+            analyses.invalidate(quizId);
+        }
+    }
+
+    /**
+     * Drops the totals of a deleted quiz.
+     */
+    public synchronized void delete(Long quizId) {
+        pending.remove(quizId);
+        rebuilt.invalidate(quizId);
+        deleteTotals(quizId);
+        analyses.invalidate(quizId);
+    }
+
+    private void deleteTotals(Long quizId) {
+        jdbcTemplate.update("DELETE FROM quiz_item_options WHERE quiz_id = ?", quizId);
+        jdbcTemplate.update("DELETE FROM quiz_item_stats WHERE quiz_id = ?", quizId);
+    }
+
+    private void write(Long quizId, PendingTotals totals) {
+        List<Object[]> items = new ArrayList<>(totals.items.size());
+        totals.items.forEach((questionId, sums) ->
+                items.add(new Object[] {sums[0], sums[1], sums[2], sums[3], sums[4], quizId, questionId}));
+        upsert(UPDATE_ITEM, INSERT_ITEM, items);
+
+        List<Object[]> options = new ArrayList<>();
+        totals.options.forEach((questionId, selections) -> selections.forEach((option, count) ->
+                options.add(new Object[] {count, quizId, questionId, option})));
+        upsert(UPDATE_OPTION, INSERT_OPTION, options);
+    }
+
+    // Only this class writes the tables, under its lock, so no other insert can come in between
+    private void upsert(String update, String insert, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int[] updated = jdbcTemplate.batchUpdate(update, rows);
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (updated[i] == 0) {
+                missing.add(rows.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(insert, missing);
+        }
+    }
+
+    private List<Item> load(Long quizId) {
+        Map<Long, Map<String, Long>> options = new HashMap<>();
+        for (QuestionStatisticsRepository.OptionSelections row : questionStatisticsRepository.findOptionSelections(quizId)) {
+            options.computeIfAbsent(row.getQuestionId(), id -> new LinkedHashMap<>()).put(row.getOptionText(), row.getSelections());
+        }
+        List<Item> items = new ArrayList<>();
+        for (QuestionStatisticsRepository.ItemTotals row : questionStatisticsRepository.findItemTotals(quizId)) {
+            double discrimination = pointBiserial(row.getAttempts(), row.getCorrect(), row.getScoreSum(),
+                    row.getScoreSquareSum(), row.getCorrectScoreSum());
+            items.add(new Item(row.getQuestionId(), row.getQuestionText(), row.getAttempts(), row.getCorrect(), discrimination,
+                    options.getOrDefault(row.getQuestionId(), Map.of())));
+        }
+        items.sort(Comparator.comparing(Item::questionId));
+        return List.copyOf(items);
+    }
+
+    /**
+     * The point-biserial correlation (M1 - M0) / s * sqrt(p q) from running totals: M1 and M0 are
+     * the mean scores of the attempts that answered correctly and incorrectly, s the standard
+     * deviation of all scores and p the share answering correctly.
+     *
+     * @return NaN if everybody answered alike or scored the same
+     */
+    static double pointBiserial(long attempts, long correct, long scoreSum, long scoreSquareSum, long correctScoreSum) {
+        if (correct == 0 || correct == attempts) {
+            return Double.NaN;
+        }
+        double n = attempts;
+        double mean = scoreSum / n;
+        double variance = scoreSquareSum / n - mean * mean;
+        if (variance <= 0) {
+            return Double.NaN;
+        }
+        double p = correct / n;
+        double meanCorrect = (double) correctScoreSum / correct;
+        double meanIncorrect = (double) (scoreSum - correctScoreSum) / (attempts - correct);
+        return (meanCorrect - meanIncorrect) / Math.sqrt(variance) * Math.sqrt(p * (1 - p));
+    }
+
+    // The options a choice answer selected; other answers are free text and aren't counted
+    private static List<String> options(String questionType, String answer) {
+        if (QuestionGraders.MULTIPLE_CHOICE.equals(questionType)) {
+            return answer.isBlank() ? List.of() : List.of(truncate(answer.strip()));
+        }
+        if (QuestionGraders.MULTIPLE_SELECT.equals(questionType)) {
+            List<String> options = new ArrayList<>();
+            for (String option : answer.split(QuestionGraders.SEPARATOR)) {
+                if (!option.isBlank()) {
+                    options.add(truncate(option.strip()));
+                }
+            }
+            return options;
+        }
+        return List.of();
+    }
+
+    private static String truncate(String option) {
+        return option.length() > MAX_OPTION_LENGTH ? option.substring(0, MAX_OPTION_LENGTH) : option;
+    }
+
+    // Guarded by the pending map, or local to a flush or rebuild
+    private static final class PendingTotals {
+        // Answers, correct answers, score sum, sum of squared scores, score sum of correct answers
+        final Map<Long, long[]> items = new TreeMap<>();
+        final Map<Long, Map<String, Long>> options = new TreeMap<>();
+
+        void addItem(long questionId, long attempts, long correct, long scoreSum, long scoreSquareSum, long correctScoreSum) {
+            long[] sums = items.computeIfAbsent(questionId, id -> new long[5]);
+            sums[0] += attempts;
+            sums[1] += correct;
+            sums[2] += scoreSum;
+            sums[3] += scoreSquareSum;
+            sums[4] += correctScoreSum;
+        }
+
+        void addOption(long questionId, String option, long selections) {
+            options.computeIfAbsent(questionId, id -> new TreeMap<>()).merge(option, selections, Long::sum);
+        }
+
+        PendingTotals addAll(PendingTotals other) {
+            other.items.forEach((questionId, sums) -> addItem(questionId, sums[0], sums[1], sums[2], sums[3], sums[4]));
+            other.options.forEach((questionId, selections) -> selections.forEach((option, count) -> addOption(questionId, option, count)));
+            return this;
+        }
+    }
+}
@@ -3,7 +3,12 @@ package com.example.application.services;
 import com.example.application.data.LearningMaterial;
 import com.example.application.data.LearningMaterialRepository;
 import com.example.application.data.User;
+import com.example.application.storage.MaterialStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -13,22 +18,46 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 public class LearningMaterialService {
+
+    private static final Logger log = LoggerFactory.getLogger(LearningMaterialService.class);
     
     @Autowired
     private LearningMaterialRepository learningMaterialRepository;
+
+    @Autowired
+    private MaterialStore materialStore;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private HotFileCache hotFileCache;
+
+    // Uploads are written here first and moved into the store once complete. It lives inside the
+    // upload directory so that, with the file system store, the final move is a rename.
+    private final Path stagingLocation;
+
+    private final Object[] blobLocks = new Object[64];
     
-    private final Path fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
-    
-    public LearningMaterialService() {
+    public LearningMaterialService(@Value("${app.upload-dir:./uploads}") String uploadDir) {
+        this.stagingLocation = Paths.get(uploadDir).toAbsolutePath().normalize().resolve(".staging");
+        for (int i = 0; i < blobLocks.length; i++) {
+            blobLocks[i] = new Object();
+        }
         try {
-            Files.createDirectories(fileStorageLocation);
+            Files.createDirectories(stagingLocation);
         } catch (IOException ex) {
             throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
         }
@@ -53,67 +82,229 @@ public class LearningMaterialService {
     public Optional<LearningMaterial> findById(Long id) {
         return learningMaterialRepository.findById(id);
     }
+
+    /**
+     * Finds a material stored under {@code key}, e.g. to name a stored file in a report. Materials
+     * sharing a file may have different names and types, so downloads use their own material.
+     */
+    public Optional<LearningMaterial> findByStoredFile(String key) {
+        return learningMaterialRepository.findFirstByFilePath(key);
+    }
+    
+    Path getStagingLocation() {
+        return stagingLocation;
+    }
+
+    /**
+     * Creates an empty file in the staging area for an upload to stream into.
+     */
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile(stagingLocation, "upload-", ".part");
+    }
+    
+    /**
+     * Streams {@code inputStream} into the staging area, computing its SHA-256 on the way.
+     */
+    public StagedUpload stage(InputStream inputStream, String fileName, String contentType) throws IOException {
+        Path stagedFile = createStagingFile();
+        MessageDigest digest = StagedUpload.newDigest();
+        try (InputStream in = new DigestInputStream(inputStream, digest)) {
+            long size = Files.copy(in, stagedFile, StandardCopyOption.REPLACE_EXISTING);
+            return new StagedUpload(stagedFile, fileName, contentType, size, StagedUpload.toHex(digest));
+        } catch (IOException ex) {
+            discardStagingFile(stagedFile);
+            throw ex;
+        }
+    }
     
     /**
      * Saves or updates a learning material, handling file storage if an input stream is provided.
+     * The stream is copied into a staging file first so a failed copy never leaves a partial file
+     * in the upload directory.
      * 
      * @param material The LearningMaterial entity to save/update.
      * @param inputStream The InputStream of the file to upload (can be null if no file).
-     * @param fileName The original name of the file (used to create a unique stored name).
+     * @param fileName The original name of the file.
      * @param contentType The MIME type of the file.
      * @param contentLength The length of the file content.
      * @param uploader The user uploading the material.
      * @return The saved LearningMaterial entity.
      */
     public LearningMaterial saveLearningMaterial(LearningMaterial material, InputStream inputStream, String fileName, String contentType, long contentLength, User uploader) {
+        StagedUpload upload = null;
         if (inputStream != null && fileName != null && !fileName.isEmpty()) {
-            // Generate a unique file name to prevent collisions
-            String uniqueFileName = UUID.randomUUID().toString() + "_" + fileName;
-            Path targetLocation = fileStorageLocation.resolve(uniqueFileName);
-
             try {
-                if (material.getId() != null && material.getFilePath() != null) {
-                    try {
-                         Files.deleteIfExists(fileStorageLocation.resolve(material.getFilePath()));
-                    } catch (IOException ex) {
-                        System.err.println("Could not delete old file: " + material.getFilePath() + " - " + ex.getMessage());
-                    }
-                }
-
-                Files.copy(inputStream, targetLocation);
-                material.setFilePath(uniqueFileName);
+                upload = stage(inputStream, fileName, contentType);
             } catch (IOException ex) {
-                throw new RuntimeException("Could not store file " + uniqueFileName, ex);
-            } finally {
-                 try { inputStream.close(); } catch (IOException e) { /* ignore close exception */ }
+                throw new RuntimeException("Could not store file " + fileName, ex);
             }
-        } else if (material.getId() == null) {
-             material.setFilePath(null);
         }
+        return saveLearningMaterial(material, upload, uploader);
+    }
 
-
+    /**
+     * Saves or updates a learning material whose file has already been staged.
+     *
+     * Files are stored under the SHA-256 of their content, so uploading the same bytes for several
+     * materials keeps a single copy. {@link LearningMaterial#getFilePath()} holds that key, and the
+     * number of materials sharing it is the blob's reference count: a blob is only removed once no
+     * material points at it any more.
+     *
+     * @param material The LearningMaterial entity to save/update.
+     * @param upload The staged upload (can be null if no file).
+     * @param uploader The user uploading the material.
+     * @return The saved LearningMaterial entity.
+     */
+    public LearningMaterial saveLearningMaterial(LearningMaterial material, StagedUpload upload, User uploader) {
         material.setUploadedBy(uploader);
         material.setUpdatedAt(LocalDateTime.now());
-        return learningMaterialRepository.save(material);
+
+        if (upload == null || upload.fileName() == null || upload.fileName().isEmpty()) {
+            if (material.getId() == null) {
+                material.setFilePath(null);
+            }
+            return learningMaterialRepository.save(material);
+        }
+
+        String previousKey = material.getId() != null ? material.getFilePath() : null;
+        String key = upload.sha256();
+        LearningMaterial saved;
+        synchronized (blobLock(key)) {
+            try {
+                materialStore.put(key, upload.file());
+            } catch (IOException ex) {
+                discardStagingFile(upload.file());
+                throw new RuntimeException("Could not store file " + upload.fileName(), ex);
+            }
+            hotFileCache.invalidate(key);
+
+            material.setFilePath(key);
+            material.setFileName(Paths.get(upload.fileName()).getFileName().toString());
+            material.setFileSize(upload.size());
+            material.setFileType(upload.contentType());
+            saved = learningMaterialRepository.save(material);
+        }
+
+        eventPublisher.publishEvent(new MaterialStoredEvent(key, upload.contentType()));
+        if (previousKey != null && !previousKey.equals(key)) {
+            releaseBlob(previousKey);
+        }
+        return saved;
     }
-    
+
+    /**
+     * Removes a staged upload that will not be saved, e.g. after a failed or abandoned upload.
+     */
+    public void discardStagingFile(Path stagedFile) {
+        if (stagedFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(stagedFile);
+        } catch (IOException ex) {
+            log.warn("Could not delete staged upload {}: {}", stagedFile, ex.getMessage());
+        }
+    }
+
+    /**
+     * Deletes staged uploads older than {@code maxAge}, left behind when a browser went away
+     * mid-upload or the server stopped before they were saved.
+     *
+     * @return the number of files deleted
+     */
+    public int discardStaleStagingFiles(Duration maxAge) throws IOException {
+        Instant cutoff = Instant.now().minus(maxAge);
+        int deleted = 0;
+        try (Stream<Path> staged = Files.list(stagingLocation)) {
+            for (Path file : (Iterable<Path>) staged::iterator) {
+                if (Files.isRegularFile(file) && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    discardStagingFile(file);
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
     public void deleteMaterial(Long id) {
         LearningMaterial material = findById(id).orElse(null);
-        if (material != null && material.getFilePath() != null) {
+        if (material != null) {
+            learningMaterialRepository.deleteById(id);
+            if (material.getFilePath() != null) {
+                releaseBlob(material.getFilePath());
+            }
+        }
+    }
+
+    /**
+     * Deletes the stored file for {@code key}, and its compressed variant, if no material references
+     * it any more. Runs under the same lock as
+     * {@link #saveLearningMaterial(LearningMaterial, StagedUpload, User)}, so an upload of identical
+     * bytes can't reuse a blob that is being removed.
+     */
+    private void releaseBlob(String key) {
+        synchronized (blobLock(key)) {
+            if (learningMaterialRepository.countByFilePath(key) > 0) {
+                return;
+            }
+            hotFileCache.invalidate(key);
+            hotFileCache.invalidate(MaterialCompressor.gzipKey(key));
             try {
-                Files.deleteIfExists(fileStorageLocation.resolve(material.getFilePath()));
+                materialStore.delete(key);
+                materialStore.delete(MaterialCompressor.gzipKey(key));
             } catch (IOException ex) {
-                System.err.println("Error deleting file: " + ex.getMessage());
+                log.warn("Could not delete stored file {}, leaving it to the orphan collector: {}", key, ex.getMessage());
             }
-            learningMaterialRepository.deleteById(id);
         }
     }
 
+    /**
+     * Quarantines a stored object if the material file it belongs to is no longer referenced.
+     * Checked under the blob lock so it cannot race with an upload of the same bytes.
+     *
+     * @return true if the object was quarantined
+     */
+    public boolean quarantineIfUnreferenced(String key) throws IOException {
+        String originalKey = MaterialCompressor.originalKey(key);
+        synchronized (blobLock(originalKey)) {
+            if (learningMaterialRepository.countByFilePath(originalKey) > 0) {
+                return false;
+            }
+            materialStore.quarantine(key);
+            return true;
+        }
+    }
+
+    /**
+     * Deletes a quarantined object for good, unless a material has started referencing its file
+     * again, in which case it is restored.
+     *
+     * @return true if the object was deleted
+     */
+    public boolean purgeQuarantined(String key) throws IOException {
+        String originalKey = MaterialCompressor.originalKey(key);
+        synchronized (blobLock(originalKey)) {
+            if (learningMaterialRepository.countByFilePath(originalKey) > 0) {
+                materialStore.restore(key);
+                return false;
+            }
+            materialStore.purge(key);
+            return true;
+        }
+    }
+
+    private Object blobLock(String key) {
+        return blobLocks[Math.floorMod(key.hashCode(), blobLocks.length)];
+    }
+
     public LearningMaterial save(LearningMaterial material) {
         return learningMaterialRepository.save(material);
     }
 
     public void delete(LearningMaterial material) {
         learningMaterialRepository.delete(material);
+        if (material.getFilePath() != null) {
+            releaseBlob(material.getFilePath());
+        }
     }
 } 
\ No newline at end of file
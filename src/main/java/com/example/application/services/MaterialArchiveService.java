@@ -0,0 +1,145 @@
+package com.example.application.services;
+
+import com.example.application.data.LearningMaterial;
+import com.example.application.storage.MaterialStore;
+import com.example.application.storage.StoredFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes materials into a ZIP archive as it is being sent, one entry at a time straight from
+ * storage, so neither the archive nor any of its files is ever held in memory or on disk.
+ *
+ * Files that are compressed already (images, audio, video, archives, Office documents) are STORED
+ * rather than deflated again, which would cost CPU for nothing. A STORED entry needs its CRC up
+ * front, so those files are read twice: once for the checksum, then for the data.
+ */
+@Service
+public class MaterialArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(MaterialArchiveService.class);
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "jar",
+            "jpg", "jpeg", "png", "gif", "webp", "heic",
+            "mp3", "m4a", "aac", "ogg", "oga", "opus", "flac",
+            "mp4", "m4v", "mov", "mkv", "webm", "avi",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub");
+
+    @Autowired
+    private MaterialStore materialStore;
+
+    /**
+     * Writes an archive of the files of {@code materials} to {@code out}. Materials without a file,
+     * or whose file is missing from storage, are left out. Does not close {@code out}.
+     *
+     * @return the number of files written
+     */
+    public int writeArchive(List<LearningMaterial> materials, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+        Set<String> usedNames = new HashSet<>();
+        int written = 0;
+
+        for (LearningMaterial material : materials) {
+            if (material.getFilePath() == null) {
+                continue;
+            }
+            Optional<StoredFile> stored = materialStore.stat(material.getFilePath());
+            if (stored.isEmpty()) {
+                log.warn("Leaving material {} out of the archive, its file {} is missing", material.getId(), material.getFilePath());
+                continue;
+            }
+            StoredFile file = stored.get();
+            String name = entryName(material, usedNames);
+
+            ZipEntry entry = new ZipEntry(name);
+            entry.setTime(material.getCreatedAt() != null
+                    ? material.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : file.lastModified());
+            if (isCompressed(name, material.getFileType())) {
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(file.size());
+                entry.setCompressedSize(file.size());
+                entry.setCrc(crc(file));
+            }
+            zip.putNextEntry(entry);
+            try (InputStream in = materialStore.open(file.key(), 0, file.size())) {
+                in.transferTo(zip);
+            }
+            zip.closeEntry();
+            written++;
+        }
+        zip.finish();
+        return written;
+    }
+
+    /**
+     * True for formats that gain nothing from being deflated.
+     */
+    static boolean isCompressed(String fileName, String contentType) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot >= 0 && COMPRESSED_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+            return true;
+        }
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("video/")
+                || (type.startsWith("audio/") && !type.contains("wav"))
+                || (type.startsWith("image/") && !type.contains("svg") && !type.contains("bmp") && !type.contains("tiff"));
+    }
+
+    private long crc(StoredFile file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = materialStore.open(file.key(), 0, file.size())) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * The material's original file name, made safe for an archive and unique within it.
+     */
+    private static String entryName(LearningMaterial material, Set<String> usedNames) {
+        String name = material.getFileName();
+        if (name == null || name.isBlank()) {
+            name = material.getFilePath();
+        }
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1)
+                .replaceAll("[\\x00-\\x1f:*?\"<>|]", "_");
+        if (name.isBlank() || name.equals(".") || name.equals("..")) {
+            name = material.getFilePath();
+        }
+
+        String candidate = name;
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int copy = 2; !usedNames.add(candidate.toLowerCase(Locale.ROOT)); copy++) {
+            candidate = base + " (" + copy + ")" + extension;
+        }
+        return candidate;
+    }
+}
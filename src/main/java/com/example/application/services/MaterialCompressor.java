@@ -0,0 +1,179 @@
+package com.example.application.services;
+
+import com.example.application.storage.MaterialStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Produces gzip variants of stored materials in the background, so downloads can be sent
+ * compressed without compressing on every request. A variant is stored as {@code <key>.gz} and only
+ * kept when it is meaningfully smaller than the original; media and archive formats are skipped
+ * outright.
+ *
+ * Compression runs on a single low-priority thread: bandwidth is scarcer than CPU here, but uploads
+ * and page rendering should not compete with it.
+ */
+@Service
+public class MaterialCompressor {
+
+    private static final Logger log = LoggerFactory.getLogger(MaterialCompressor.class);
+
+    public static final String GZIP_SUFFIX = ".gz";
+
+    private static final Pattern CONTENT_KEY = Pattern.compile("[0-9a-f]{64}");
+
+    // Files below this size fit in a packet or two anyway
+    private static final long MIN_SIZE = 1024;
+    // Keep a variant only if it saves at least 10%
+    private static final double MAX_RATIO = 0.9;
+    // A prefix of this size is compressed first so incompressible files are abandoned early
+    private static final int SAMPLE_SIZE = 256 * 1024;
+
+    private static final Set<String> INCOMPRESSIBLE_TYPES = Set.of(
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/vnd.rar", "application/x-bzip2", "application/x-xz");
+
+    @Autowired
+    private MaterialStore materialStore;
+
+    @Autowired
+    private LearningMaterialService materialService;
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "material-compressor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public static String gzipKey(String key) {
+        return key + GZIP_SUFFIX;
+    }
+
+    /**
+     * Maps a variant key back to the key of the file it was made from; other keys map to themselves.
+     */
+    public static String originalKey(String key) {
+        if (key.endsWith(GZIP_SUFFIX) && CONTENT_KEY.matcher(key.substring(0, key.length() - GZIP_SUFFIX.length())).matches()) {
+            return key.substring(0, key.length() - GZIP_SUFFIX.length());
+        }
+        return key;
+    }
+
+    @EventListener
+    public void onMaterialStored(MaterialStoredEvent event) {
+        if (isWorthTrying(event.contentType()) && inFlight.add(event.key())) {
+            executor.execute(() -> {
+                try {
+                    compress(event.key());
+                } finally {
+                    inFlight.remove(event.key());
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void compress(String key) {
+        Path staged = null;
+        try {
+            long size = materialStore.stat(key).map(file -> file.size()).orElse(0L);
+            if (size < MIN_SIZE || materialStore.stat(gzipKey(key)).isPresent() || !sampleCompresses(key, size)) {
+                return;
+            }
+
+            staged = materialService.createStagingFile();
+            try (InputStream in = materialStore.open(key, 0, size);
+                 OutputStream out = new BestGzipOutputStream(Files.newOutputStream(staged))) {
+                in.transferTo(out);
+            }
+            if (Files.size(staged) > size * MAX_RATIO) {
+                return;
+            }
+            materialStore.put(gzipKey(key), staged);
+            staged = null;
+
+            // The original may have been released while this ran; don't leave the variant behind
+            if (materialStore.stat(key).isEmpty()) {
+                materialStore.delete(gzipKey(key));
+            }
+        } catch (IOException ex) {
+            log.warn("Could not compress stored file {}: {}", key, ex.getMessage());
+        } finally {
+            materialService.discardStagingFile(staged);
+        }
+    }
+
+    private boolean sampleCompresses(String key, long size) throws IOException {
+        if (size <= SAMPLE_SIZE) {
+            return true;
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try (InputStream in = materialStore.open(key, 0, SAMPLE_SIZE);
+             OutputStream out = new DeflaterOutputStream(counter, deflater)) {
+            in.transferTo(out);
+        } finally {
+            deflater.end();
+        }
+        return counter.count <= SAMPLE_SIZE * MAX_RATIO;
+    }
+
+    private static boolean isWorthTrying(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase();
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            type = type.substring(0, parameters).trim();
+        }
+        return !(type.startsWith("image/") || type.startsWith("video/") || type.startsWith("audio/")
+                || INCOMPRESSIBLE_TYPES.contains(type));
+    }
+
+    private static class BestGzipOutputStream extends GZIPOutputStream {
+        BestGzipOutputStream(OutputStream out) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
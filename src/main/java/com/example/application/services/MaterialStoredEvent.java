@@ -0,0 +1,7 @@
+package com.example.application.services;
+
+/**
+ * Published by {@link LearningMaterialService} once a material's file has been stored under {@code key}.
+ */
+public record MaterialStoredEvent(String key, String contentType) {
+}
@@ -0,0 +1,259 @@
+package com.example.application.services;
+
+import com.example.application.data.LearningMaterialRepository;
+import com.example.application.storage.MaterialStore;
+import com.example.application.storage.StoredFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Finds stored files that no material references any more and removes them in two steps:
+ * first they are quarantined, then purged once they have sat in quarantine for a while.
+ *
+ * Both sides are read in key order and merged, so memory use does not grow with the number of
+ * materials: storage is listed lazily and {@code learning_material.file_path} is read in pages.
+ * Files stored under generated names from before content addressing don't follow that order and
+ * are looked up one by one. The walk is paced to a fixed number of keys per second so it doesn't
+ * compete with downloads for disk or object store requests. As a walk can take hours, it runs on a
+ * thread of its own rather than holding up the other scheduled tasks.
+ */
+@Service
+public class OrphanCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(OrphanCollector.class);
+
+    private static final Pattern CONTENT_KEY = Pattern.compile("[0-9a-f]{64}");
+    private static final int PAGE_SIZE = 1000;
+
+    @Autowired
+    private MaterialStore materialStore;
+
+    @Autowired
+    private LearningMaterialRepository learningMaterialRepository;
+
+    @Autowired
+    private LearningMaterialService materialService;
+
+    // Files younger than this are left alone: their material may not be committed yet
+    @Value("${app.storage.gc.min-age:PT24H}")
+    private Duration minAge;
+
+    @Value("${app.storage.gc.quarantine-period:P7D}")
+    private Duration quarantinePeriod;
+
+    @Value("${app.storage.gc.keys-per-second:500}")
+    private int keysPerSecond;
+
+    private final Counter reclaimedBytes;
+    private final Counter quarantinedFiles;
+    private final Counter purgedFiles;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "orphan-collector");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public OrphanCollector(MeterRegistry registry) {
+        this.reclaimedBytes = Counter.builder("gradsy.storage.gc.reclaimed")
+                .description("Bytes freed by purging unreferenced material files")
+                .baseUnit("bytes")
+                .register(registry);
+        this.quarantinedFiles = Counter.builder("gradsy.storage.gc.quarantined")
+                .description("Unreferenced material files moved to quarantine")
+                .register(registry);
+        this.purgedFiles = Counter.builder("gradsy.storage.gc.purged")
+                .description("Quarantined material files deleted for good")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.storage.gc.interval:PT6H}", initialDelayString = "${app.storage.gc.initial-delay:PT15M}")
+    public void scheduledCollection() {
+        startCollection();
+    }
+
+    /**
+     * Starts a collection in the background, unless one is already running.
+     *
+     * @return true if a collection was started
+     */
+    public boolean startCollection() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                collect();
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    void collect() {
+        try {
+            Instant now = Instant.now();
+            long reclaimed = purgeExpired(now);
+            int quarantined = quarantineOrphans(now);
+            int staleUploads = materialService.discardStaleStagingFiles(minAge);
+            log.info("Orphan collection: {} files quarantined, {} bytes reclaimed, {} stale uploads removed",
+                    quarantined, reclaimed, staleUploads);
+        } catch (IOException | UncheckedIOException ex) {
+            log.warn("Orphan collection failed", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.info("Orphan collection interrupted");
+        }
+    }
+
+    /**
+     * Quarantines stored files older than the minimum age that no material references.
+     *
+     * @return the number of files quarantined
+     */
+    int quarantineOrphans(Instant now) throws IOException, InterruptedException {
+        long cutoff = now.minus(minAge).toEpochMilli();
+        Iterator<String> referenced = referencedContentKeys();
+        String current = referenced.hasNext() ? referenced.next() : null;
+        Pacer pacer = new Pacer(keysPerSecond);
+        int quarantined = 0;
+
+        try (Stream<StoredFile> stored = materialStore.list()) {
+            for (Iterator<StoredFile> files = stored.iterator(); files.hasNext(); ) {
+                StoredFile file = files.next();
+                pacer.pace();
+                String originalKey = MaterialCompressor.originalKey(file.key());
+
+                boolean isReferenced;
+                if (CONTENT_KEY.matcher(originalKey).matches()) {
+                    while (current != null && current.compareTo(originalKey) < 0) {
+                        current = referenced.hasNext() ? referenced.next() : null;
+                    }
+                    isReferenced = originalKey.equals(current);
+                } else {
+                    isReferenced = learningMaterialRepository.countByFilePath(originalKey) > 0;
+                }
+
+                if (!isReferenced && file.lastModified() < cutoff && materialService.quarantineIfUnreferenced(file.key())) {
+                    quarantinedFiles.increment();
+                    quarantined++;
+                    log.info("Quarantined unreferenced file {} ({} bytes)", file.key(), file.size());
+                }
+            }
+        }
+        return quarantined;
+    }
+
+    /**
+     * Deletes files that have been in quarantine longer than the quarantine period.
+     *
+     * @return the number of bytes freed
+     */
+    long purgeExpired(Instant now) throws IOException, InterruptedException {
+        long cutoff = now.minus(quarantinePeriod).toEpochMilli();
+        Pacer pacer = new Pacer(keysPerSecond);
+        long reclaimed = 0;
+
+        try (Stream<StoredFile> quarantined = materialStore.listQuarantined()) {
+            for (Iterator<StoredFile> files = quarantined.iterator(); files.hasNext(); ) {
+                StoredFile file = files.next();
+                if (file.lastModified() >= cutoff) {
+                    continue;
+                }
+                pacer.pace();
+                if (materialService.purgeQuarantined(file.key())) {
+                    reclaimedBytes.increment(file.size());
+                    purgedFiles.increment();
+                    reclaimed += file.size();
+                } else {
+                    log.info("Restored quarantined file {}, it is referenced again", file.key());
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Content keys referenced by materials, in ascending order, read a page at a time.
+     */
+    private Iterator<String> referencedContentKeys() {
+        return new Iterator<>() {
+            private Iterator<String> page = List.<String>of().iterator();
+            private String last = "";
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !exhausted) {
+                    List<String> keys = learningMaterialRepository.findFilePathsAfter(last, PageRequest.of(0, PAGE_SIZE));
+                    exhausted = keys.size() < PAGE_SIZE;
+                    if (!keys.isEmpty()) {
+                        last = keys.get(keys.size() - 1);
+                    }
+                    page = keys.stream().filter(key -> CONTENT_KEY.matcher(key).matches()).iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public String next() {
+                hasNext();
+                return page.next();
+            }
+        };
+    }
+
+    /**
+     * Spaces out work to a fixed rate.
+     */
+    private static class Pacer {
+        private final long intervalNanos;
+        private long next = System.nanoTime();
+
+        Pacer(int perSecond) {
+            this.intervalNanos = perSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / perSecond : 0;
+        }
+
+        void pace() throws InterruptedException {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            next = Math.max(next, System.nanoTime() - TimeUnit.SECONDS.toNanos(1)) + intervalNanos;
+        }
+    }
+}
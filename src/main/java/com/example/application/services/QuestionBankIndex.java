@@ -0,0 +1,139 @@
+package com.example.application.services;
+
+import com.example.application.data.QuizRepository;
+import com.example.application.data.SamplingRule;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The question bank: every tagged question, indexed from tag, and from tag and difficulty, to a
+ * sorted array of question ids.
+ *
+ * Sampling a quiz's {@link SamplingRule}s for an attempt then costs O(k) for k questions drawn,
+ * with Floyd's algorithm picking k distinct positions of the precomputed arrays, instead of
+ * shuffling the candidates in the database for every attempt.
+ *
+ * The index is built from the database on first use and thrown away by {@link #invalidate()} when
+ * a quiz is saved, since its questions' tags may have changed.
+ */
+@Service
+public class QuestionBankIndex {
+
+    private static final long[] NONE = new long[0];
+
+    @Autowired
+    private QuizRepository quizRepository;
+
+    // Null until first used, and after invalidate
+    private volatile Map<String, long[]> index;
+
+    public QuestionBankIndex(MeterRegistry registry) {
+        Gauge.builder("gradsy.quiz.bank.tags", this, bank -> {
+                    Map<String, long[]> current = bank.index;
+                    return current != null ? current.size() : 0;
+                })
+                .description("Tag and difficulty combinations indexed in the question bank")
+                .register(registry);
+    }
+
+    /**
+     * The ids of the questions a rule draws from, ascending.
+     */
+    public long[] candidates(SamplingRule rule) {
+        return index().getOrDefault(key(rule.getTag(), rule.getDifficulty()), NONE);
+    }
+
+    /**
+     * The ids of all questions some rules draw from, ascending.
+     */
+    public long[] pool(Collection<SamplingRule> rules) {
+        Set<Long> pool = new TreeSet<>();
+        for (SamplingRule rule : rules) {
+            for (long id : candidates(rule)) {
+                pool.add(id);
+            }
+        }
+        return pool.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Draws the questions of one attempt: {@code count} distinct random questions for each rule,
+     * or all of them where the bank has fewer. A question matching several rules is asked once.
+     *
+     * @return the ids drawn, ascending
+     */
+    public long[] sample(Collection<SamplingRule> rules, Random random) {
+        Set<Long> drawn = new TreeSet<>();
+        for (SamplingRule rule : rules) {
+            long[] candidates = candidates(rule);
+            int n = candidates.length;
+            int k = Math.min(Math.max(0, rule.getCount()), n);
+            // Floyd: each j adds one new position, t if it is still free and j itself otherwise
+            Set<Integer> picked = new HashSet<>(k * 2);
+            for (int j = n - k; j < n; j++) {
+                int t = random.nextInt(j + 1);
+                int position = picked.add(t) ? t : j;
+                if (position == j) {
+                    picked.add(j);
+                }
+                drawn.add(candidates[position]);
+            }
+        }
+        return drawn.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Waits for a load in progress, which may have read the tags from before the change
+    public synchronized void invalidate() {
+        index = null;
+    }
+
+    private Map<String, long[]> index() {
+        Map<String, long[]> current = index;
+        if (current == null) {
+            synchronized (this) {
+                current = index;
+                if (current == null) {
+                    current = load();
+                    index = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Map<String, long[]> load() {
+        Map<String, List<Long>> ids = new HashMap<>();
+        for (QuizRepository.TaggedQuestion tagged : quizRepository.findTaggedQuestions()) {
+            ids.computeIfAbsent(key(tagged.getTag(), null), key -> new ArrayList<>()).add(tagged.getQuestionId());
+            if (tagged.getDifficulty() != null) {
+                ids.computeIfAbsent(key(tagged.getTag(), tagged.getDifficulty()), key -> new ArrayList<>()).add(tagged.getQuestionId());
+            }
+        }
+        Map<String, long[]> loaded = new HashMap<>(ids.size() * 2);
+        ids.forEach((key, questionIds) -> {
+            long[] sorted = questionIds.stream().mapToLong(Long::longValue).distinct().toArray();
+            Arrays.sort(sorted);
+            loaded.put(key, sorted);
+        });
+        return Map.copyOf(loaded);
+    }
+
+    private static String key(String tag, Integer difficulty) {
+        String normalized = tag == null ? "" : tag.strip().toLowerCase(Locale.ROOT);
+        return difficulty == null ? normalized : normalized + "#" + difficulty;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.application.services;
+
+/**
+ * Grades the questions of one {@code questionType}. Graders are looked up through
+ * {@link QuestionGraders}; further types are added by declaring a bean implementing this.
+ */
+public interface QuestionGrader {
+
+    /**
+     * Decides whether a submitted answer is correct. Must be thread-safe, as one matcher is shared
+     * by every submission.
+     */
+    @FunctionalInterface
+    interface Matcher {
+        boolean matches(String answer);
+    }
+
+    /**
+     * The question type graded, as stored in {@code QuizQuestion.questionType}.
+     */
+    String getType();
+
+    /**
+     * Prepares everything about {@code correctAnswer} that doesn't depend on the submission, so
+     * that matching an answer does as little as possible.
+     *
+     * @param correctAnswer the question's correct answer, never null
+     */
+    Matcher compile(String correctAnswer);
+}
@@ -0,0 +1,253 @@
+package com.example.application.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The {@link QuestionGrader} of each question type, and the matchers they compiled.
+ *
+ * A matcher only depends on the question's type and correct answer, so matchers are cached by
+ * those: a question compiles once per version whichever quizzes' {@link AnswerKey}s it is part of,
+ * and editing its answer compiles a new one. Types without a grader of their own, including
+ * {@code MULTIPLE_CHOICE} and {@code SHORT_ANSWER}, are graded as text.
+ */
+@Service
+public class QuestionGraders {
+
+    public static final String MULTIPLE_CHOICE = "MULTIPLE_CHOICE";
+    public static final String MULTIPLE_SELECT = "MULTIPLE_SELECT";
+    public static final String NUMERIC = "NUMERIC";
+    public static final String REGEX = "REGEX";
+    public static final String TEXT = "TEXT";
+
+    // Between the options of a multiple-select answer
+    public static final String SEPARATOR = ";";
+
+    private static final Logger log = LoggerFactory.getLogger(QuestionGraders.class);
+
+    private static final QuestionGrader.Matcher NEVER = answer -> false;
+
+    private final Map<String, QuestionGrader> graders = new ConcurrentHashMap<>();
+    private final QuestionGrader text = new TextGrader();
+
+    @Autowired(required = false)
+    private List<QuestionGrader> customGraders = List.of();
+
+    private record CompiledKey(String type, String correctAnswer) {
+    }
+
+    private final Cache<CompiledKey, QuestionGrader.Matcher> matchers;
+
+    public QuestionGraders(MeterRegistry registry) {
+        this.matchers = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, matchers, "gradsy.quiz.answer-matchers");
+        for (QuestionGrader grader : List.of(text, new MultipleSelectGrader(), new NumericGrader(), new RegexGrader())) {
+            graders.put(grader.getType(), grader);
+        }
+    }
+
+    @PostConstruct
+    void registerCustomGraders() {
+        customGraders.forEach(grader -> graders.put(grader.getType(), grader));
+    }
+
+    /**
+     * The matcher for a question's correct answer, compiled on first use.
+     */
+    public QuestionGrader.Matcher matcher(String questionType, String correctAnswer) {
+        if (correctAnswer == null) {
+            return NEVER;
+        }
+        QuestionGrader grader = questionType != null ? graders.getOrDefault(questionType, text) : text;
+        return matchers.get(new CompiledKey(grader.getType(), correctAnswer), key -> grader.compile(correctAnswer));
+    }
+
+    /**
+     * Case- and whitespace-insensitive text, see {@link AnswerKey#normalize}.
+     */
+    static final class TextGrader implements QuestionGrader {
+
+        @Override
+        public String getType() {
+            return TEXT;
+        }
+
+        @Override
+        public Matcher compile(String correctAnswer) {
+            String expected = AnswerKey.normalize(correctAnswer);
+            return answer -> expected.equals(AnswerKey.normalize(answer));
+        }
+    }
+
+    /**
+     * All of the correct options and nothing else, in any order, each compared as text. Options
+     * are separated by {@link #SEPARATOR}.
+     */
+    static final class MultipleSelectGrader implements QuestionGrader {
+
+        @Override
+        public String getType() {
+            return MULTIPLE_SELECT;
+        }
+
+        @Override
+        public Matcher compile(String correctAnswer) {
+            Set<String> expected = options(correctAnswer);
+            return answer -> expected.equals(options(answer));
+        }
+
+        private static Set<String> options(String answer) {
+            Set<String> options = new HashSet<>();
+            for (String option : answer.split(SEPARATOR)) {
+                String normalized = AnswerKey.normalize(option);
+                if (!normalized.isEmpty()) {
+                    options.add(normalized);
+                }
+            }
+            return options;
+        }
+    }
+
+    /**
+     * A number within a tolerance, written {@code 9.81 +- 0.05} (or with {@code ±}). Without one,
+     * the answer must be equal up to rounding.
+     */
+    static final class NumericGrader implements QuestionGrader {
+
+        private static final Pattern WITH_TOLERANCE = Pattern.compile("\\s*(\\S+?)\\s*(?:\\+-|\\+/-|±)\\s*(\\S+)\\s*");
+
+        @Override
+        public String getType() {
+            return NUMERIC;
+        }
+
+        @Override
+        public Matcher compile(String correctAnswer) {
+            double expected;
+            double tolerance;
+            try {
+                java.util.regex.Matcher parts = WITH_TOLERANCE.matcher(correctAnswer);
+                if (parts.matches()) {
+                    expected = Double.parseDouble(parts.group(1));
+                    tolerance = Math.abs(Double.parseDouble(parts.group(2)));
+                } else {
+                    expected = Double.parseDouble(correctAnswer.strip());
+                    tolerance = Math.ulp(expected) * 4;
+                }
+            } catch (NumberFormatException ex) {
+                log.warn("Numeric question has a correct answer that is not a number: {}", correctAnswer);
+                return NEVER;
+            }
+            return answer -> {
+                try {
+                    return Math.abs(Double.parseDouble(answer.strip()) - expected) <= tolerance;
+                } catch (NumberFormatException ex) {
+                    return false;
+                }
+            };
+        }
+    }
+
+    /**
+     * Answers matching a regular expression as a whole, ignoring surrounding whitespace.
+     *
+     * A pattern such as {@code (a+)+$} can backtrack for ages on the wrong answer, and grading runs
+     * on the single submission writer, so a match that takes longer than {@link #MATCH_TIMEOUT} is
+     * given up and the answer counted as incorrect.
+     */
+    static final class RegexGrader implements QuestionGrader {
+
+        static final Duration MATCH_TIMEOUT = Duration.ofMillis(100);
+
+        @Override
+        public String getType() {
+            return REGEX;
+        }
+
+        @Override
+        public Matcher compile(String correctAnswer) {
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(correctAnswer);
+            } catch (PatternSyntaxException ex) {
+                log.warn("Regex question has an invalid pattern, grading it as text: {}", correctAnswer);
+                pattern = Pattern.compile(Pattern.quote(correctAnswer));
+            }
+            Pattern compiled = pattern;
+            return answer -> {
+                try {
+                    return compiled.matcher(new Deadline(answer.strip(), System.nanoTime() + MATCH_TIMEOUT.toNanos())).matches();
+                } catch (MatchTimeoutException ex) {
+                    log.warn("Regex question pattern took over {} ms on an answer, marking it incorrect: {}",
+                            MATCH_TIMEOUT.toMillis(), compiled.pattern());
+                    return false;
+                }
+            };
+        }
+    }
+
+    /**
+     * The answer being matched, checking the time now and then as the matcher reads it: however
+     * a pattern backtracks, it has to keep reading characters.
+     */
+    private static final class Deadline implements CharSequence {
+        private static final int CHECK_INTERVAL = 4096;
+
+        private final String text;
+        private final long deadline;
+        private int reads;
+
+        Deadline(String text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++reads % CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                throw new MatchTimeoutException();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static final class MatchTimeoutException extends RuntimeException {
+        MatchTimeoutException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.application.services;
+
+/**
+ * Published by {@link QuizService} when a quiz attempt is graded and completed. Listeners that
+ * must only see durable completions should listen after commit.
+ *
+ * @param grade the attempt's grade, indexed like the questions of {@code answerKey}
+ */
+public record QuizAttemptCompletedEvent(Long attemptId, Long quizId, Long studentId, AnswerKey answerKey, AnswerKey.Grade grade) {
+}
@@ -0,0 +1,11 @@
+package com.example.application.services;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by {@link QuizService} when a student starts a quiz attempt.
+ *
+ * @param durationMinutes the quiz's time limit, or null if it has none
+ */
+public record QuizAttemptStartedEvent(Long attemptId, LocalDateTime startTime, Integer durationMinutes) {
+}
@@ -0,0 +1,88 @@
+package com.example.application.services;
+
+import com.example.application.data.QuizAttemptRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers "has this student completed this quiz" from memory: for every quiz asked about, the ids
+ * of the students who completed it, in a compressed bitmap.
+ *
+ * A quiz's bitmap is loaded on first use with one query over the covering index on
+ * {@code quiz_attempts (quiz_id, is_completed, student_id)}, and kept current from
+ * {@link QuizAttemptCompletedEvent}s once their transaction commits. Bitmaps are replaced rather
+ * than changed, so lookups never lock. Completions only ever get added, so a bitmap can only lag
+ * behind the database for the moment between a commit and its event.
+ */
+@Service
+public class QuizCompletionIndex {
+
+    @Autowired
+    private QuizAttemptRepository quizAttemptRepository;
+
+    private final Map<Long, RoaringBitmap> completedByQuiz = new ConcurrentHashMap<>();
+
+    public QuizCompletionIndex(MeterRegistry registry) {
+        Gauge.builder("gradsy.quiz.completions.bytes", completedByQuiz,
+                        bitmaps -> bitmaps.values().stream().mapToLong(RoaringBitmap::getLongSizeInBytes).sum())
+                .description("Memory used by the quiz completion index")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public boolean hasCompleted(Long quizId, Long studentId) {
+        if (quizId == null || studentId == null) {
+            return false;
+        }
+        if (studentId < 0 || studentId > Integer.MAX_VALUE) {
+            // Beyond what the bitmap holds; ids come from a sequence, so this shouldn't happen
+            return quizAttemptRepository.findStudentIdsWhoCompleted(quizId).contains(studentId);
+        }
+        return bitmap(quizId).contains(studentId.intValue());
+    }
+
+    @TransactionalEventListener
+    public void attemptCompleted(QuizAttemptCompletedEvent event) {
+        if (event.studentId() == null || event.studentId() < 0 || event.studentId() > Integer.MAX_VALUE) {
+            return;
+        }
+        // Quizzes not loaded yet will read this completion from the database when they are
+        completedByQuiz.computeIfPresent(event.quizId(), (quizId, completed) -> {
+            if (completed.contains(event.studentId().intValue())) {
+                return completed;
+            }
+            RoaringBitmap updated = completed.clone();
+            updated.add(event.studentId().intValue());
+            return updated;
+        });
+    }
+
+    public void evict(Long quizId) {
+        completedByQuiz.remove(quizId);
+    }
+
+    private RoaringBitmap bitmap(Long quizId) {
+        RoaringBitmap completed = completedByQuiz.get(quizId);
+        if (completed != null) {
+            return completed;
+        }
+        // Loading under the map's lock for this quiz holds back completions until the load is in
+        return completedByQuiz.computeIfAbsent(quizId, id -> {
+            RoaringBitmap loaded = new RoaringBitmap();
+            for (Long studentId : quizAttemptRepository.findStudentIdsWhoCompleted(id)) {
+                if (studentId >= 0 && studentId <= Integer.MAX_VALUE) {
+                    loaded.add(studentId.intValue());
+                }
+            }
+            loaded.runOptimize();
+            return loaded;
+        });
+    }
+}
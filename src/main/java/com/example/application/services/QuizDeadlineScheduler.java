@@ -0,0 +1,163 @@
+package com.example.application.services;
+
+import com.example.application.data.QuizAttemptRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces quiz time limits on the server. Every open attempt of a timed quiz has a deadline in a
+ * {@link TimingWheel}; when it passes, the attempt is submitted with whatever answers autosave has
+ * for it, through the {@link SubmissionPipeline} like any other submission.
+ *
+ * Deadlines are kept in memory only. They are derived from each attempt's start time and its
+ * quiz's duration, so on startup they are rebuilt from the open attempts in the database, and
+ * attempts whose time ran out while the application was down are submitted straight away.
+ */
+@Service
+public class QuizDeadlineScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizDeadlineScheduler.class);
+
+    private static final int WHEEL_SIZE = 512;
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(10);
+
+    @Autowired
+    private QuizAttemptRepository quizAttemptRepository;
+
+    @Autowired
+    private AnswerAutosave answerAutosave;
+
+    @Autowired
+    private SubmissionPipeline submissionPipeline;
+
+    // Allowance beyond the time limit for answers still on their way from the browser
+    @Value("${app.quiz.deadline.grace:PT30S}")
+    private Duration grace;
+
+    private final TimingWheel<Long> wheel;
+    private final Thread ticker;
+    private volatile boolean running = true;
+    private final Counter expired;
+
+    public QuizDeadlineScheduler(MeterRegistry registry,
+                                 @Value("${app.quiz.deadline.tick:PT1S}") Duration tick) {
+        this.wheel = new TimingWheel<>(tick.toNanos(), WHEEL_SIZE, System.nanoTime());
+        this.ticker = new Thread(this::run, "quiz-deadlines");
+        this.ticker.setDaemon(true);
+
+        Gauge.builder("gradsy.quiz.deadlines.tracked", wheel, TimingWheel::size)
+                .description("Open quiz attempts with a deadline")
+                .register(registry);
+        this.expired = Counter.builder("gradsy.quiz.deadlines.expired")
+                .description("Quiz attempts submitted because their time ran out")
+                .register(registry);
+    }
+
+    /**
+     * Restores the deadlines of attempts left open by an earlier run, then starts the clock.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<QuizAttemptRepository.OpenAttempt> open = quizAttemptRepository.findOpenTimedAttempts();
+        for (QuizAttemptRepository.OpenAttempt attempt : open) {
+            track(attempt.getId(), attempt.getStartTime(), attempt.getDurationMinutes());
+        }
+        log.info("Tracking the deadlines of {} open quiz attempts", wheel.size());
+        ticker.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        ticker.interrupt();
+    }
+
+    @EventListener
+    public void attemptStarted(QuizAttemptStartedEvent event) {
+        track(event.attemptId(), event.startTime(), event.durationMinutes());
+    }
+
+    /**
+     * Sets the deadline of an attempt. Attempts without a start time or of quizzes without a time
+     * limit have none.
+     */
+    public void track(Long attemptId, LocalDateTime startTime, Integer durationMinutes) {
+        if (startTime == null || durationMinutes == null || durationMinutes <= 0) {
+            return;
+        }
+        LocalDateTime deadline = startTime.plusMinutes(durationMinutes).plus(grace);
+        wheel.schedule(attemptId, System.nanoTime() + Duration.between(LocalDateTime.now(), deadline).toNanos());
+    }
+
+    /**
+     * Stops tracking an attempt that has been submitted.
+     */
+    public void cancel(Long attemptId) {
+        wheel.cancel(attemptId);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                long wait = wheel.nextTick() - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            List<Long> due = wheel.advance(System.nanoTime());
+            if (!due.isEmpty()) {
+                try {
+                    expire(due);
+                } catch (RuntimeException ex) {
+                    log.error("Submitting {} quiz attempts past their deadline failed, retrying", due.size(), ex);
+                    retryLater(due);
+                }
+            }
+        }
+    }
+
+    /**
+     * Submits attempts whose time is up, with their autosaved answers read in one go.
+     */
+    void expire(List<Long> attemptIds) {
+        Map<Long, Map<Long, String>> answers = answerAutosave.restore(attemptIds);
+        for (Long attemptId : attemptIds) {
+            submissionPipeline.submit(attemptId, answers.get(attemptId)).whenComplete((grade, error) -> {
+                if (error == null) {
+                    expired.increment();
+                    answerAutosave.discard(attemptId);
+                } else if (error instanceof IllegalStateException) {
+                    // Submitted in time after all, or gone
+                    answerAutosave.discard(attemptId);
+                } else {
+                    // A full queue or a rolled-back commit: the attempt is still open
+                    log.warn("Submitting quiz attempt {} past its deadline failed, retrying", attemptId, error);
+                    retryLater(List.of(attemptId));
+                }
+            });
+        }
+    }
+
+    private void retryLater(List<Long> attemptIds) {
+        long retryAt = System.nanoTime() + RETRY_DELAY.toNanos();
+        attemptIds.forEach(attemptId -> wheel.schedule(attemptId, retryAt));
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.QuizAttemptAnswerRepository;
+import com.example.application.data.QuizAttemptAnswerRepository.StoredAnswer;
+import com.example.application.data.QuizAttemptRepository;
+import com.example.application.data.QuizAttemptRepository.AttemptScore;
+import com.example.application.data.QuizRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Recomputes the scores of a quiz's completed attempts from their stored answers, for when a
+ * teacher corrects the answer key after students have taken the quiz.
+ *
+ * A job walks the attempts in id order a chunk at a time, using keyset pagination so that every
+ * page is a short index range scan however deep into the quiz it is. Each chunk is regraded on a
+ * fork-join pool, in a transaction of its own, against a freshly compiled {@link AnswerKey}, and
+ * only the scores and correctness flags that changed are written back, as JDBC batches.
+ *
+ * Only completed attempts are touched, so students can keep submitting meanwhile. Attempts
+ * completed while the job runs may have been graded against the old key, so they are walked again
+ * once the main pass is done.
+ */
+@Service
+public class QuizRegradeService {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizRegradeService.class);
+
+    // Submissions graded shortly before a job started may not have been committed when it read them
+    private static final Duration SUBMISSION_GRACE = Duration.ofMinutes(1);
+
+    private static final String UPDATE_SCORE =
+            "UPDATE quiz_attempts SET score = ?, version = version + 1 WHERE id = ? AND is_completed = TRUE";
+    private static final String UPDATE_CORRECT =
+            "UPDATE quiz_attempt_answers SET is_correct = ?, version = version + 1 WHERE id = ?";
+
+    @Autowired
+    private QuizRepository quizRepository;
+
+    @Autowired
+    private QuizAttemptRepository quizAttemptRepository;
+
+    @Autowired
+    private QuizAttemptAnswerRepository quizAttemptAnswerRepository;
+
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+
+    @Autowired
+    private ItemAnalysis itemAnalysis;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.quiz.regrade.chunk-size:500}")
+    private int chunkSize;
+
+    private final ForkJoinPool pool;
+    private final Map<Long, RegradeJob> jobs = new ConcurrentHashMap<>();
+
+    public QuizRegradeService(@Value("${app.quiz.regrade.parallelism:4}") int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Starts regrading the completed attempts of a quiz in the background, unless a regrade of it
+     * is already running.
+     *
+     * @return the running job, which may have been started earlier
+     * @throws IllegalArgumentException if the quiz doesn't exist
+     */
+    public RegradeJob startRegrade(Long quizId) {
+        if (!quizRepository.existsById(quizId)) {
+            throw new IllegalArgumentException("Quiz with ID " + quizId + " not found.");
+        }
+        RegradeJob created = new RegradeJob(quizId);
+        RegradeJob job = jobs.merge(quizId, created, (existing, fresh) -> existing.isFinished() ? fresh : existing);
+        if (job == created) {
+            pool.execute(() -> run(job));
+        }
+        return job;
+    }
+
+    /**
+     * The running or most recent regrade of a quiz.
+     */
+    public Optional<RegradeJob> findJob(Long quizId) {
+        return Optional.ofNullable(jobs.get(quizId));
+    }
+
+    private void run(RegradeJob job) {
+        try {
+            Quiz quiz = quizRepository.findById(job.quizId)
+                    .orElseThrow(() -> new IllegalArgumentException("Quiz with ID " + job.quizId + " not found."));
+            AnswerKey answerKey = answerKeyCache.get(job.quizId, quiz.getVersion());
+            job.total = quizAttemptRepository.countByQuizIdAndCompletedTrue(job.quizId);
+
+            PageRequest page = PageRequest.ofSize(chunkSize);
+            regradeAll(job, answerKey, afterId -> quizAttemptRepository.findCompletedScores(job.quizId, afterId, page));
+            LocalDateTime since = job.startedAt.minus(SUBMISSION_GRACE);
+            regradeAll(job, answerKey, afterId -> quizAttemptRepository.findCompletedScoresSince(job.quizId, since, afterId, page));
+            // Correct answers and scores have changed, so the item statistics are computed afresh
+            itemAnalysis.rebuild(job.quizId);
+
+            log.info("Regraded quiz {}: {} attempts checked, {} scores changed, {} without stored answers",
+                    job.quizId, job.regraded.get(), job.changed.get(), job.skipped.get());
+            job.finish(RegradeJob.State.COMPLETED, null);
+        } catch (RuntimeException ex) {
+            log.error("Regrading quiz {} failed", job.quizId, ex);
+            job.finish(RegradeJob.State.FAILED, ex.getMessage());
+        }
+    }
+
+    /**
+     * Walks the pages returned by {@code nextPage} for the id after which they start, regrading
+     * each page as a task of its own while the next one is read.
+     */
+    private void regradeAll(RegradeJob job, AnswerKey answerKey, LongFunction<List<AttemptScore>> nextPage) {
+        Deque<ForkJoinTask<?>> inFlight = new ArrayDeque<>();
+        long afterId = 0;
+        List<AttemptScore> page;
+        do {
+            page = nextPage.apply(afterId);
+            if (!page.isEmpty()) {
+                List<AttemptScore> chunk = page;
+                inFlight.add(pool.submit(() -> regradeChunk(job, answerKey, chunk)));
+                afterId = page.get(page.size() - 1).getId();
+            }
+            // Bounds the chunks held in memory; a worker joining a task helps run the others
+            while (inFlight.size() > pool.getParallelism()) {
+                inFlight.poll().join();
+            }
+        } while (page.size() == chunkSize);
+        while (!inFlight.isEmpty()) {
+            inFlight.poll().join();
+        }
+    }
+
+    private void regradeChunk(RegradeJob job, AnswerKey answerKey, List<AttemptScore> attempts) {
+        int[] counts = new int[2];
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Map<Long, List<StoredAnswer>> answersByAttempt = quizAttemptAnswerRepository
+                    .findAnswersByAttemptIds(attempts.stream().map(AttemptScore::getId).toList())
+                    .stream()
+                    .collect(Collectors.groupingBy(StoredAnswer::getAttemptId));
+
+            List<Object[]> scoreUpdates = new ArrayList<>();
+            List<Object[]> correctUpdates = new ArrayList<>();
+            for (AttemptScore attempt : attempts) {
+                List<StoredAnswer> stored = answersByAttempt.get(attempt.getId());
+                if (stored == null) {
+                    // Submitted blank, or before answers were stored: nothing to regrade from
+                    counts[1]++;
+                    continue;
+                }
+                Map<Long, String> answers = new HashMap<>();
+                for (StoredAnswer answer : stored) {
+                    answers.put(answer.getQuestionId(), answer.getAnswerText());
+                }
+                AnswerKey.Grade grade = answerKey.grade(answers, attempt.getSampledQuestionIds());
+                for (StoredAnswer answer : stored) {
+                    int index = answerKey.indexOf(answer.getQuestionId());
+                    boolean correct = index >= 0 && grade.correct()[index];
+                    if (correct != answer.isCorrect()) {
+                        correctUpdates.add(new Object[] {correct, answer.getId()});
+                    }
+                }
+                if (attempt.getScore() == null || attempt.getScore() != grade.score()) {
+                    scoreUpdates.add(new Object[] {grade.score(), attempt.getId()});
+                }
+            }
+
+            if (!correctUpdates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_CORRECT, correctUpdates);
+            }
+            if (!scoreUpdates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_SCORE, scoreUpdates);
+            }
+            counts[0] = scoreUpdates.size();
+        });
+        job.regraded.addAndGet(attempts.size());
+        job.changed.addAndGet(counts[0]);
+        job.skipped.addAndGet(counts[1]);
+    }
+
+    /**
+     * Progress of regrading one quiz. Attempts completed while the job runs are checked on top of
+     * those counted at the start, so the counts may end above {@link #getTotal()}.
+     */
+    public static final class RegradeJob {
+
+        public enum State { RUNNING, COMPLETED, FAILED }
+
+        private final Long quizId;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicLong regraded = new AtomicLong();
+        private final AtomicLong changed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile long total;
+        private volatile State state = State.RUNNING;
+        private volatile LocalDateTime finishedAt;
+        private volatile String failure;
+
+        private RegradeJob(Long quizId) {
+            this.quizId = quizId;
+        }
+
+        private void finish(State state, String failure) {
+            this.failure = failure;
+            this.finishedAt = LocalDateTime.now();
+            this.state = state;
+            done.countDown();
+        }
+
+        /**
+         * Waits for the job to finish.
+         *
+         * @return false if it is still running after {@code timeout}
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return done.await(timeout, unit);
+        }
+
+        public boolean isFinished() {
+            return state != State.RUNNING;
+        }
+
+        /**
+         * The share of the attempts done, between 0 and 1.
+         */
+        public double getProgress() {
+            if (isFinished()) {
+                return 1;
+            }
+            return total > 0 ? Math.min(1, (double) regraded.get() / total) : 0;
+        }
+
+        public Long getQuizId() {
+            return quizId;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public LocalDateTime getFinishedAt() {
+            return finishedAt;
+        }
+
+        // Completed attempts when the job started
+        public long getTotal() {
+            return total;
+        }
+
+        public long getRegraded() {
+            return regraded.get();
+        }
+
+        // Attempts whose score changed
+        public long getChanged() {
+            return changed.get();
+        }
+
+        // Attempts without stored answers, left as they were
+        public long getSkipped() {
+            return skipped.get();
+        }
+
+        public String getFailure() {
+            return failure;
+        }
+    }
+}
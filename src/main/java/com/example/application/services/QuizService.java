@@ -1,22 +1,69 @@
 package com.example.application.services;
 
 import com.example.application.data.*;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class QuizService {
+
+    private static final String COMPLETE_ATTEMPT = "UPDATE quiz_attempts SET score = ?, completion_time = ?, is_completed = TRUE, "
+            + "version = version + 1 WHERE id = ? AND is_completed = FALSE";
     
     @Autowired
     private QuizRepository quizRepository;
     
     @Autowired
     private QuizAttemptRepository quizAttemptRepository;
+
+    @Autowired
+    private QuizAttemptAnswerRepository quizAttemptAnswerRepository;
+
+    @Autowired
+    private QuizDraftAnswerRepository quizDraftAnswerRepository;
+
+    @Autowired
+    private AnswerKeyCache answerKeyCache;
+
+    @Autowired
+    private QuizCompletionIndex quizCompletionIndex;
+
+    @Autowired
+    private QuizSnapshotCache quizSnapshotCache;
+
+    @Autowired
+    private QuestionBankIndex questionBankIndex;
+
+    @Autowired
+    private ItemAnalysis itemAnalysis;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
     public List<Quiz> findAllQuizzes() {
         return quizRepository.findAllByOrderByCreatedAtDesc();
@@ -46,62 +93,264 @@ public class QuizService {
         return quizRepository.findByIdWithQuestions(id);
     }
     
+    /**
+     * The current read-only snapshot of a quiz and its questions, shared between sessions.
+     */
+    public Optional<QuizSnapshot> findSnapshot(Long id) {
+        return quizSnapshotCache.get(id);
+    }
+    
+    /**
+     * Saves a quiz with its questions. The quiz's version moves on every save, even when only its
+     * questions changed, since cached {@link AnswerKey}s and {@link QuizSnapshot}s are keyed on it.
+     */
+    @Transactional
     public Quiz saveQuiz(Quiz quiz, User creator) {
         quiz.setCreatedBy(creator);
-        return quizRepository.save(quiz);
+        boolean existing = quiz.getId() != null;
+        Quiz saved = quizRepository.save(quiz);
+        if (existing) {
+            entityManager.lock(saved, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        }
+        answerKeyCache.evict(saved.getId());
+        quizSnapshotCache.evict(saved.getId());
+        // Its questions may be in the question bank other quizzes sample from
+        questionBankIndex.invalidate();
+        answerKeyCache.evictSampled();
+        quizSnapshotCache.evictSampled();
+        return saved;
     }
     
     public void deleteQuiz(Long id) {
         quizRepository.deleteById(id);
+        answerKeyCache.evict(id);
+        quizSnapshotCache.evict(id);
+        quizCompletionIndex.evict(id);
+        itemAnalysis.delete(id);
     }
     
     public QuizAttempt startQuizAttempt(Quiz quiz, User student) {
+        return startQuizAttempt(quiz, quiz.getDurationMinutes(), quizRepository.findSamplingRules(quiz.getId()), student);
+    }
+    
+    public QuizAttempt startQuizAttempt(QuizSnapshot quiz, User student) {
+        return startQuizAttempt(quizRepository.getReferenceById(quiz.getQuizId()), quiz.getDurationMinutes(), quiz.getSamplingRules(), student);
+    }
+    
+    private QuizAttempt startQuizAttempt(Quiz quiz, Integer durationMinutes, List<SamplingRule> samplingRules, User student) {
         QuizAttempt attempt = new QuizAttempt();
         attempt.setQuiz(quiz);
         attempt.setStudent(student);
         attempt.setStartTime(LocalDateTime.now());
-        return quizAttemptRepository.save(attempt);
+        attempt.setShuffleSeed(ThreadLocalRandom.current().nextLong());
+        if (!samplingRules.isEmpty()) {
+            attempt.setSampledQuestionIds(questionBankIndex.sample(samplingRules, new Random(attempt.getShuffleSeed())));
+        }
+        QuizAttempt saved = quizAttemptRepository.save(attempt);
+        eventPublisher.publishEvent(new QuizAttemptStartedEvent(saved.getId(), saved.getStartTime(), durationMinutes));
+        return saved;
+    }
+    
+    /**
+     * The student's unfinished attempt at a quiz, to resume rather than start over.
+     */
+    public Optional<QuizAttempt> findOpenAttempt(Quiz quiz, User student) {
+        return quizAttemptRepository.findFirstByQuizAndStudentAndCompletedFalseOrderByStartTimeDesc(quiz, student);
+    }
+    
+    public Optional<QuizAttempt> findOpenAttempt(QuizSnapshot quiz, User student) {
+        return findOpenAttempt(quizRepository.getReferenceById(quiz.getQuizId()), student);
     }
     
     public Optional<QuizAttempt> findAttemptByIdWithDetails(Long attemptId) {
         return quizAttemptRepository.findByIdAndFetchQuizWithQuestions(attemptId);
     }
     
+    /**
+     * Grades and completes an attempt, storing the student's answers. Grading uses the quiz's
+     * cached {@link AnswerKey}, so neither the attempt nor the quiz is loaded.
+     *
+     * @throws IllegalArgumentException if the attempt doesn't exist
+     * @throws IllegalStateException if the attempt has already been submitted
+     */
     @Transactional
-    public QuizAttempt completeQuizAttempt(Long attemptId, Map<Long, String> answers) {
-        Optional<QuizAttempt> attemptOpt = findAttemptByIdWithDetails(attemptId);
-        if (attemptOpt.isEmpty()) {
-            throw new IllegalArgumentException("Quiz attempt with ID " + attemptId + " not found.");
+    public AnswerKey.Grade completeQuizAttempt(Long attemptId, Map<Long, String> answers) {
+        QuizAttemptRepository.GradingInfo info = quizAttemptRepository.findGradingInfo(attemptId)
+                .orElseThrow(() -> new IllegalArgumentException("Quiz attempt with ID " + attemptId + " not found."));
+        if (info.isCompleted()) {
+            throw new IllegalStateException("Quiz attempt " + attemptId + " has already been submitted.");
         }
-        QuizAttempt attempt = attemptOpt.get();
-        
-        Quiz quiz = attempt.getQuiz();
-        if (quiz == null) {
-             throw new IllegalStateException("Quiz attempt " + attemptId + " is not associated with a quiz.");
+        AnswerKey.Grade grade = complete(List.of(info), Map.of(attemptId, answers)).get(attemptId);
+        if (grade == null) {
+            throw new IllegalStateException("Quiz attempt " + attemptId + " has already been submitted.");
         }
-        
-        List<QuizQuestion> questions = quiz.getQuestions();
-        if (questions == null) {
-             throw new IllegalStateException("Quiz " + quiz.getId() + " has no questions associated with it.");
+        return grade;
+    }
+    
+    /**
+     * Grades and completes a batch of attempts in one transaction, see {@link SubmissionPipeline}.
+     *
+     * @param submissions the answers of each attempt, by attempt id
+     * @return the grade of each attempt completed; attempts that don't exist or were submitted
+     *         before are left out
+     */
+    @Transactional
+    public Map<Long, AnswerKey.Grade> completeQuizAttempts(Map<Long, Map<Long, String>> submissions) {
+        List<QuizAttemptRepository.GradingInfo> open = quizAttemptRepository.findGradingInfo(submissions.keySet()).stream()
+                .filter(info -> !info.isCompleted())
+                .toList();
+        return complete(open, submissions);
+    }
+    
+    private Map<Long, AnswerKey.Grade> complete(List<QuizAttemptRepository.GradingInfo> attempts, Map<Long, Map<Long, String>> submissions) {
+        if (attempts.isEmpty()) {
+            return Map.of();
         }
+        LocalDateTime now = LocalDateTime.now();
+        List<AnswerKey> answerKeys = new ArrayList<>(attempts.size());
+        List<AnswerKey.Grade> grades = new ArrayList<>(attempts.size());
+        List<Object[]> completions = new ArrayList<>(attempts.size());
+        for (QuizAttemptRepository.GradingInfo info : attempts) {
+            AnswerKey answerKey = answerKeyCache.get(info.getQuizId(), info.getQuizVersion());
+            AnswerKey.Grade grade = answerKey.grade(submissions.get(info.getId()), info.getSampledQuestionIds());
+            answerKeys.add(answerKey);
+            grades.add(grade);
+            completions.add(new Object[] {grade.score(), now, info.getId()});
+        }
+        // Guarded on the completed flag, so two concurrent submissions can't both get through
+        int[] updated = jdbcTemplate.batchUpdate(COMPLETE_ATTEMPT, completions);
         
-        int totalQuestions = questions.size();
-        int correctAnswers = 0;
-        
-        for (QuizQuestion question : questions) {
-            String studentAnswer = answers.get(question.getId());
-            if (studentAnswer != null && studentAnswer.equals(question.getCorrectAnswer())) {
-                correctAnswers++;
+        Map<Long, AnswerKey.Grade> completed = new HashMap<>();
+        List<QuizAttemptAnswer> attemptAnswers = new ArrayList<>();
+        for (int a = 0; a < attempts.size(); a++) {
+            if (updated[a] == 0) {
+                continue;
             }
+            Long attemptId = attempts.get(a).getId();
+            AnswerKey answerKey = answerKeys.get(a);
+            AnswerKey.Grade grade = grades.get(a);
+            QuizAttempt attempt = quizAttemptRepository.getReferenceById(attemptId);
+            for (int i = 0; i < answerKey.getQuestionCount(); i++) {
+                if (grade.answers()[i] != null) {
+                    QuizQuestion question = entityManager.getReference(QuizQuestion.class, answerKey.getQuestionId(i));
+                    attemptAnswers.add(new QuizAttemptAnswer(attempt, question, grade.answers()[i], grade.correct()[i]));
+                }
+            }
+            completed.put(attemptId, grade);
+            eventPublisher.publishEvent(new QuizAttemptCompletedEvent(attemptId, attempts.get(a).getQuizId(), attempts.get(a).getStudentId(),
+                    answerKey, grade));
+        }
+        // Inserted together at flush as JDBC batches (hibernate.jdbc.batch_size)
+        quizAttemptAnswerRepository.saveAll(attemptAnswers);
+        if (!completed.isEmpty()) {
+            quizDraftAnswerRepository.deleteByAttemptIds(completed.keySet());
+        }
+        return completed;
+    }
+    
+    /**
+     * Stores the in-progress answers of several attempts, replacing earlier drafts of the same
+     * questions, see {@link AnswerAutosave}. Attempts submitted in the meantime are skipped.
+     *
+     * @param answers the changed answers of each attempt, by attempt id and then question id; a
+     *        null answer deletes the draft of its question
+     * @return the number of answers written or deleted
+     */
+    @Transactional
+    public int saveDraftAnswers(Map<Long, Map<Long, String>> answers) {
+        Set<Long> open = new HashSet<>();
+        for (QuizAttemptRepository.GradingInfo info : quizAttemptRepository.findGradingInfo(answers.keySet())) {
+            if (!info.isCompleted()) {
+                open.add(info.getId());
+            }
+        }
+        if (open.isEmpty()) {
+            return 0;
         }
         
-        int score = totalQuestions > 0 ? (correctAnswers * 100) / totalQuestions : 0;
-        
-        attempt.setScore(score);
-        attempt.setCompletionTime(LocalDateTime.now());
-        attempt.setCompleted(true);
-        
-        return quizAttemptRepository.save(attempt);
+        Map<Long, Map<Long, String>> remaining = new HashMap<>();
+        open.forEach(attemptId -> remaining.put(attemptId, new HashMap<>(answers.get(attemptId))));
+        int written = 0;
+        // Drafts already stored are updated in place, dirty checking batches the updates
+        List<QuizDraftAnswer> cleared = new ArrayList<>();
+        for (QuizDraftAnswer draft : quizDraftAnswerRepository.findByAttemptIds(open)) {
+            Map<Long, String> attemptAnswers = remaining.get(draft.getAttempt().getId());
+            Long questionId = draft.getQuestion().getId();
+            if (attemptAnswers.containsKey(questionId)) {
+                String answerText = attemptAnswers.remove(questionId);
+                if (answerText == null) {
+                    cleared.add(draft);
+                } else {
+                    draft.setAnswerText(answerText);
+                }
+                written++;
+            }
+        }
+        quizDraftAnswerRepository.deleteAll(cleared);
+        List<QuizDraftAnswer> created = new ArrayList<>();
+        remaining.forEach((attemptId, attemptAnswers) -> {
+            QuizAttempt attempt = quizAttemptRepository.getReferenceById(attemptId);
+            attemptAnswers.forEach((questionId, answerText) -> {
+                // Cleared before it was ever saved
+                if (answerText != null) {
+                    created.add(new QuizDraftAnswer(attempt, entityManager.getReference(QuizQuestion.class, questionId), answerText));
+                }
+            });
+        });
+        quizDraftAnswerRepository.saveAll(created);
+        return written + created.size();
+    }
+    
+    /**
+     * The answers autosaved for some attempts, by attempt id and then question id. Attempts without
+     * any are left out.
+     */
+    public Map<Long, Map<Long, String>> findDraftAnswers(Collection<Long> attemptIds) {
+        Map<Long, Map<Long, String>> answers = new HashMap<>();
+        for (QuizDraftAnswerRepository.DraftView draft : quizDraftAnswerRepository.findDraftsByAttemptIds(attemptIds)) {
+            answers.computeIfAbsent(draft.getAttemptId(), id -> new HashMap<>()).put(draft.getQuestionId(), draft.getAnswerText());
+        }
+        return answers;
+    }
+
+    /**
+     * The answers autosaved for an attempt, by question id.
+     */
+    public Map<Long, String> findDraftAnswers(Long attemptId) {
+        return findDraftAnswers(List.of(attemptId)).getOrDefault(attemptId, new HashMap<>());
+    }
+
+    /**
+     * The answers given in an attempt, by question id, read with a single query.
+     */
+    public Map<Long, QuizAttemptAnswerRepository.AnswerView> findAnswersForAttempt(Long attemptId) {
+        Map<Long, QuizAttemptAnswerRepository.AnswerView> answers = new HashMap<>();
+        for (QuizAttemptAnswerRepository.AnswerView answer : quizAttemptAnswerRepository.findAnswersByAttemptId(attemptId)) {
+            answers.put(answer.getQuestionId(), answer);
+        }
+        return answers;
+    }
+    
+    /**
+     * The questions an attempt was asked, by id: its quiz's own, loaded with it, and the question
+     * bank questions it drew.
+     */
+    public List<QuizQuestion> findQuestionsForAttempt(QuizAttempt attempt) {
+        List<QuizQuestion> questions = new ArrayList<>(attempt.getQuiz().getQuestions());
+        if (attempt.getSampledQuestionIds() != null && attempt.getSampledQuestionIds().length > 0) {
+            Set<Long> own = new HashSet<>();
+            questions.forEach(question -> own.add(question.getId()));
+            List<Long> drawn = Arrays.stream(attempt.getSampledQuestionIds()).boxed().filter(id -> !own.contains(id)).toList();
+            if (!drawn.isEmpty()) {
+                questions.addAll(quizRepository.findQuestionsByIds(drawn));
+            }
+        }
+        questions.sort(Comparator.comparing(QuizQuestion::getId));
+        return questions;
+    }
+    
+    public List<SamplingRule> findSamplingRules(Long quizId) {
+        return quizRepository.findSamplingRules(quizId);
     }
     
     public List<QuizAttempt> findAttemptsByQuiz(Quiz quiz) {
@@ -113,7 +362,11 @@ public class QuizService {
     }
     
     public boolean hasStudentCompletedQuiz(Quiz quiz, User student) {
-        return quizAttemptRepository.existsByQuizAndStudentAndCompletedTrue(quiz, student);
+        return quizCompletionIndex.hasCompleted(quiz.getId(), student.getId());
+    }
+    
+    public boolean hasStudentCompletedQuiz(QuizSnapshot quiz, User student) {
+        return quizCompletionIndex.hasCompleted(quiz.getQuizId(), student.getId());
     }
 
     public List<Quiz> findActiveQuizzesBySubject(String subject) {
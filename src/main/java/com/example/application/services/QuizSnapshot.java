@@ -0,0 +1,189 @@
+package com.example.application.services;
+
+import com.example.application.data.QuizRepository;
+import com.example.application.data.SamplingRule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only copy of what a student sees of a quiz: its header and its questions with their answer
+ * choices in display order, and for a quiz that samples the question bank, the bank questions it
+ * may draw. It is read with two scalar queries, one for the quiz and its questions and one for all
+ * their answer options, however many questions and options there are, and holds no entities. A
+ * sampling quiz takes one query for its rules and two more for its bank questions.
+ *
+ * Instances are immutable and shared by every session taking the quiz, see {@link QuizSnapshotCache}.
+ * A session keeps the snapshot it started with, so a student's questions don't change on screen
+ * when a teacher edits the quiz and a new snapshot is published. Grading is not tied to the
+ * snapshot: a submission is graded against the quiz's {@link AnswerKey} as it is when submitted,
+ * and attempts already graded can be regraded with {@link QuizRegradeService}.
+ */
+public final class QuizSnapshot {
+
+    private final long quizId;
+    private final int version;
+    private final String title;
+    private final String description;
+    private final Integer durationMinutes;
+    private final boolean active;
+    private final List<Question> questions;
+    private final List<SamplingRule> samplingRules;
+    // The question bank questions the sampling rules draw from, by id
+    private final Map<Long, Question> bank;
+
+    /**
+     * One question as shown to students. Submissions are graded against the {@link AnswerKey} instead.
+     */
+    public record Question(Long id, String text, String type, List<String> choices) {
+    }
+
+    private QuizSnapshot(long quizId, int version, String title, String description, Integer durationMinutes,
+                         boolean active, List<Question> questions, List<SamplingRule> samplingRules, Map<Long, Question> bank) {
+        this.quizId = quizId;
+        this.version = version;
+        this.title = title;
+        this.description = description;
+        this.durationMinutes = durationMinutes;
+        this.active = active;
+        this.questions = questions;
+        this.samplingRules = samplingRules;
+        this.bank = bank;
+    }
+
+    /**
+     * Assembles a snapshot from the rows of {@link QuizRepository#findQuestionViews} and
+     * {@link QuizRepository#findAnswerOptions} for an existing quiz. Questions without stored
+     * options get placeholder choices.
+     */
+    public static QuizSnapshot of(List<QuizRepository.QuizQuestionView> rows, List<QuizRepository.AnswerOptionView> options) {
+        return of(rows, options, List.of(), List.of(), List.of());
+    }
+
+    /**
+     * The same for a quiz with sampling rules, along with the question bank questions they draw
+     * from and their options.
+     */
+    public static QuizSnapshot of(List<QuizRepository.QuizQuestionView> rows, List<QuizRepository.AnswerOptionView> options,
+                                  List<SamplingRule> samplingRules,
+                                  List<QuizRepository.QuestionView> bankRows, List<QuizRepository.AnswerOptionView> bankOptions) {
+        List<Question> questions = questions(rows, options);
+        Map<Long, Question> bank = new HashMap<>();
+        for (Question question : questions(bankRows, bankOptions)) {
+            bank.put(question.id(), question);
+        }
+        // The quiz's own questions are asked anyway
+        questions.forEach(question -> bank.remove(question.id()));
+
+        List<SamplingRule> rules = new ArrayList<>();
+        for (SamplingRule rule : samplingRules) {
+            rules.add(new SamplingRule(rule.getTag(), rule.getDifficulty(), rule.getCount()));
+        }
+        QuizRepository.QuizQuestionView quiz = rows.get(0);
+        return new QuizSnapshot(quiz.getQuizId(), quiz.getVersion(), quiz.getTitle(), quiz.getDescription(),
+                quiz.getDurationMinutes(), quiz.isActive(), List.copyOf(questions), List.copyOf(rules), Map.copyOf(bank));
+    }
+
+    private static List<Question> questions(List<? extends QuizRepository.QuestionView> rows, List<QuizRepository.AnswerOptionView> options) {
+        Map<Long, List<String>> choices = new HashMap<>();
+        for (QuizRepository.AnswerOptionView option : options) {
+            choices.computeIfAbsent(option.getQuestionId(), id -> new ArrayList<>()).add(option.getAnswerText());
+        }
+        List<Question> questions = new ArrayList<>(rows.size());
+        for (QuizRepository.QuestionView row : rows) {
+            if (row.getQuestionId() != null) {
+                List<String> stored = choices.get(row.getQuestionId());
+                questions.add(new Question(row.getQuestionId(), row.getQuestionText(), row.getQuestionType(),
+                        stored != null ? List.copyOf(stored) : placeholderChoices(row.getQuestionType(), row.getCorrectAnswer())));
+            }
+        }
+        return questions;
+    }
+
+    private static List<String> placeholderChoices(String type, String correctAnswer) {
+        // The quiz editor doesn't store answer options yet, so the correct answer is offered among placeholders
+        if (correctAnswer != null && QuestionGraders.MULTIPLE_SELECT.equals(type)) {
+            List<String> choices = new ArrayList<>();
+            for (String option : correctAnswer.split(QuestionGraders.SEPARATOR)) {
+                if (!option.isBlank()) {
+                    choices.add(option.strip());
+                }
+            }
+            choices.addAll(List.of("Wrong option 1", "Wrong option 2"));
+            return List.copyOf(choices);
+        }
+        if (correctAnswer != null) {
+            return List.of(correctAnswer, "Wrong option 1", "Wrong option 2", "Wrong option 3");
+        }
+        return List.of("Option 1", "Option 2", "Option 3", "Option 4");
+    }
+
+    public long getQuizId() {
+        return quizId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Integer getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * The quiz's own questions, by id.
+     */
+    public List<Question> getQuestions() {
+        return questions;
+    }
+
+    /**
+     * The rules drawing questions from the question bank for each attempt. Read-only.
+     */
+    public List<SamplingRule> getSamplingRules() {
+        return samplingRules;
+    }
+
+    public boolean isSampled() {
+        return !samplingRules.isEmpty();
+    }
+
+    /**
+     * The questions an attempt is asked, with their choices, in the order it sees them: the quiz's
+     * own questions and the question bank questions it drew, see {@link AttemptShuffle}.
+     *
+     * @param drawn the question bank questions drawn for the attempt, or null
+     */
+    public List<Question> getQuestions(Long shuffleSeed, long[] drawn) {
+        List<Question> asked = new ArrayList<>(questions);
+        if (drawn != null) {
+            for (long id : drawn) {
+                Question question = bank.get(id);
+                // Missing if it left the bank since the attempt started
+                if (question != null) {
+                    asked.add(question);
+                }
+            }
+            asked.sort(Comparator.comparing(Question::id));
+        }
+        List<Question> ordered = AttemptShuffle.questions(asked, shuffleSeed);
+        ordered.replaceAll(question -> new Question(question.id(), question.text(), question.type(),
+                List.copyOf(AttemptShuffle.options(question.choices(), shuffleSeed, question.id()))));
+        return ordered;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.application.services;
+
+import com.example.application.data.QuizRepository;
+import com.example.application.data.SamplingRule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The current {@link QuizSnapshot} of each quiz, shared by all sessions, so that a class opening
+ * the same quiz loads its questions once instead of every session holding its own entity graph.
+ *
+ * Snapshots are cached by quiz id and {@code version}, which {@link QuizService#saveQuiz} moves on
+ * every save, so a saved quiz gets a new snapshot when it is next opened; looking one up costs a
+ * primary key read of the version. Sessions already holding the old snapshot keep it. Snapshots
+ * of quizzes with sampling rules also hold question bank questions, whose edits don't move the
+ * quiz's version, so those are dropped with {@link #evictSampled()} when the bank changes.
+ */
+@Service
+public class QuizSnapshotCache {
+
+    @Autowired
+    private QuizRepository quizRepository;
+
+    @Autowired
+    private QuestionBankIndex questionBankIndex;
+
+    private final Cache<VersionedQuiz, QuizSnapshot> snapshots;
+
+    public QuizSnapshotCache(MeterRegistry registry) {
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(1_000)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, snapshots, "gradsy.quiz.snapshots");
+    }
+
+    /**
+     * The current snapshot of a quiz, taken from the database if there is none yet.
+     */
+    public Optional<QuizSnapshot> get(Long quizId) {
+        return quizRepository.findVersion(quizId)
+                // Null if the quiz was deleted in the meantime, which isn't cached
+                .map(version -> snapshots.get(new VersionedQuiz(quizId, version), this::load));
+    }
+
+    private QuizSnapshot load(VersionedQuiz key) {
+        long id = key.quizId();
+        List<QuizRepository.QuizQuestionView> rows = quizRepository.findQuestionViews(id);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        List<QuizRepository.AnswerOptionView> options = quizRepository.findAnswerOptions(id);
+        if (rows.get(0).getRuleCount() == 0) {
+            return QuizSnapshot.of(rows, options);
+        }
+        List<SamplingRule> rules = quizRepository.findSamplingRules(id);
+        List<Long> pool = Arrays.stream(questionBankIndex.pool(rules)).boxed().toList();
+        if (pool.isEmpty()) {
+            return QuizSnapshot.of(rows, options, rules, List.of(), List.of());
+        }
+        return QuizSnapshot.of(rows, options, rules,
+                quizRepository.findQuestionViewsByIds(pool), quizRepository.findAnswerOptionsByQuestionIds(pool));
+    }
+
+    /**
+     * Drops every cached version of a quiz.
+     */
+    public void evict(Long quizId) {
+        if (quizId != null) {
+            snapshots.asMap().keySet().removeIf(key -> key.quizId() == quizId);
+        }
+    }
+
+    /**
+     * Drops the snapshots of quizzes with sampling rules, for when the question bank changes.
+     */
+    public void evictSampled() {
+        snapshots.asMap().values().removeIf(QuizSnapshot::isSampled);
+    }
+
+    private record VersionedQuiz(long quizId, int version) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.application.services;
+
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * An upload that has been streamed completely into the staging area, together with the SHA-256
+ * of its bytes computed while it was written. The digest is the key the file is stored under.
+ */
+public record StagedUpload(Path file, String fileName, String contentType, long size, String sha256) {
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.application.services;
+
+import com.example.application.data.QuizAttemptAnswer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes quiz submissions off the request threads and commits them in groups.
+ *
+ * At the end of a timed exam most students submit within seconds of each other. Rather than each
+ * submission running a transaction of its own, submissions go into a bounded queue and a single
+ * writer grades and completes everything queued so far in one transaction, through
+ * {@link QuizService#completeQuizAttempts}. While one group commits the next one builds up, so the
+ * busier it gets the larger the groups and the fewer the commits, without any added delay when it
+ * is quiet.
+ *
+ * Each submission gets a future that completes once its attempt is durably stored. When the queue
+ * is full, submissions are turned away rather than left waiting indefinitely. If a group fails to
+ * commit, its submissions are retried one at a time, so that a submission that can't be stored only
+ * fails itself.
+ */
+@Service
+public class SubmissionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(SubmissionPipeline.class);
+
+    @Autowired
+    private QuizService quizService;
+
+    private final BlockingQueue<Submission> queue;
+    private final int maxBatchSize;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSizes;
+    private final Timer commitLatency;
+    private final Timer submissionLatency;
+
+    private record Submission(Long attemptId, Map<Long, String> answers, long enqueuedAt, CompletableFuture<AnswerKey.Grade> result) {
+    }
+
+    public SubmissionPipeline(MeterRegistry registry,
+                              @Value("${app.quiz.submission.queue-capacity:10000}") int queueCapacity,
+                              @Value("${app.quiz.submission.max-batch-size:200}") int maxBatchSize) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.writer = new Thread(this::drain, "submission-writer");
+        this.writer.setDaemon(true);
+
+        Gauge.builder("gradsy.quiz.submissions.queued", queue, BlockingQueue::size)
+                .description("Quiz submissions waiting to be committed")
+                .register(registry);
+        this.batchSizes = DistributionSummary.builder("gradsy.quiz.submissions.batch")
+                .description("Quiz submissions committed together in one transaction")
+                .register(registry);
+        this.commitLatency = Timer.builder("gradsy.quiz.submissions.commit")
+                .description("Time to grade and commit one group of quiz submissions")
+                .register(registry);
+        this.submissionLatency = Timer.builder("gradsy.quiz.submissions.latency")
+                .description("Time from a quiz being submitted until it is durably stored")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        writer.start();
+    }
+
+    /**
+     * Commits what is queued already, then stops the writer.
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Queues an attempt to be graded and completed.
+     *
+     * @return a future completing with the grade once the attempt is stored, or exceptionally with
+     *         an {@link IllegalStateException} if the attempt doesn't exist or was submitted before,
+     *         an {@link IllegalArgumentException} if an answer is too long to be stored, or a
+     *         {@link RejectedExecutionException} if the queue is full
+     */
+    public CompletableFuture<AnswerKey.Grade> submit(Long attemptId, Map<Long, String> answers) {
+        Submission submission = new Submission(attemptId, new HashMap<>(answers), System.nanoTime(), new CompletableFuture<>());
+        if (attemptId == null) {
+            submission.result().completeExceptionally(new IllegalArgumentException("No quiz attempt given."));
+        } else if (answers.values().stream().anyMatch(answer -> answer != null && answer.length() > QuizAttemptAnswer.MAX_ANSWER_LENGTH)) {
+            submission.result().completeExceptionally(new IllegalArgumentException(
+                    "Answers are limited to " + QuizAttemptAnswer.MAX_ANSWER_LENGTH + " characters."));
+        } else if (!running || !queue.offer(submission)) {
+            submission.result().completeExceptionally(new RejectedExecutionException("Too many quiz submissions queued, try again shortly"));
+        }
+        return submission.result();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void drain() {
+        List<Submission> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Submission first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            try {
+                commit(batch);
+            } catch (Throwable ex) {
+                // This is the only writer, so it must outlive anything one group throws
+                log.error("Committing {} quiz submissions failed unexpectedly", batch.size(), ex);
+                batch.forEach(submission -> fail(submission, ex));
+            }
+            batch.clear();
+        }
+        // Nobody is left to commit these
+        for (Submission submission; (submission = queue.poll()) != null; ) {
+            fail(submission, new RejectedExecutionException("Quiz submissions are no longer accepted"));
+        }
+    }
+
+    private void commit(List<Submission> batch) {
+        Map<Long, Map<Long, String>> answers = new HashMap<>();
+        List<Submission> included = new ArrayList<>(batch.size());
+        for (Submission submission : batch) {
+            if (answers.putIfAbsent(submission.attemptId(), submission.answers()) == null) {
+                included.add(submission);
+            } else {
+                fail(submission, new IllegalStateException("Quiz attempt " + submission.attemptId() + " has already been submitted."));
+            }
+        }
+
+        Map<Long, AnswerKey.Grade> grades;
+        long started = System.nanoTime();
+        try {
+            grades = quizService.completeQuizAttempts(answers);
+        } catch (RuntimeException ex) {
+            // The whole group rolled back, none of these attempts is completed
+            if (included.size() == 1) {
+                log.error("Committing a quiz submission failed", ex);
+                fail(included.get(0), ex);
+            } else {
+                log.error("Committing {} quiz submissions failed, committing them one at a time", included.size(), ex);
+                included.forEach(this::commitAlone);
+            }
+            return;
+        }
+        long committed = System.nanoTime();
+        commitLatency.record(committed - started, TimeUnit.NANOSECONDS);
+        batchSizes.record(batch.size());
+
+        for (Submission submission : included) {
+            AnswerKey.Grade grade = grades.get(submission.attemptId());
+            if (grade == null) {
+                fail(submission, new IllegalStateException("Quiz attempt " + submission.attemptId() + " was not found or has already been submitted."));
+            } else {
+                submissionLatency.record(committed - submission.enqueuedAt(), TimeUnit.NANOSECONDS);
+                submission.result().complete(grade);
+            }
+        }
+    }
+
+    private void commitAlone(Submission submission) {
+        long started = System.nanoTime();
+        try {
+            AnswerKey.Grade grade = quizService.completeQuizAttempts(Map.of(submission.attemptId(), submission.answers()))
+                    .get(submission.attemptId());
+            long committed = System.nanoTime();
+            commitLatency.record(committed - started, TimeUnit.NANOSECONDS);
+            batchSizes.record(1);
+            if (grade == null) {
+                fail(submission, new IllegalStateException("Quiz attempt " + submission.attemptId() + " was not found or has already been submitted."));
+            } else {
+                submissionLatency.record(committed - submission.enqueuedAt(), TimeUnit.NANOSECONDS);
+                submission.result().complete(grade);
+            }
+        } catch (RuntimeException ex) {
+            log.error("Committing the submission of quiz attempt {} failed", submission.attemptId(), ex);
+            fail(submission, ex);
+        }
+    }
+
+    private void fail(Submission submission, Throwable ex) {
+        submission.result().completeExceptionally(ex);
+    }
+}
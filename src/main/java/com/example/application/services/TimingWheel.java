@@ -0,0 +1,132 @@
+package com.example.application.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hashed timing wheel: deadlines are rounded up to ticks and kept in a ring of buckets, one per
+ * tick, each a doubly linked list. Deadlines further out than one turn of the wheel share buckets
+ * with nearer ones and are passed over until their turn comes.
+ *
+ * Scheduling and cancelling are O(1), and advancing by one tick only looks at one bucket, which
+ * holds on average {@code size() / wheelSize} entries. This keeps tens of thousands of deadlines
+ * cheap where a priority queue would pay O(log n) on every insert and an O(n) scan to cancel.
+ *
+ * Times are {@link System#nanoTime()} values. Thread-safe.
+ */
+final class TimingWheel<K> {
+
+    private final long tickNanos;
+    private final long origin;
+    private final Entry<K>[] buckets;
+    private final int mask;
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    // The last tick whose bucket was expired
+    private long currentTick;
+
+    private static final class Entry<K> {
+        final K key;
+        final long deadlineTick;
+        Entry<K> prev;
+        Entry<K> next;
+
+        Entry(K key, long deadlineTick) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    /**
+     * @param wheelSize the number of buckets, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickNanos, int wheelSize, long now) {
+        this.tickNanos = tickNanos;
+        this.origin = now;
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.buckets = (Entry<K>[]) new Entry[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules {@code key} to expire at {@code deadline}, replacing any deadline it had. Deadlines
+     * already passed expire on the next tick.
+     */
+    synchronized void schedule(K key, long deadline) {
+        cancel(key);
+        long ticks = deadline - origin;
+        long deadlineTick = Math.max(currentTick + 1, ticks / tickNanos + (ticks % tickNanos > 0 ? 1 : 0));
+        Entry<K> entry = new Entry<>(key, deadlineTick);
+        int bucket = (int) (deadlineTick & mask);
+        entry.next = buckets[bucket];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        buckets[bucket] = entry;
+        entries.put(key, entry);
+    }
+
+    /**
+     * @return true if {@code key} had a deadline
+     */
+    synchronized boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        unlink(entry);
+        return true;
+    }
+
+    /**
+     * Advances the wheel to {@code now}, removing and returning the keys whose deadline has passed.
+     */
+    synchronized List<K> advance(long now) {
+        List<K> expired = new ArrayList<>();
+        long targetTick = (now - origin) / tickNanos;
+        // A wheel left far behind only needs one turn to visit every bucket
+        if (targetTick - currentTick > buckets.length) {
+            currentTick = targetTick - buckets.length;
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            Entry<K> entry = buckets[(int) (currentTick & mask)];
+            while (entry != null) {
+                Entry<K> next = entry.next;
+                if (entry.deadlineTick <= targetTick) {
+                    unlink(entry);
+                    entries.remove(entry.key);
+                    expired.add(entry.key);
+                }
+                entry = next;
+            }
+        }
+        return expired;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * When the next tick is due.
+     */
+    synchronized long nextTick() {
+        return origin + (currentTick + 1) * tickNanos;
+    }
+
+    private void unlink(Entry<K> entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            buckets[(int) (entry.deadlineTick & mask)] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+}
@@ -133,4 +133,8 @@ public class UserService {
     public boolean isTeacher(User user) {
         return findTeacherByUser(user) != null;
     }
+
+    public boolean isAdmin(User user) {
+        return user.getRole() == UserRole.ADMIN;
+    }
 } 
\ No newline at end of file
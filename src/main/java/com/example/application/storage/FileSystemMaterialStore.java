@@ -0,0 +1,207 @@
+package com.example.application.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps materials on the local file system, spread over two levels of hash-prefix directories
+ * ({@code ab/cd/abcd...}) so no directory grows past a few hundred entries.
+ *
+ * Content keys are their own hash, and derived variants such as {@code <hash>.gz} sit next to the
+ * file they were made from. Older keys, stored under a generated name, are placed by the SHA-256 of
+ * that name. Files left flat in the root by earlier versions are moved into their shard
+ * when the store starts. Entries starting with a dot, such as the upload staging area, are left alone.
+ *
+ * Quarantined files are kept flat in {@code .quarantine}, stamped with the time they were moved there.
+ */
+public class FileSystemMaterialStore implements MaterialStore {
+
+    private static final Pattern CONTENT_KEY = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]+)?");
+
+    private final Path root;
+    private final Path quarantine;
+
+    public FileSystemMaterialStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        this.quarantine = this.root.resolve(".quarantine");
+        try {
+            Files.createDirectories(this.root);
+            migrateFlatFiles();
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not prepare material storage in " + this.root, ex);
+        }
+    }
+
+    @Override
+    public void put(String key, Path stagedFile) throws IOException {
+        Path target = resolve(key);
+        if (Files.exists(target)) {
+            Files.deleteIfExists(stagedFile);
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        moveIntoPlace(stagedFile, target);
+    }
+
+    @Override
+    public Optional<StoredFile> stat(String key) throws IOException {
+        Path file = resolve(key);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return Optional.empty();
+            }
+            return Optional.of(new StoredFile(key, attributes.size(), attributes.lastModifiedTime().toMillis()));
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long position, long count) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        channel.position(position);
+        return new BoundedInputStream(Channels.newInputStream(channel), count);
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path file = resolve(key);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public Stream<StoredFile> list() {
+        // Shard directories are two hex characters, so walking them in name order walks content keys in order
+        return sortedEntries(root, true).stream()
+                .flatMap(first -> sortedEntries(first, true).stream())
+                .flatMap(second -> sortedEntries(second, false).stream())
+                .map(FileSystemMaterialStore::describe)
+                .flatMap(Optional::stream);
+    }
+
+    @Override
+    public void quarantine(String key) throws IOException {
+        Path source = resolve(key);
+        if (!Files.exists(source)) {
+            return;
+        }
+        Files.createDirectories(quarantine);
+        Path target = quarantine.resolve(key);
+        moveIntoPlace(source, target);
+        Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    @Override
+    public Stream<StoredFile> listQuarantined() {
+        if (!Files.isDirectory(quarantine)) {
+            return Stream.empty();
+        }
+        return sortedEntries(quarantine, false).stream()
+                .map(FileSystemMaterialStore::describe)
+                .flatMap(Optional::stream);
+    }
+
+    @Override
+    public void restore(String key) throws IOException {
+        Path source = quarantine.resolve(MaterialStore.checkKey(key));
+        Path target = resolve(key);
+        if (Files.exists(target)) {
+            Files.deleteIfExists(source);
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        moveIntoPlace(source, target);
+    }
+
+    @Override
+    public void purge(String key) throws IOException {
+        Files.deleteIfExists(quarantine.resolve(MaterialStore.checkKey(key)));
+    }
+
+    Path resolve(String key) {
+        MaterialStore.checkKey(key);
+        String hash = CONTENT_KEY.matcher(key).matches() ? key : sha256(key);
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(key);
+    }
+
+    private void migrateFlatFiles() throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root,
+                entry -> Files.isRegularFile(entry) && !entry.getFileName().toString().startsWith("."))) {
+            for (Path entry : entries) {
+                Path target = resolve(entry.getFileName().toString());
+                Files.createDirectories(target.getParent());
+                moveIntoPlace(entry, target);
+            }
+        }
+    }
+
+    private static List<Path> sortedEntries(Path directory, boolean directories) {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries
+                    .filter(entry -> !entry.getFileName().toString().startsWith("."))
+                    .filter(entry -> directories ? Files.isDirectory(entry) : Files.isRegularFile(entry))
+                    .sorted(Comparator.comparing(entry -> entry.getFileName().toString()))
+                    .toList();
+        } catch (NoSuchFileException ex) {
+            return List.of();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static Optional<StoredFile> describe(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return Optional.of(new StoredFile(file.getFileName().toString(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis()));
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.application.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Where the files behind learning materials are kept. Keys are the names stored in
+ * {@link com.example.application.data.LearningMaterial#getFilePath()}: the SHA-256 of the content
+ * for new uploads, or the generated name of files stored before content addressing.
+ *
+ * Stored objects are never modified in place; a key always refers to the same bytes.
+ */
+public interface MaterialStore {
+
+    /**
+     * Moves a fully written local file into the store under {@code key}. The staged file is consumed
+     * either way: if the key is already present it is simply deleted, since equal keys mean equal bytes.
+     */
+    void put(String key, Path stagedFile) throws IOException;
+
+    /**
+     * Returns the size and modification time of the object, or empty if there is none.
+     *
+     * @throws IllegalArgumentException if {@code key} is not a valid key
+     */
+    Optional<StoredFile> stat(String key) throws IOException;
+
+    /**
+     * Opens {@code count} bytes of the object starting at {@code position}.
+     */
+    InputStream open(String key, long position, long count) throws IOException;
+
+    /**
+     * Returns the object as a local file when the store keeps one, so it can be sent without
+     * copying it through the JVM.
+     */
+    Optional<Path> localPath(String key);
+
+    /**
+     * Removes the object; does nothing if it does not exist.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Lists the stored objects. Content keys and their variants come out in ascending key order;
+     * keys of files stored under a generated name may be interleaved anywhere.
+     */
+    Stream<StoredFile> list() throws IOException;
+
+    /**
+     * Moves an object out of reach of {@link #stat}, {@link #open} and {@link #list} without
+     * deleting it yet, so a mistaken collection can still be undone. Does nothing if it does not exist.
+     */
+    void quarantine(String key) throws IOException;
+
+    /**
+     * Lists quarantined objects; {@link StoredFile#lastModified()} is the time they were quarantined.
+     */
+    Stream<StoredFile> listQuarantined() throws IOException;
+
+    /**
+     * Moves a quarantined object back. If the key has been stored again meanwhile, the quarantined
+     * copy is dropped instead.
+     */
+    void restore(String key) throws IOException;
+
+    /**
+     * Deletes a quarantined object for good.
+     */
+    void purge(String key) throws IOException;
+
+    /**
+     * Rejects keys that could escape the store or collide with its own bookkeeping entries.
+     */
+    static String checkKey(String key) {
+        if (key == null || key.isBlank() || key.startsWith(".")
+                || key.indexOf('/') >= 0 || key.indexOf('\\') >= 0 || key.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return key;
+    }
+}
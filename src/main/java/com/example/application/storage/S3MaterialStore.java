@@ -0,0 +1,359 @@
+package com.example.application.storage;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Keeps materials in a bucket of an S3-compatible object store, addressed path-style
+ * ({@code endpoint/bucket/key}) so it works with MinIO and other self-hosted servers as well as AWS.
+ * Requests are signed with Signature Version 4; uploads are sent unsigned-payload so a file is
+ * streamed once instead of being read a second time to hash it.
+ *
+ * Quarantined objects are copied under the {@code quarantine/} prefix. Live keys never contain a
+ * slash, so listing with a {@code /} delimiter keeps them apart.
+ */
+public class S3MaterialStore implements MaterialStore {
+
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String QUARANTINE_PREFIX = "quarantine/";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private final HttpClient client;
+    private final SigV4Signer signer;
+    private final String baseUri;
+    private final String host;
+    private final String bucket;
+    private final Clock clock;
+
+    public S3MaterialStore(URI endpoint, String region, String bucket, String accessKey, String secretKey) {
+        this(endpoint, region, bucket, accessKey, secretKey, Clock.systemUTC());
+    }
+
+    S3MaterialStore(URI endpoint, String region, String bucket, String accessKey, String secretKey, Clock clock) {
+        String base = endpoint.toString();
+        this.baseUri = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        this.host = hostHeader(endpoint);
+        this.bucket = bucket;
+        this.signer = new SigV4Signer(accessKey, secretKey, region, "s3");
+        this.clock = clock;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Override
+    public void put(String key, Path stagedFile) throws IOException {
+        if (stat(key).isPresent()) {
+            Files.deleteIfExists(stagedFile);
+            return;
+        }
+        HttpRequest request = signed("PUT", objectPath(key), Map.of(), Map.of(), UNSIGNED_PAYLOAD)
+                .PUT(HttpRequest.BodyPublishers.ofFile(stagedFile))
+                .build();
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Storing " + key + " failed: HTTP " + response.statusCode() + " " + response.body());
+        }
+        Files.deleteIfExists(stagedFile);
+    }
+
+    @Override
+    public Optional<StoredFile> stat(String key) throws IOException {
+        return head(objectPath(key), key);
+    }
+
+    @Override
+    public InputStream open(String key, long position, long count) throws IOException {
+        if (count == 0) {
+            // There is no range for nothing, and an empty object can't be asked for any
+            return InputStream.nullInputStream();
+        }
+        HttpRequest request = signed("GET", objectPath(key), Map.of(), Map.of(), SigV4Signer.EMPTY_PAYLOAD_SHA256)
+                .header("Range", "bytes=" + position + "-" + (position + count - 1))
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        InputStream body = response.body();
+        if (response.statusCode() == 404) {
+            body.close();
+            throw new NoSuchFileException(key);
+        }
+        if (response.statusCode() == 200) {
+            // The server ignored the range and sent the whole object
+            body.skipNBytes(position);
+        } else if (response.statusCode() != 206) {
+            body.close();
+            throw new IOException("Reading " + key + " failed: HTTP " + response.statusCode());
+        }
+        return new BoundedInputStream(body, count);
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        deleteObject(objectPath(key), key);
+    }
+
+    @Override
+    public Stream<StoredFile> list() {
+        return listObjects("");
+    }
+
+    @Override
+    public void quarantine(String key) throws IOException {
+        if (stat(key).isEmpty()) {
+            return;
+        }
+        copyObject(objectPath(key), quarantinePath(key), key);
+        deleteObject(objectPath(key), key);
+    }
+
+    @Override
+    public Stream<StoredFile> listQuarantined() {
+        return listObjects(QUARANTINE_PREFIX);
+    }
+
+    @Override
+    public void restore(String key) throws IOException {
+        if (stat(key).isEmpty()) {
+            copyObject(quarantinePath(key), objectPath(key), key);
+        }
+        deleteObject(quarantinePath(key), key);
+    }
+
+    @Override
+    public void purge(String key) throws IOException {
+        deleteObject(quarantinePath(key), key);
+    }
+
+    private String objectPath(String key) {
+        return "/" + SigV4Signer.encodeSegment(bucket) + "/" + SigV4Signer.encodeSegment(MaterialStore.checkKey(key));
+    }
+
+    private String quarantinePath(String key) {
+        return "/" + SigV4Signer.encodeSegment(bucket) + "/" + QUARANTINE_PREFIX
+                + SigV4Signer.encodeSegment(MaterialStore.checkKey(key));
+    }
+
+    private Optional<StoredFile> head(String path, String key) throws IOException {
+        HttpRequest request = signed("HEAD", path, Map.of(), Map.of(), SigV4Signer.EMPTY_PAYLOAD_SHA256)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<Void> response = send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return Optional.empty();
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Looking up " + key + " failed: HTTP " + response.statusCode());
+        }
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        long lastModified = response.headers().firstValue("Last-Modified")
+                .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        return Optional.of(new StoredFile(key, size, lastModified));
+    }
+
+    private void copyObject(String sourcePath, String targetPath, String key) throws IOException {
+        HttpRequest request = signed("PUT", targetPath, Map.of(), Map.of("x-amz-copy-source", sourcePath),
+                SigV4Signer.EMPTY_PAYLOAD_SHA256)
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+        // A copy can fail after the 200 status line has been sent, in which case the body is an error
+        if (response.statusCode() / 100 != 2 || response.body().contains("<Error>")) {
+            throw new IOException("Copying " + key + " failed: HTTP " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private void deleteObject(String path, String key) throws IOException {
+        HttpRequest request = signed("DELETE", path, Map.of(), Map.of(), SigV4Signer.EMPTY_PAYLOAD_SHA256)
+                .DELETE()
+                .build();
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2 && response.statusCode() != 404) {
+            throw new IOException("Deleting " + key + " failed: HTTP " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    /**
+     * Lists the objects directly under {@code prefix} one page at a time, as the stream is consumed.
+     */
+    private Stream<StoredFile> listObjects(String prefix) {
+        Iterator<StoredFile> iterator = new Iterator<>() {
+            private Iterator<StoredFile> page = List.<StoredFile>of().iterator();
+            private String continuationToken;
+            private boolean lastPage;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !lastPage) {
+                    try {
+                        ListPage next = fetchPage(prefix, continuationToken);
+                        page = next.objects().iterator();
+                        continuationToken = next.continuationToken();
+                        lastPage = continuationToken == null;
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public StoredFile next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private ListPage fetchPage(String prefix, String continuationToken) throws IOException {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("list-type", "2");
+        query.put("delimiter", "/");
+        if (!prefix.isEmpty()) {
+            query.put("prefix", prefix);
+        }
+        if (continuationToken != null) {
+            query.put("continuation-token", continuationToken);
+        }
+        HttpRequest request = signed("GET", "/" + SigV4Signer.encodeSegment(bucket), query, Map.of(),
+                SigV4Signer.EMPTY_PAYLOAD_SHA256)
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException("Listing " + bucket + " failed: HTTP " + response.statusCode());
+            }
+            return parseListPage(body, prefix);
+        }
+    }
+
+    private static ListPage parseListPage(InputStream body, String prefix) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        List<StoredFile> objects = new ArrayList<>();
+        String nextToken = null;
+        boolean truncated = false;
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(body);
+            String key = null;
+            long size = 0;
+            long lastModified = 0;
+            boolean inContents = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamReader.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "Contents" -> inContents = true;
+                        case "Key" -> key = inContents ? reader.getElementText() : key;
+                        case "Size" -> size = inContents ? Long.parseLong(reader.getElementText()) : size;
+                        case "LastModified" -> lastModified = inContents
+                                ? Instant.parse(reader.getElementText()).toEpochMilli() : lastModified;
+                        case "IsTruncated" -> truncated = Boolean.parseBoolean(reader.getElementText());
+                        case "NextContinuationToken" -> nextToken = reader.getElementText();
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamReader.END_ELEMENT && "Contents".equals(reader.getLocalName())) {
+                    inContents = false;
+                    if (key != null && key.startsWith(prefix) && key.length() > prefix.length()) {
+                        objects.add(new StoredFile(key.substring(prefix.length()), size, lastModified));
+                    }
+                    key = null;
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException("Unreadable object listing", ex);
+        }
+        return new ListPage(objects, truncated ? nextToken : null);
+    }
+
+    private HttpRequest.Builder signed(String method, String path, Map<String, String> query,
+                                       Map<String, String> amzHeaders, String payloadHash) {
+        String amzDate = AMZ_DATE.format(clock.instant());
+        String canonicalQuery = SigV4Signer.canonicalQuery(query);
+
+        SortedMap<String, String> headers = new TreeMap<>(amzHeaders);
+        headers.put("host", host);
+        headers.put("x-amz-content-sha256", payloadHash);
+        headers.put("x-amz-date", amzDate);
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUri + path
+                        + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery)))
+                .timeout(Duration.ofMinutes(5))
+                .header("Authorization", signer.authorization(method, path, canonicalQuery, headers, payloadHash, amzDate));
+        headers.forEach((name, value) -> {
+            if (!name.equals("host")) {
+                builder.header(name, value);
+            }
+        });
+        return builder;
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(request, handler);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while talking to the object store");
+        }
+    }
+
+    /**
+     * The Host header the HTTP client will send, which has to be part of the signature.
+     */
+    private static String hostHeader(URI endpoint) {
+        int port = endpoint.getPort();
+        boolean defaultPort = port == -1
+                || ("http".equals(endpoint.getScheme()) && port == 80)
+                || ("https".equals(endpoint.getScheme()) && port == 443);
+        return defaultPort ? endpoint.getHost() : endpoint.getHost() + ":" + port;
+    }
+
+    private record ListPage(List<StoredFile> objects, String continuationToken) {
+    }
+}
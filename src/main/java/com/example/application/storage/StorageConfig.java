@@ -0,0 +1,33 @@
+package com.example.application.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Chooses the {@link MaterialStore} from {@code app.storage.type}: {@code filesystem} (the default)
+ * keeps files under {@code app.upload-dir}, {@code s3} keeps them in an S3-compatible bucket.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "filesystem", matchIfMissing = true)
+    public MaterialStore fileSystemMaterialStore(@Value("${app.upload-dir:./uploads}") String uploadDir) {
+        return new FileSystemMaterialStore(Paths.get(uploadDir));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+    public MaterialStore s3MaterialStore(@Value("${app.storage.s3.endpoint}") String endpoint,
+                                         @Value("${app.storage.s3.region:us-east-1}") String region,
+                                         @Value("${app.storage.s3.bucket}") String bucket,
+                                         @Value("${app.storage.s3.access-key}") String accessKey,
+                                         @Value("${app.storage.s3.secret-key}") String secretKey) {
+        return new S3MaterialStore(URI.create(endpoint), region, bucket, accessKey, secretKey);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.application.storage;
+
+/**
+ * Metadata of an object in a {@link MaterialStore}.
+ *
+ * @param lastModified modification time in epoch milliseconds
+ */
+public record StoredFile(String key, long size, long lastModified) {
+}
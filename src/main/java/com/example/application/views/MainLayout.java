@@ -3,6 +3,7 @@ package com.example.application.views;
 import com.example.application.data.User;
 import com.example.application.security.SecurityService;
 import com.example.application.services.UserService;
+import com.example.application.views.admin.StorageIntegrityView;
 import com.example.application.views.student.StudentDashboardView;
 import com.example.application.views.teacher.TeacherDashboardView;
 import com.vaadin.flow.component.applayout.AppLayout;
@@ -69,6 +70,10 @@ public class MainLayout extends AppLayout {
                 if (userService.isTeacher(user)) {
                     layout.add(new RouterLink("Teacher Dashboard", TeacherDashboardView.class));
                 }
+
+                if (userService.isAdmin(user)) {
+                    layout.add(new RouterLink("Storage Integrity", StorageIntegrityView.class));
+                }
             }
         }
         
@@ -0,0 +1,86 @@
+package com.example.application.views.admin;
+
+import com.example.application.data.LearningMaterial;
+import com.example.application.services.IntegrityScrubber;
+import com.example.application.services.IntegrityScrubber.ScrubFailure;
+import com.example.application.services.LearningMaterialService;
+import com.example.application.services.MaterialCompressor;
+import com.example.application.views.MainLayout;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import jakarta.annotation.security.RolesAllowed;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+@Route(value = "admin/storage", layout = MainLayout.class)
+@PageTitle("Storage Integrity | Learning Management System")
+@RolesAllowed({"ADMIN"})
+public class StorageIntegrityView extends VerticalLayout {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+            .withZone(ZoneId.systemDefault());
+
+    private final IntegrityScrubber scrubber;
+    private final LearningMaterialService materialService;
+
+    private final Span status = new Span();
+    private final Grid<ScrubFailure> failuresGrid = new Grid<>();
+
+    @Autowired
+    public StorageIntegrityView(IntegrityScrubber scrubber, LearningMaterialService materialService) {
+        this.scrubber = scrubber;
+        this.materialService = materialService;
+
+        setSpacing(true);
+        setPadding(true);
+
+        failuresGrid.addColumn(failure -> material(failure.key())).setHeader("Material");
+        failuresGrid.addColumn(ScrubFailure::key).setHeader("Stored File");
+        failuresGrid.addColumn(ScrubFailure::size).setHeader("Size (bytes)");
+        failuresGrid.addColumn(ScrubFailure::problem).setHeader("Problem");
+        failuresGrid.addColumn(failure -> format(failure.detectedAt())).setHeader("Detected");
+
+        Button scanButton = new Button("Scan Now", e -> {
+            if (scrubber.startPass()) {
+                Notification.show("Integrity scan started");
+            } else {
+                Notification.show("A scan is already running");
+            }
+            refresh();
+        });
+        Button refreshButton = new Button("Refresh", e -> refresh());
+
+        add(new H2("Storage Integrity"), status, new HorizontalLayout(scanButton, refreshButton), failuresGrid);
+        refresh();
+    }
+
+    private void refresh() {
+        String lastPass = scrubber.getLastPassCompleted() == null
+                ? "No scan has completed since the server started."
+                : "Last scan completed " + format(scrubber.getLastPassCompleted()) + ", "
+                        + scrubber.getLastPassVerified() + " files verified.";
+        status.setText((scrubber.isRunning() ? "A scan is running. " : "") + lastPass);
+        failuresGrid.setItems(scrubber.getFailures());
+    }
+
+    private String material(String key) {
+        return materialService.findByStoredFile(MaterialCompressor.originalKey(key))
+                .map(LearningMaterial::getTitle)
+                .map(title -> key.endsWith(MaterialCompressor.GZIP_SUFFIX) ? title + " (compressed copy)" : title)
+                .orElse("(unreferenced)");
+    }
+
+    private static String format(Instant instant) {
+        return TIME_FORMAT.format(instant);
+    }
+}
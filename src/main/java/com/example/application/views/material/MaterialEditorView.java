@@ -4,6 +4,7 @@ import com.example.application.data.LearningMaterial;
 import com.example.application.data.User;
 import com.example.application.security.SecurityService;
 import com.example.application.services.LearningMaterialService;
+import com.example.application.views.upload.DiskUploadBuffer;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
@@ -15,7 +16,6 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.component.html.Div;
@@ -23,10 +23,6 @@ import jakarta.annotation.security.PermitAll;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.InputStream;
-import java.io.IOException;
-import java.io.ByteArrayInputStream;
-
 @PageTitle("Material Editor")
 @Route(value = "materials/editor")
 @PermitAll
@@ -35,7 +31,7 @@ public class MaterialEditorView extends VerticalLayout {
     private TextField title;
     private TextArea description;
     private Upload upload;
-    private MemoryBuffer buffer;
+    private DiskUploadBuffer buffer;
     private Button saveButton;
     private Button cancelButton;
     private final LearningMaterialService materialService;
@@ -73,8 +69,9 @@ public class MaterialEditorView extends VerticalLayout {
         description.setWidth("100%");
         description.setRequired(true);
         
-        buffer = new MemoryBuffer();
+        buffer = new DiskUploadBuffer(materialService);
         upload = new Upload(buffer);
+        buffer.attachTo(upload);
         upload.setWidth("100%");
         upload.setAcceptedFileTypes("application/pdf", ".pdf", 
                                    "application/msword", ".doc", 
@@ -120,7 +117,7 @@ public class MaterialEditorView extends VerticalLayout {
             Notification.show("Please enter a description");
             return false;
         }
-        if (buffer.getFileName() == null || buffer.getFileName().isEmpty()) {
+        if (!buffer.hasFile()) {
             Notification.show("Please upload a file");
             return false;
         }
@@ -135,26 +132,8 @@ public class MaterialEditorView extends VerticalLayout {
             UserDetails userDetails = securityService.getAuthenticatedUser();
             user = findUserByUsername(userDetails.getUsername());
             
-            InputStream inputStream = null;
-            String fileName = null;
-            String contentType = null;
-            long fileSize = 0L;
-            
-            if (buffer.getFileData() != null && buffer.getFileName() != null && !buffer.getFileName().isEmpty()) {
-                InputStream tempInputStream = buffer.getInputStream();
-                byte[] fileBytes = tempInputStream.readAllBytes();
-                tempInputStream.close();
-
-                inputStream = new ByteArrayInputStream(fileBytes);
-                fileName = buffer.getFileName();
-                contentType = buffer.getFileData().getMimeType();
-                fileSize = fileBytes.length;
-            } else {
-                // Handle case where no file is uploaded if necessary, 
-                // currently service call will proceed with nulls/zero
-            }
-            
-            materialService.saveLearningMaterial(material, inputStream, fileName, contentType, fileSize, user);
+            materialService.saveLearningMaterial(material, buffer.getUpload(), user);
+            buffer.release();
             
             Notification.show("Material saved successfully", 3000, Notification.Position.MIDDLE)
                     .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
@@ -197,6 +176,7 @@ public class MaterialEditorView extends VerticalLayout {
         description.setInvalid(false);
         
         upload.clearFileList();
+        buffer.discard();
         
         material = new LearningMaterial();
     }
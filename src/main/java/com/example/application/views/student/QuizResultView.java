@@ -2,9 +2,11 @@ package com.example.application.views.student;
 
 import com.example.application.data.Quiz;
 import com.example.application.data.QuizAttempt;
+import com.example.application.data.QuizAttemptAnswerRepository;
 import com.example.application.data.QuizQuestion;
 import com.example.application.data.User;
 import com.example.application.security.SecurityService;
+import com.example.application.services.AttemptShuffle;
 import com.example.application.services.QuizService;
 import com.example.application.services.UserService;
 import com.example.application.views.MainLayout;
@@ -31,8 +33,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -50,7 +50,7 @@ public class QuizResultView extends VerticalLayout implements HasUrlParameter<Lo
     private QuizAttempt attempt;
     private Quiz quiz;
     private List<QuizQuestion> questions;
-    private Map<Long, String> studentAnswers;
+    private Map<Long, QuizAttemptAnswerRepository.AnswerView> studentAnswers;
 
     @Autowired
     public QuizResultView(
@@ -129,14 +129,10 @@ public class QuizResultView extends VerticalLayout implements HasUrlParameter<Lo
                 showErrorMessage("Quiz Error", "Could not load questions for this quiz.");
                 return;
             }
-            questions = new ArrayList<>(quiz.getQuestions());
+            // The questions the attempt drew, in the order it showed them
+            questions = AttemptShuffle.questions(quizService.findQuestionsForAttempt(attempt), attempt.getShuffleSeed());
             
-            // Create a mock map of student answers for now
-            // TODO: In a real implementation, this should load saved answers
-            studentAnswers = new HashMap<>();
-            for (QuizQuestion question : questions) {
-                studentAnswers.put(question.getId(), question.getCorrectAnswer()); // Mock data!
-            }
+            studentAnswers = quizService.findAnswersForAttempt(attempt.getId());
             
             // Build UI
             buildResultsUI();
@@ -216,17 +212,17 @@ public class QuizResultView extends VerticalLayout implements HasUrlParameter<Lo
         // Question header
         H4 questionText = new H4(questionNumber + ". " + question.getQuestionText());
         
-        // Student's answer
-        String studentAnswer = studentAnswers.getOrDefault(question.getId(), "Not answered");
+        // Student's answer, marked as graded at submission
+        QuizAttemptAnswerRepository.AnswerView studentAnswer = studentAnswers.get(question.getId());
         
-        Paragraph yourAnswerPara = new Paragraph("Your answer: " + studentAnswer);
+        Paragraph yourAnswerPara = new Paragraph("Your answer: " + (studentAnswer != null ? studentAnswer.getAnswerText() : "Not answered"));
         
         // Correct answer
         Paragraph correctAnswerPara = new Paragraph("Correct answer: " + question.getCorrectAnswer());
         
         // Result icon
         Icon resultIcon;
-        if (studentAnswer.equals(question.getCorrectAnswer())) {
+        if (studentAnswer != null && studentAnswer.isCorrect()) {
             resultIcon = new Icon(VaadinIcon.CHECK);
             resultIcon.getStyle().set("color", "green");
             questionDiv.getStyle().set("border-left", "5px solid green");
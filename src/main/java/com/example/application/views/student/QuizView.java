@@ -1,16 +1,22 @@
 package com.example.application.views.student;
 
-import com.example.application.data.Quiz;
 import com.example.application.data.QuizAttempt;
-import com.example.application.data.QuizQuestion;
+import com.example.application.data.QuizAttemptAnswer;
 import com.example.application.data.User;
 import com.example.application.security.SecurityService;
+import com.example.application.services.AnswerAutosave;
+import com.example.application.services.QuestionGraders;
+import com.example.application.services.QuizDeadlineScheduler;
 import com.example.application.services.QuizService;
+import com.example.application.services.QuizSnapshot;
+import com.example.application.services.SubmissionPipeline;
 import com.example.application.services.UserService;
 import com.example.application.views.MainLayout;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.checkbox.CheckboxGroup;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.H3;
@@ -23,6 +29,7 @@ import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.component.radiobutton.RadioButtonGroup;
+import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.router.BeforeEvent;
 import com.vaadin.flow.router.HasUrlParameter;
 import com.vaadin.flow.router.PageTitle;
@@ -31,9 +38,10 @@ import jakarta.annotation.security.RolesAllowed;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -46,11 +54,15 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
     private final SecurityService securityService;
     private final UserService userService;
     private final QuizService quizService;
+    private final SubmissionPipeline submissionPipeline;
+    private final AnswerAutosave answerAutosave;
+    private final QuizDeadlineScheduler quizDeadlines;
     
     private User currentUser;
-    private Quiz quiz;
+    // Shared with other sessions, and kept for the whole attempt even if the quiz is edited meanwhile
+    private QuizSnapshot quiz;
     private QuizAttempt currentAttempt;
-    private List<QuizQuestion> questions;
+    private List<QuizSnapshot.Question> questions;
     private int currentQuestionIndex = 0;
     
     private VerticalLayout questionContainer;
@@ -67,10 +79,16 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
     public QuizView(
             SecurityService securityService,
             UserService userService,
-            QuizService quizService) {
+            QuizService quizService,
+            SubmissionPipeline submissionPipeline,
+            AnswerAutosave answerAutosave,
+            QuizDeadlineScheduler quizDeadlines) {
         this.securityService = securityService;
         this.userService = userService;
         this.quizService = quizService;
+        this.submissionPipeline = submissionPipeline;
+        this.answerAutosave = answerAutosave;
+        this.quizDeadlines = quizDeadlines;
         
         setSizeFull();
         setAlignItems(Alignment.CENTER);
@@ -84,8 +102,7 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
     public void setParameter(BeforeEvent event, Long quizId) {
         removeAll(); // Clear previous content
 
-        // Use the new service method to fetch quiz with questions
-        Optional<Quiz> quizOpt = quizService.findByIdWithQuestions(quizId); 
+        Optional<QuizSnapshot> quizOpt = quizService.findSnapshot(quizId);
 
         if (quizOpt.isPresent()) {
             quiz = quizOpt.get();
@@ -96,18 +113,8 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
                 return;
             }
 
-            // Load questions safely - Already fetched now!
-            if (quiz.getQuestions() == null) { 
-                 // This check might still be useful if a quiz can be saved with null questions
-                 Notification.show("Error: Quiz has no questions.", 3000, Notification.Position.MIDDLE)
-                            .addThemeVariants(NotificationVariant.LUMO_ERROR);
-                 add(new Button("Back to Dashboard", e -> UI.getCurrent().navigate(StudentDashboardView.class)));
-                 return;
-            }
-            questions = new ArrayList<>(quiz.getQuestions()); // Should not throw LazyInitializationException now
-            
-            // Check if there are any questions
-            if (questions.isEmpty()) {
+            // Check if there are any questions, of its own or to draw from the question bank
+            if (quiz.getQuestions().isEmpty() && !quiz.isSampled()) {
                 Notification.show("Error: Quiz has no questions.", 3000, Notification.Position.MIDDLE)
                             .addThemeVariants(NotificationVariant.LUMO_ERROR);
                  add(new Button("Back to Dashboard", e -> UI.getCurrent().navigate(StudentDashboardView.class)));
@@ -115,18 +122,9 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
             }
             
             // Check completion status safely
-            boolean hasCompleted = false;
+            boolean hasCompleted;
             try {
-                 List<QuizAttempt> studentAttempts = quizService.findAttemptsByStudent(currentUser);
-                 if (studentAttempts != null) { // Check if list itself is null (defensive)
-                     for (QuizAttempt attempt : studentAttempts) {
-                        // Check if attempt or its quiz is null (defensive)
-                        if (attempt != null && attempt.getQuiz() != null && attempt.getQuiz().equals(quiz) && attempt.isCompleted()) { 
-                            hasCompleted = true;
-                            break;
-                        }
-                    }
-                 }
+                 hasCompleted = quizService.hasStudentCompletedQuiz(quiz, currentUser);
             } catch (Exception e) {
                 // Log error potentially related to fetching attempts
                 System.err.println("Error checking quiz completion status: " + e.getMessage());
@@ -140,10 +138,10 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
                 return;
             }
             
-            // Start new attempt logic...
-            // Create and save the attempt immediately to get an ID
+            // Resume an unfinished attempt, or create and save a new one immediately to get an ID
             try {
-                currentAttempt = quizService.startQuizAttempt(quiz, currentUser); 
+                currentAttempt = quizService.findOpenAttempt(quiz, currentUser)
+                        .orElseGet(() -> quizService.startQuizAttempt(quiz, currentUser));
             } catch (Exception e) {
                  // Handle potential errors during attempt creation (e.g., database issues)
                  System.err.println("Error starting quiz attempt: " + e.getMessage());
@@ -161,7 +159,17 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
                  return; 
             }
             
-            studentAnswers = new HashMap<>(); // Reset answers for the new attempt
+            // The questions this attempt drew, in its own order, so neighbours don't see the same sequence
+            questions = quiz.getQuestions(currentAttempt.getShuffleSeed(), currentAttempt.getSampledQuestionIds());
+            if (questions.isEmpty()) {
+                Notification.show("Error: Quiz has no questions.", 3000, Notification.Position.MIDDLE)
+                            .addThemeVariants(NotificationVariant.LUMO_ERROR);
+                add(new Button("Back to Dashboard", e -> UI.getCurrent().navigate(StudentDashboardView.class)));
+                return;
+            }
+            
+            // Answers autosaved so far, empty for a new attempt
+            studentAnswers = new HashMap<>(answerAutosave.restore(currentAttempt.getId()));
             
             buildQuizUI();
             showQuestion(currentQuestionIndex);
@@ -178,6 +186,11 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
         H2 title = new H2(quiz.getTitle());
         Paragraph description = new Paragraph(quiz.getDescription());
         Span timeLimit = new Span("Time Limit: " + quiz.getDurationMinutes() + " minutes");
+        if (quiz.getDurationMinutes() != null && currentAttempt.getStartTime() != null) {
+            // Enforced by QuizDeadlineScheduler, which submits the autosaved answers at the deadline
+            timeLimit.setText(timeLimit.getText() + " (ends at "
+                    + currentAttempt.getStartTime().plusMinutes(quiz.getDurationMinutes()).format(DateTimeFormatter.ofPattern("HH:mm")) + ")");
+        }
         
         // Progress tracking
         questionCountLabel = new Span("Question 1 of " + questions.size());
@@ -210,7 +223,7 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
     private void showQuestion(int index) {
         questionContainer.removeAll();
         
-        QuizQuestion question = questions.get(index);
+        QuizSnapshot.Question question = questions.get(index);
         
         // Update progress indicators
         questionCountLabel.setText("Question " + (index + 1) + " of " + questions.size());
@@ -222,52 +235,71 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
         submitButton.setVisible(index == questions.size() - 1);
         
         // Display question
-        H3 questionText = new H3((index + 1) + ". " + question.getQuestionText());
+        H3 questionText = new H3((index + 1) + ". " + question.text());
         questionContainer.add(questionText);
         
         // For multiple choice questions
-        if ("MULTIPLE_CHOICE".equals(question.getQuestionType())) {
-            // Create some mock answers
-            // In a real implementation, these would come from the database
-            List<String> choices = getMockAnswerChoices(question);
-            
+        if ("MULTIPLE_CHOICE".equals(question.type())) {
             RadioButtonGroup<String> options = new RadioButtonGroup<>();
-            options.setItems(choices);
+            options.setItems(question.choices());
             
             // If already answered, select the previous answer
-            if (studentAnswers.containsKey(question.getId())) {
-                options.setValue(studentAnswers.get(question.getId()));
+            if (studentAnswers.containsKey(question.id())) {
+                options.setValue(studentAnswers.get(question.id()));
             }
             
             // Save answer when selected
             options.addValueChangeListener(event -> {
                 if (event.getValue() != null) {
-                    studentAnswers.put(question.getId(), event.getValue());
+                    studentAnswers.put(question.id(), event.getValue());
+                    answerAutosave.record(currentAttempt.getId(), question.id(), event.getValue());
                 }
             });
             
             questionContainer.add(options);
+        } else if (QuestionGraders.MULTIPLE_SELECT.equals(question.type())) {
+            CheckboxGroup<String> options = new CheckboxGroup<>();
+            options.setItems(question.choices());
+            
+            if (studentAnswers.containsKey(question.id())) {
+                options.setValue(new LinkedHashSet<>(Arrays.asList(studentAnswers.get(question.id()).split(QuestionGraders.SEPARATOR))));
+            }
+            
+            // Selected options are stored as one answer, in the order they are offered
+            options.addValueChangeListener(event -> {
+                String answer = String.join(QuestionGraders.SEPARATOR,
+                        question.choices().stream().filter(event.getValue()::contains).toList());
+                if (answer.isEmpty()) {
+                    studentAnswers.remove(question.id());
+                    answerAutosave.record(currentAttempt.getId(), question.id(), null);
+                } else {
+                    studentAnswers.put(question.id(), answer);
+                    answerAutosave.record(currentAttempt.getId(), question.id(), answer);
+                }
+            });
+            
+            questionContainer.add(options);
+        } else {
+            // Short text, numeric and pattern answers are typed in
+            TextField answerField = new TextField();
+            answerField.setWidth("100%");
+            answerField.setMaxLength(QuizAttemptAnswer.MAX_ANSWER_LENGTH);
+            answerField.setPlaceholder(QuestionGraders.NUMERIC.equals(question.type()) ? "Enter a number" : "Your answer");
+            answerField.setValue(studentAnswers.getOrDefault(question.id(), ""));
+            answerField.addValueChangeListener(event -> {
+                if (event.getValue().isBlank()) {
+                    studentAnswers.remove(question.id());
+                    answerAutosave.record(currentAttempt.getId(), question.id(), null);
+                } else {
+                    studentAnswers.put(question.id(), event.getValue());
+                    answerAutosave.record(currentAttempt.getId(), question.id(), event.getValue());
+                }
+            });
+            
+            questionContainer.add(answerField);
         }
     }
     
-    private List<String> getMockAnswerChoices(QuizQuestion question) {
-        // In a real application, these would come from the database
-        // For now, we'll create some mock choices including the correct answer
-        
-        if (question.getCorrectAnswer() != null) {
-            // Create a list with the correct answer and some fake options
-            return Arrays.asList(
-                question.getCorrectAnswer(),
-                "Wrong option 1",
-                "Wrong option 2",
-                "Wrong option 3"
-            );
-        }
-        
-        // Fallback if no correct answer
-        return Arrays.asList("Option 1", "Option 2", "Option 3", "Option 4");
-    }
-    
     private void showPreviousQuestion() {
         if (currentQuestionIndex > 0) {
             currentQuestionIndex--;
@@ -296,20 +328,37 @@ public class QuizView extends VerticalLayout implements HasUrlParameter<Long> {
              return; 
         }
         
-        try {
-            // Call service to calculate score, save answers, and mark as complete
-            quizService.completeQuizAttempt(currentAttempt.getId(), studentAnswers);
-            
-            // Navigate to results using the valid attempt ID
-            Notification.show("Quiz submitted successfully!");
-            UI.getCurrent().navigate("quiz-result/" + currentAttempt.getId());
-
-        } catch (Exception e) {
-            // Handle potential errors during submission (e.g., database issues)
-            System.err.println("Error submitting quiz attempt: " + e.getMessage());
-            Notification.show("Error submitting quiz. Please try again.", 5000, Notification.Position.MIDDLE)
-                       .addThemeVariants(NotificationVariant.LUMO_ERROR);
-        }
+        // Graded and committed together with other submissions; the result is pushed back once stored
+        Long attemptId = currentAttempt.getId();
+        UI ui = UI.getCurrent();
+        submitButton.setEnabled(false);
+        submitButton.setText("Submitting...");
+        submissionPipeline.submit(attemptId, studentAnswers).whenComplete((grade, error) -> {
+            try {
+                ui.access(() -> {
+                    if (error == null) {
+                        answerAutosave.discard(attemptId);
+                        quizDeadlines.cancel(attemptId);
+                        // Navigate to results using the valid attempt ID
+                        Notification.show("Quiz submitted successfully!");
+                        ui.navigate("quiz-result/" + attemptId);
+                    } else if (error instanceof IllegalStateException) {
+                        // Submitted already, e.g. with the saved answers when the time ran out
+                        Notification.show("This attempt has already been submitted.", 5000, Notification.Position.MIDDLE);
+                        ui.navigate("quiz-result/" + attemptId);
+                    } else {
+                        // Handle potential errors during submission (e.g., database issues, a full queue)
+                        System.err.println("Error submitting quiz attempt: " + error.getMessage());
+                        submitButton.setEnabled(true);
+                        submitButton.setText("Submit Quiz");
+                        Notification.show("Error submitting quiz. Please try again.", 5000, Notification.Position.MIDDLE)
+                                   .addThemeVariants(NotificationVariant.LUMO_ERROR);
+                    }
+                });
+            } catch (UIDetachedException ex) {
+                // The student left the page; the submission is stored regardless
+            }
+        });
     }
     
     private void showQuizNotFoundMessage() {
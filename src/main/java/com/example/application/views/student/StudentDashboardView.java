@@ -18,6 +18,7 @@ import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.H3;
 import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
@@ -26,6 +27,8 @@ import com.vaadin.flow.router.RouteParameters;
 import jakarta.annotation.security.RolesAllowed;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -39,6 +42,7 @@ public class StudentDashboardView extends VerticalLayout {
     private final LearningMaterialService materialService;
     private final QuizService quizService;
     
+    private User currentUser;
     private StudentProfile studentProfile;
     private Grid<LearningMaterial> materialsGrid = new Grid<>(LearningMaterial.class);
     private Grid<Quiz> quizzesGrid = new Grid<>(Quiz.class);
@@ -61,7 +65,7 @@ public class StudentDashboardView extends VerticalLayout {
         setPadding(true);
 
         String username = securityService.getAuthenticatedUser().getUsername();
-        User currentUser = userService.findUserByUsername(username);
+        currentUser = userService.findUserByUsername(username);
         studentProfile = userService.findStudentByUser(currentUser);
 
         // Create ComboBox first as other sections might depend on its value
@@ -122,20 +126,29 @@ public class StudentDashboardView extends VerticalLayout {
             LearningMaterial selected = materialsGrid.asSingleSelect().getValue();
             if (selected != null && selected.getFilePath() != null) {
                 // Create an Anchor for downloading
-                String filePath = selected.getFilePath();
-                Anchor downloadLink = new Anchor("/download/" + filePath, "Download");
+                String url = "/download/" + selected.getId() + "/" + selected.getFilePath();
+                Anchor downloadLink = new Anchor(url, "Download");
                 downloadLink.getElement().setAttribute("download", true);
                 downloadLink.getElement().setAttribute("target", "_blank");
                 
                 // Open in a new tab
-                getUI().ifPresent(ui -> ui.getPage().open("/download/" + filePath, "_blank"));
+                getUI().ifPresent(ui -> ui.getPage().open(url, "_blank"));
                 Notification.show("Downloading material...");
             } else {
                 Notification.show("No file available for download");
             }
         });
         
-        layout.add(sectionTitle, materialsGrid, downloadButton);
+        // Everything for the selected subject in one archive, e.g. before an exam
+        Button downloadAllButton = new Button("Download All", e -> {
+            String subject = subjectFilterComboBox.getValue();
+            String url = subject == null || subject.equals("All Subjects")
+                    ? "/download/archive"
+                    : "/download/archive?subject=" + URLEncoder.encode(subject, StandardCharsets.UTF_8);
+            getUI().ifPresent(ui -> ui.getPage().open(url, "_blank"));
+        });
+
+        layout.add(sectionTitle, materialsGrid, new HorizontalLayout(downloadButton, downloadAllButton));
         return layout;
     }
 
@@ -153,10 +166,14 @@ public class StudentDashboardView extends VerticalLayout {
         quizzesGrid.addColumn(Quiz::getDescription).setHeader("Description");
         quizzesGrid.addColumn(quiz -> quiz.getCreatedBy().getUsername()).setHeader("Created By");
         quizzesGrid.addColumn(Quiz::getDurationMinutes).setHeader("Duration (minutes)");
+        quizzesGrid.addColumn(quiz -> quizService.hasStudentCompletedQuiz(quiz, currentUser) ? "Completed" : "Not taken")
+                .setHeader("Status");
         
         Button startQuizButton = new Button("Start Quiz", e -> {
             Quiz selected = quizzesGrid.asSingleSelect().getValue();
-            if (selected != null) {
+            if (selected != null && quizService.hasStudentCompletedQuiz(selected, currentUser)) {
+                Notification.show("You have already completed this quiz.");
+            } else if (selected != null) {
                 // Navigate to quiz view with ID parameter
                 getUI().ifPresent(ui -> ui.navigate("quiz/" + selected.getId()));
             }
@@ -195,7 +212,6 @@ public class StudentDashboardView extends VerticalLayout {
     }
 
     private void refreshAttemptsGrid() {
-        User currentUser = userService.findUserByUsername(securityService.getAuthenticatedUser().getUsername());
         attemptsGrid.setItems(quizService.findAttemptsByStudent(currentUser));
     }
 } 
\ No newline at end of file
@@ -0,0 +1,145 @@
+package com.example.application.views.teacher;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.User;
+import com.example.application.security.SecurityService;
+import com.example.application.services.ItemAnalysis;
+import com.example.application.services.QuizService;
+import com.example.application.services.UserService;
+import com.example.application.views.MainLayout;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.grid.GridVariant;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.router.BeforeEvent;
+import com.vaadin.flow.router.HasUrlParameter;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import jakarta.annotation.security.RolesAllowed;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Route(value = "teacher/quiz/analysis", layout = MainLayout.class)
+@PageTitle("Item Analysis | Learning Management System")
+@RolesAllowed({"TEACHER"})
+public class ItemAnalysisView extends VerticalLayout implements HasUrlParameter<Long> {
+
+    // Rules of thumb for flagging questions
+    private static final double TOO_EASY = 0.9;
+    private static final double TOO_HARD = 0.2;
+    private static final double POOR_DISCRIMINATION = 0.2;
+    private static final int MIN_ATTEMPTS = 10;
+
+    private final SecurityService securityService;
+    private final UserService userService;
+    private final QuizService quizService;
+    private final ItemAnalysis itemAnalysis;
+
+    private User currentUser;
+    private Quiz quiz;
+    private final Grid<ItemAnalysis.Item> itemsGrid = new Grid<>();
+
+    @Autowired
+    public ItemAnalysisView(
+            SecurityService securityService,
+            UserService userService,
+            QuizService quizService,
+            ItemAnalysis itemAnalysis) {
+        this.securityService = securityService;
+        this.userService = userService;
+        this.quizService = quizService;
+        this.itemAnalysis = itemAnalysis;
+
+        setSizeFull();
+        setPadding(true);
+        setSpacing(true);
+
+        String username = securityService.getAuthenticatedUser().getUsername();
+        currentUser = userService.findUserByUsername(username);
+    }
+
+    @Override
+    public void setParameter(BeforeEvent event, Long quizId) {
+        removeAll();
+        quiz = quizService.findById(quizId);
+        if (quiz == null) {
+            showNotFoundMessage();
+            return;
+        }
+        if (!quiz.getCreatedBy().equals(currentUser)) {
+            showUnauthorizedMessage();
+            return;
+        }
+
+        H2 title = new H2("Item Analysis: " + quiz.getTitle());
+        Paragraph explanation = new Paragraph("Correct is the share of students answering a question correctly. "
+                + "Discrimination is how much better students answering it correctly did on the whole quiz, from -1 to 1; "
+                + "questions below " + POOR_DISCRIMINATION + " hardly tell strong students from weak ones. "
+                + "Questions are flagged once " + MIN_ATTEMPTS + " students have answered them.");
+
+        itemsGrid.addColumn(ItemAnalysis.Item::questionText).setHeader("Question").setFlexGrow(3);
+        itemsGrid.addColumn(ItemAnalysis.Item::attempts).setHeader("Answered");
+        itemsGrid.addColumn(item -> percent(item.difficulty())).setHeader("Correct");
+        itemsGrid.addColumn(item -> Double.isNaN(item.discrimination()) ? "-" : String.format("%.2f", item.discrimination()))
+                .setHeader("Discrimination");
+        itemsGrid.addColumn(item -> describeOptions(item.options())).setHeader("Selected options").setFlexGrow(2);
+        itemsGrid.addColumn(this::flag).setHeader("Flag");
+        itemsGrid.addThemeVariants(GridVariant.LUMO_WRAP_CELL_CONTENT);
+        itemsGrid.setItems(itemAnalysis.analyse(quizId));
+
+        // Also counts attempts completed before statistics were kept
+        Button recalculateButton = new Button("Recalculate", e -> {
+            itemAnalysis.rebuild(quizId);
+            itemsGrid.setItems(itemAnalysis.analyse(quizId));
+            Notification.show("Statistics recalculated from all attempts");
+        });
+        Button backButton = new Button("Back to Dashboard", e -> UI.getCurrent().navigate(TeacherDashboardView.class));
+
+        add(title, explanation, itemsGrid, new HorizontalLayout(backButton, recalculateButton));
+    }
+
+    private String flag(ItemAnalysis.Item item) {
+        if (item.attempts() < MIN_ATTEMPTS) {
+            return "";
+        }
+        if (item.difficulty() >= TOO_EASY) {
+            return "Too easy";
+        }
+        if (item.difficulty() <= TOO_HARD) {
+            return "Too hard";
+        }
+        if (Double.isNaN(item.discrimination()) || item.discrimination() < POOR_DISCRIMINATION) {
+            return "Poor discrimination";
+        }
+        return "";
+    }
+
+    private static String percent(double share) {
+        return Double.isNaN(share) ? "-" : Math.round(share * 100) + "%";
+    }
+
+    private static String describeOptions(Map<String, Long> options) {
+        return options.entrySet().stream()
+                .map(option -> option.getKey() + " (" + option.getValue() + ")")
+                .collect(Collectors.joining(", "));
+    }
+
+    private void showUnauthorizedMessage() {
+        add(new H2("Unauthorized Access"));
+        add(new Paragraph("You are not authorized to view this quiz's statistics."));
+        add(new Button("Back to Dashboard", e -> UI.getCurrent().navigate(TeacherDashboardView.class)));
+    }
+
+    private void showNotFoundMessage() {
+        add(new H2("Not Found"));
+        add(new Paragraph("The requested quiz could not be found."));
+        add(new Button("Back to Dashboard", e -> UI.getCurrent().navigate(TeacherDashboardView.class)));
+    }
+}
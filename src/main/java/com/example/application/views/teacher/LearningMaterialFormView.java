@@ -3,9 +3,12 @@ package com.example.application.views.teacher;
 import com.example.application.data.LearningMaterial;
 import com.example.application.data.User;
 import com.example.application.security.SecurityService;
+import com.example.application.services.ChunkedUploadService;
 import com.example.application.services.LearningMaterialService;
+import com.example.application.services.StagedUpload;
 import com.example.application.services.UserService;
 import com.example.application.views.MainLayout;
+import com.example.application.views.upload.ChunkedUpload;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.formlayout.FormLayout;
@@ -17,8 +20,6 @@ import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
-import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
 import com.vaadin.flow.router.BeforeEvent;
 import com.vaadin.flow.router.HasUrlParameter;
 import com.vaadin.flow.router.PageTitle;
@@ -27,9 +28,6 @@ import jakarta.annotation.security.PermitAll;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.ByteArrayInputStream;
 import java.util.Optional;
 
 @Route(value = "teacher/material", layout = MainLayout.class)
@@ -38,6 +36,7 @@ import java.util.Optional;
 public class LearningMaterialFormView extends VerticalLayout implements HasUrlParameter<String> {
     
     private final LearningMaterialService materialService;
+    private final ChunkedUploadService chunkedUploadService;
     private final UserService userService;
     private final SecurityService securityService;
     
@@ -46,16 +45,19 @@ public class LearningMaterialFormView extends VerticalLayout implements HasUrlPa
     
     private TextField titleField;
     private TextArea descriptionField;
-    private Upload fileUpload;
-    private MemoryBuffer memoryBuffer;
+    private ChunkedUpload fileUpload;
+    private Span fileStatus;
+    private String uploadId;
     
     private boolean isNewMaterial = true;
     
     @Autowired
     public LearningMaterialFormView(LearningMaterialService materialService,
+                                   ChunkedUploadService chunkedUploadService,
                                    UserService userService,
                                    SecurityService securityService) {
         this.materialService = materialService;
+        this.chunkedUploadService = chunkedUploadService;
         this.userService = userService;
         this.securityService = securityService;
         
@@ -82,15 +84,24 @@ public class LearningMaterialFormView extends VerticalLayout implements HasUrlPa
         descriptionField = new TextArea("Description");
         descriptionField.setWidth("100%");
         
-        memoryBuffer = new MemoryBuffer();
-        fileUpload = new Upload(memoryBuffer);
-        fileUpload.setMaxFiles(1);
-        fileUpload.setAcceptedFileTypes("application/pdf", ".pdf", "application/msword", "application/vnd.openxmlformats-officedocument.wordprocessingml.document", ".docx", ".doc");
-        fileUpload.setWidth("100%");
-        
-        formLayout.add(titleField, descriptionField, fileUpload);
+        // Sent in resumable chunks, so lecture recordings of any size can be uploaded
+        fileUpload = new ChunkedUpload();
+        fileUpload.setAcceptedFileTypes("application/pdf", ".pdf", "application/msword", "application/vnd.openxmlformats-officedocument.wordprocessingml.document", ".docx", ".doc", "video/*", "audio/*");
+        fileUpload.setWidthFull();
+        fileUpload.addUploadCompleteListener(e -> {
+            uploadId = e.getUploadId();
+            fileStatus.setText("Ready to save: " + e.getFileName());
+        });
+        fileUpload.addUploadFailedListener(e -> Notification.show("Upload interrupted: " + e.getMessage())
+                .addThemeVariants(NotificationVariant.LUMO_ERROR));
+        fileStatus = new Span();
+        VerticalLayout fileField = new VerticalLayout(fileUpload, fileStatus);
+        fileField.setPadding(false);
+        fileField.setSpacing(false);
+        
+        formLayout.add(titleField, descriptionField, fileField);
         formLayout.setColspan(descriptionField, 2);
-        formLayout.setColspan(fileUpload, 2);
+        formLayout.setColspan(fileField, 2);
         
         Button saveButton = new Button("Save", e -> saveMaterial());
         saveButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
@@ -138,8 +149,7 @@ public class LearningMaterialFormView extends VerticalLayout implements HasUrlPa
         
         // Since we can't set the file in the upload component, we'll just indicate if there's a file
         if (material.getFilePath() != null) {
-            fileUpload.setDropLabelIcon(null);
-            fileUpload.setDropLabel(new Span("A file is already uploaded. Upload a new file to replace it."));
+            fileStatus.setText("A file is already uploaded. Upload a new file to replace it.");
         }
     }
     
@@ -152,35 +162,19 @@ public class LearningMaterialFormView extends VerticalLayout implements HasUrlPa
         material.setTitle(titleField.getValue());
         material.setDescription(descriptionField.getValue());
         
-        InputStream inputStream = null;
-        String originalFilename = null;
-        String contentType = null;
-        long fileSize = 0;
-
-        if (memoryBuffer.getInputStream() != null && memoryBuffer.getFileName() != null && !memoryBuffer.getFileName().isEmpty()) {
-            try {
-                InputStream tempInputStream = memoryBuffer.getInputStream();
-                byte[] fileBytes = tempInputStream.readAllBytes();
-                tempInputStream.close();
-
-                inputStream = new ByteArrayInputStream(fileBytes);
-                originalFilename = memoryBuffer.getFileName();
-                contentType = memoryBuffer.getFileData().getMimeType();
-                fileSize = fileBytes.length;
-                
-            } catch (IOException e) {
-                Notification.show("Error reading file data: " + e.getMessage())
-                        .addThemeVariants(NotificationVariant.LUMO_ERROR);
-                return;
-            } catch (Exception e) {
-                Notification.show("Error processing file: " + e.getMessage())
-                        .addThemeVariants(NotificationVariant.LUMO_ERROR);
+        StagedUpload upload = null;
+        if (uploadId != null) {
+            upload = chunkedUploadService.claim(uploadId, currentUser.getUsername()).orElse(null);
+            if (upload == null) {
+                Notification.show("The uploaded file has expired, please upload it again").addThemeVariants(NotificationVariant.LUMO_ERROR);
+                uploadId = null;
                 return;
             }
         }
         
         try {
-            materialService.saveLearningMaterial(material, inputStream, originalFilename, contentType, fileSize, currentUser);
+            materialService.saveLearningMaterial(material, upload, currentUser);
+            uploadId = null;
             Notification.show("Material saved successfully").addThemeVariants(NotificationVariant.LUMO_SUCCESS);
             getUI().ifPresent(ui -> ui.navigate(TeacherDashboardView.class));
         } catch (Exception e) {
@@ -6,6 +6,7 @@ import com.example.application.security.SecurityService;
 import com.example.application.services.LearningMaterialService;
 import com.example.application.services.UserService;
 import com.example.application.views.MainLayout;
+import com.example.application.views.upload.DiskUploadBuffer;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
@@ -18,7 +19,6 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
 import com.vaadin.flow.router.BeforeEvent;
 import com.vaadin.flow.router.HasUrlParameter;
 import com.vaadin.flow.router.OptionalParameter;
@@ -26,9 +26,6 @@ import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import jakarta.annotation.security.RolesAllowed;
 import org.springframework.beans.factory.annotation.Autowired;
-import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.InputStream;
 import java.util.Optional;
 
 @Route(value = "teacher/materials/editor", layout = MainLayout.class)
@@ -46,7 +43,7 @@ public class MaterialEditorView extends VerticalLayout implements HasUrlParamete
     
     private TextField titleField;
     private TextArea descriptionField;
-    private MemoryBuffer buffer = new MemoryBuffer();
+    private DiskUploadBuffer buffer;
     private Upload upload;
     private Button saveButton;
     
@@ -58,6 +55,7 @@ public class MaterialEditorView extends VerticalLayout implements HasUrlParamete
         this.securityService = securityService;
         this.userService = userService;
         this.materialService = materialService;
+        this.buffer = new DiskUploadBuffer(materialService);
         
         setSizeFull();
         setPadding(true);
@@ -121,6 +119,7 @@ public class MaterialEditorView extends VerticalLayout implements HasUrlParamete
         descriptionField.setMinHeight("150px");
         
         upload = new Upload(buffer);
+        buffer.attachTo(upload);
         upload.setAcceptedFileTypes(
             "application/pdf", ".pdf",
             "application/msword", ".doc",
@@ -130,11 +129,11 @@ public class MaterialEditorView extends VerticalLayout implements HasUrlParamete
         upload.setMaxFiles(1);
         upload.setDropAllowed(true);
         upload.setWidth("100%");
-        upload.setMaxFileSize(10 * 1024 * 1024); // 10MB
+        upload.setMaxFileSize(512 * 1024 * 1024); // 512MB, streamed to disk
         
         if (isEdit) {
             upload.setDropLabel(new Span(material.getFilePath() != null ? 
-                "Current file: " + material.getFilePath() + ". Drop to replace." : 
+                "Current file: " + (material.getFileName() != null ? material.getFileName() : material.getFilePath()) + ". Drop to replace." : 
                 "No file uploaded. Drop to add."));
         } else {
             upload.setDropLabel(new Span("Drop file here or click to upload"));
@@ -168,26 +167,9 @@ public class MaterialEditorView extends VerticalLayout implements HasUrlParamete
         material.setDescription(descriptionField.getValue());
         
         try {
-            InputStream inputStream = null;
-            String fileName = null;
-            String mimeType = null;
-            long contentLength = 0L;
-
-            if (buffer.getFileData() != null && buffer.getFileName() != null && !buffer.getFileName().isEmpty()) {
-                // Get file details from MemoryBuffer
-                InputStream tempInputStream = buffer.getInputStream();
-                byte[] fileBytes = tempInputStream.readAllBytes();
-                tempInputStream.close();
-
-                inputStream = new ByteArrayInputStream(fileBytes);
-                fileName = buffer.getFileName();
-                mimeType = buffer.getFileData().getMimeType();
-                contentLength = fileBytes.length;
-            }
-
-            // Call the updated service method
             // Pass nulls for file details if no file was uploaded
-            materialService.saveLearningMaterial(material, inputStream, fileName, mimeType, contentLength, currentUser);
+            materialService.saveLearningMaterial(material, buffer.getUpload(), currentUser);
+            buffer.release();
 
             Notification.show("Material " + (isEditMode ? "updated" : "added") + " successfully.");
 
@@ -211,7 +193,7 @@ public class MaterialEditorView extends VerticalLayout implements HasUrlParamete
         return saveButton;
     }
     
-    public void setBufferForTesting(MemoryBuffer buffer) {
+    public void setBufferForTesting(DiskUploadBuffer buffer) {
         this.buffer = buffer;
     }
 
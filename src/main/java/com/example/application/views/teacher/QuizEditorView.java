@@ -1,6 +1,7 @@
 package com.example.application.views.teacher;
 
 import com.example.application.data.Quiz;
+import com.example.application.data.SamplingRule;
 import com.example.application.data.User;
 import com.example.application.security.SecurityService;
 import com.example.application.services.QuizService;
@@ -10,6 +11,7 @@ import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.formlayout.FormLayout;
+import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.H3;
 import com.vaadin.flow.component.html.Paragraph;
@@ -28,6 +30,8 @@ import com.vaadin.flow.router.Route;
 import jakarta.annotation.security.RolesAllowed;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 @Route(value = "teacher/quiz/editor", layout = MainLayout.class)
@@ -48,6 +52,10 @@ public class QuizEditorView extends VerticalLayout implements HasUrlParameter<Lo
     private IntegerField durationField;
     // TODO: Add components for managing questions (e.g., a Grid or custom component)
 
+    // Questions drawn from the question bank for each attempt
+    private List<SamplingRule> samplingRules = new ArrayList<>();
+    private Grid<SamplingRule> samplingRulesGrid;
+
     @Autowired
     public QuizEditorView(
             SecurityService securityService,
@@ -83,6 +91,7 @@ public class QuizEditorView extends VerticalLayout implements HasUrlParameter<Lo
                     return;
                 }
 
+                samplingRules = new ArrayList<>(quizService.findSamplingRules(quizId));
                 buildQuizForm(true);
                 populateForm();
             } else {
@@ -124,6 +133,8 @@ public class QuizEditorView extends VerticalLayout implements HasUrlParameter<Lo
         form.add(titleField, descriptionField, durationField);
         form.setColspan(descriptionField, 2);
 
+        VerticalLayout samplingSection = createSamplingSection();
+
         Button saveButton = new Button(isEdit ? "Update Quiz" : "Save Quiz", e -> saveQuiz());
         saveButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
 
@@ -132,7 +143,51 @@ public class QuizEditorView extends VerticalLayout implements HasUrlParameter<Lo
         HorizontalLayout buttonLayout = new HorizontalLayout(saveButton, cancelButton);
         buttonLayout.setSpacing(true);
 
-        add(title, form, questionsSection, buttonLayout);
+        add(title, form, questionsSection, samplingSection, buttonLayout);
+    }
+
+    private VerticalLayout createSamplingSection() {
+        VerticalLayout section = new VerticalLayout();
+        section.setPadding(false);
+        section.add(new H3("Question Bank"));
+        section.add(new Paragraph("Each student also gets random questions from the question bank, drawn by tag."));
+
+        samplingRulesGrid = new Grid<>(SamplingRule.class, false);
+        samplingRulesGrid.addColumn(SamplingRule::getTag).setHeader("Tag");
+        samplingRulesGrid.addColumn(rule -> rule.getDifficulty() != null ? rule.getDifficulty().toString() : "Any").setHeader("Difficulty");
+        samplingRulesGrid.addColumn(SamplingRule::getCount).setHeader("Questions");
+        samplingRulesGrid.addComponentColumn(rule -> new Button("Remove", e -> {
+            samplingRules.remove(rule);
+            samplingRulesGrid.setItems(samplingRules);
+        }));
+        samplingRulesGrid.setAllRowsVisible(true);
+        samplingRulesGrid.setMaxWidth("800px");
+        samplingRulesGrid.setItems(samplingRules);
+
+        TextField tagField = new TextField("Tag");
+        IntegerField difficultyField = new IntegerField("Difficulty (1-5, optional)");
+        difficultyField.setMin(1);
+        difficultyField.setMax(5);
+        IntegerField countField = new IntegerField("Questions");
+        countField.setMin(1);
+        countField.setStepButtonsVisible(true);
+        Button addRuleButton = new Button("Add Rule", e -> {
+            if (tagField.getValue().trim().isEmpty() || countField.getValue() == null || countField.getValue() <= 0) {
+                Notification.show("A rule needs a tag and a positive number of questions", 3000, Notification.Position.MIDDLE)
+                            .addThemeVariants(NotificationVariant.LUMO_ERROR);
+                return;
+            }
+            samplingRules.add(new SamplingRule(tagField.getValue().trim(), difficultyField.getValue(), countField.getValue()));
+            samplingRulesGrid.setItems(samplingRules);
+            tagField.clear();
+            difficultyField.clear();
+            countField.clear();
+        });
+        HorizontalLayout ruleForm = new HorizontalLayout(tagField, difficultyField, countField, addRuleButton);
+        ruleForm.setDefaultVerticalComponentAlignment(Alignment.BASELINE);
+
+        section.add(samplingRulesGrid, ruleForm);
+        return section;
     }
 
     private void populateForm() {
@@ -160,6 +215,7 @@ public class QuizEditorView extends VerticalLayout implements HasUrlParameter<Lo
         quiz.setTitle(titleField.getValue().trim());
         quiz.setDescription(descriptionField.getValue());
         quiz.setDurationMinutes(durationField.getValue());
+        quiz.setSamplingRules(new ArrayList<>(samplingRules));
         // TODO: Get questions from the question management component and set them on the quiz
 
         try {
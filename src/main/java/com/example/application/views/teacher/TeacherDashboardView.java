@@ -8,6 +8,8 @@ import com.example.application.data.QuizAttempt;
 import com.example.application.data.Note;
 import com.example.application.security.SecurityService;
 import com.example.application.services.LearningMaterialService;
+import com.example.application.services.QuizRegradeService;
+import com.example.application.services.QuizRegradeService.RegradeJob;
 import com.example.application.services.QuizService;
 import com.example.application.services.UserService;
 import com.example.application.services.NoteService;
@@ -26,6 +28,7 @@ import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.shared.Registration;
 import jakarta.annotation.security.RolesAllowed;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -42,6 +45,7 @@ public class TeacherDashboardView extends VerticalLayout {
     private final UserService userService;
     private final LearningMaterialService materialService;
     private final QuizService quizService;
+    private final QuizRegradeService regradeService;
     private final NoteService noteService;
     
     private User currentUser;
@@ -50,6 +54,8 @@ public class TeacherDashboardView extends VerticalLayout {
     private Grid<Quiz> quizzesGrid = new Grid<>(Quiz.class);
     private Grid<QuizAttempt> studentAttemptsGrid = new Grid<>(QuizAttempt.class);
     private Grid<Note> notesGrid = new Grid<>(Note.class);
+    private Span regradeStatus = new Span();
+    private Registration regradePoll;
 
     @Autowired
     public TeacherDashboardView(
@@ -57,11 +63,13 @@ public class TeacherDashboardView extends VerticalLayout {
             UserService userService,
             LearningMaterialService materialService,
             QuizService quizService,
+            QuizRegradeService regradeService,
             NoteService noteService) {
         this.securityService = securityService;
         this.userService = userService;
         this.materialService = materialService;
         this.quizService = quizService;
+        this.regradeService = regradeService;
         this.noteService = noteService;
 
         setSizeFull();
@@ -214,12 +222,62 @@ public class TeacherDashboardView extends VerticalLayout {
             }
         });
         
-        HorizontalLayout buttonsLayout = new HorizontalLayout(addButton, editButton, toggleActiveButton, deleteButton);
+        // Rescores completed attempts from their stored answers, e.g. after fixing a wrong answer
+        Button regradeButton = new Button("Regrade Attempts", e -> {
+            Quiz selected = quizzesGrid.asSingleSelect().getValue();
+            if (selected != null) {
+                RegradeJob job = regradeService.startRegrade(selected.getId());
+                showRegradeProgress(selected, job);
+            }
+        });
+        
+        Button analysisButton = new Button("Item Analysis", e -> {
+            Quiz selected = quizzesGrid.asSingleSelect().getValue();
+            if (selected != null) {
+                getUI().ifPresent(ui -> ui.navigate("teacher/quiz/analysis/" + selected.getId()));
+            }
+        });
+        
+        HorizontalLayout buttonsLayout = new HorizontalLayout(addButton, editButton, toggleActiveButton, deleteButton, regradeButton, analysisButton);
+        buttonsLayout.setAlignItems(Alignment.CENTER);
+        buttonsLayout.add(regradeStatus);
         
         layout.add(sectionTitle, quizzesGrid, buttonsLayout);
         return layout;
     }
 
+    private void showRegradeProgress(Quiz quiz, RegradeJob job) {
+        getUI().ifPresent(ui -> {
+            updateRegradeStatus(quiz, job);
+            if (job.isFinished()) {
+                return;
+            }
+            if (regradePoll != null) {
+                regradePoll.remove();
+            }
+            ui.setPollInterval(1000);
+            regradePoll = ui.addPollListener(event -> {
+                updateRegradeStatus(quiz, job);
+                if (job.isFinished()) {
+                    ui.setPollInterval(-1);
+                    regradePoll.remove();
+                    regradePoll = null;
+                    refreshStudentAttemptsGrid();
+                }
+            });
+        });
+    }
+
+    private void updateRegradeStatus(Quiz quiz, RegradeJob job) {
+        switch (job.getState()) {
+            case RUNNING -> regradeStatus.setText("Regrading \"" + quiz.getTitle() + "\": "
+                    + Math.round(job.getProgress() * 100) + "%");
+            case COMPLETED -> regradeStatus.setText("Regraded \"" + quiz.getTitle() + "\": "
+                    + job.getChanged() + " of " + job.getRegraded() + " scores changed");
+            case FAILED -> regradeStatus.setText("Regrading \"" + quiz.getTitle() + "\" failed: " + job.getFailure());
+        }
+    }
+
     private void refreshQuizzesGrid() {
         quizzesGrid.setItems(quizService.findQuizzesByCreator(currentUser));
     }
@@ -236,16 +294,7 @@ public class TeacherDashboardView extends VerticalLayout {
         studentAttemptsGrid.addColumn(QuizAttempt::getCompletionTime).setHeader("Completed At");
         studentAttemptsGrid.addColumn(QuizAttempt::isCompleted).setHeader("Completed");
         
-        // Get all attempts for quizzes created by this teacher
-        List<Quiz> teacherQuizzes = quizService.findQuizzesByCreator(currentUser);
-        List<QuizAttempt> attempts = new ArrayList<>();
-        
-        // Get attempts for each quiz
-        for (Quiz quiz : teacherQuizzes) {
-            attempts.addAll(quizService.findAttemptsByQuiz(quiz));
-        }
-        
-        studentAttemptsGrid.setItems(attempts);
+        refreshStudentAttemptsGrid();
         
         Button viewDetailsButton = new Button("View Details", e -> {
             QuizAttempt selected = studentAttemptsGrid.asSingleSelect().getValue();
@@ -257,4 +306,17 @@ public class TeacherDashboardView extends VerticalLayout {
         layout.add(sectionTitle, studentAttemptsGrid, viewDetailsButton);
         return layout;
     }
+
+    private void refreshStudentAttemptsGrid() {
+        // Get all attempts for quizzes created by this teacher
+        List<Quiz> teacherQuizzes = quizService.findQuizzesByCreator(currentUser);
+        List<QuizAttempt> attempts = new ArrayList<>();
+        
+        // Get attempts for each quiz
+        for (Quiz quiz : teacherQuizzes) {
+            attempts.addAll(quizService.findAttemptsByQuiz(quiz));
+        }
+        
+        studentAttemptsGrid.setItems(attempts);
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.example.application.views.upload;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.ComponentEvent;
+import com.vaadin.flow.component.ComponentEventListener;
+import com.vaadin.flow.component.DomEvent;
+import com.vaadin.flow.component.EventData;
+import com.vaadin.flow.component.HasSize;
+import com.vaadin.flow.component.Tag;
+import com.vaadin.flow.component.dependency.JsModule;
+import com.vaadin.flow.server.VaadinServletRequest;
+import com.vaadin.flow.shared.Registration;
+import org.springframework.security.web.csrf.CsrfToken;
+
+/**
+ * Upload field for large files. The browser sends the file to
+ * {@link com.example.application.controllers.ChunkedUploadController} in chunks and resumes
+ * interrupted uploads; the server side only learns the upload id once the file is complete, and
+ * claims it from {@link com.example.application.services.ChunkedUploadService} when saving.
+ */
+@Tag("chunked-upload")
+@JsModule("./chunked-upload.js")
+public class ChunkedUpload extends Component implements HasSize {
+
+    public ChunkedUpload() {
+        // The upload API is an ordinary Spring endpoint, so its requests need the CSRF token
+        VaadinServletRequest request = VaadinServletRequest.getCurrent();
+        if (request != null && request.getAttribute(CsrfToken.class.getName()) instanceof CsrfToken token) {
+            getElement().setProperty("csrfHeader", token.getHeaderName());
+            getElement().setProperty("csrfToken", token.getToken());
+        }
+    }
+
+    public void setAcceptedFileTypes(String... types) {
+        getElement().setAttribute("accept", String.join(",", types));
+    }
+
+    public Registration addUploadCompleteListener(ComponentEventListener<UploadCompleteEvent> listener) {
+        return addListener(UploadCompleteEvent.class, listener);
+    }
+
+    public Registration addUploadFailedListener(ComponentEventListener<UploadFailedEvent> listener) {
+        return addListener(UploadFailedEvent.class, listener);
+    }
+
+    @DomEvent("upload-complete")
+    public static class UploadCompleteEvent extends ComponentEvent<ChunkedUpload> {
+        private final String uploadId;
+        private final String fileName;
+
+        public UploadCompleteEvent(ChunkedUpload source, boolean fromClient,
+                                   @EventData("event.detail.uploadId") String uploadId,
+                                   @EventData("event.detail.fileName") String fileName) {
+            super(source, fromClient);
+            this.uploadId = uploadId;
+            this.fileName = fileName;
+        }
+
+        public String getUploadId() {
+            return uploadId;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+    }
+
+    @DomEvent("upload-failed")
+    public static class UploadFailedEvent extends ComponentEvent<ChunkedUpload> {
+        private final String message;
+
+        public UploadFailedEvent(ChunkedUpload source, boolean fromClient,
+                                 @EventData("event.detail.message") String message) {
+            super(source, fromClient);
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.application.views.upload;
+
+import com.example.application.services.LearningMaterialService;
+import com.example.application.services.StagedUpload;
+import com.vaadin.flow.component.upload.Receiver;
+import com.vaadin.flow.component.upload.Upload;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * Upload receiver that streams the file straight into the material staging area instead of
+ * holding it in memory like {@link com.vaadin.flow.component.upload.receivers.MemoryBuffer}.
+ * Heap use per upload is a copy buffer, whatever the size of the file. The SHA-256 that the file
+ * is stored under is computed while the bytes are written.
+ *
+ * The staged file is handed to
+ * {@link LearningMaterialService#saveLearningMaterial(com.example.application.data.LearningMaterial, StagedUpload, com.example.application.data.User)},
+ * which moves it into place. Call {@link #discard()} if it is not going to be saved.
+ */
+public class DiskUploadBuffer implements Receiver {
+
+    private final LearningMaterialService materialService;
+
+    private Path file;
+    private String fileName;
+    private String mimeType;
+    private long size;
+    private String sha256;
+    private boolean complete;
+
+    public DiskUploadBuffer(LearningMaterialService materialService) {
+        this.materialService = materialService;
+    }
+
+    @Override
+    public OutputStream receiveUpload(String fileName, String mimeType) {
+        discard();
+        try {
+            Path stagingFile = materialService.createStagingFile();
+            MessageDigest digest = StagedUpload.newDigest();
+            OutputStream out = new DigestOutputStream(Files.newOutputStream(stagingFile), digest);
+            this.file = stagingFile;
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    size += len;
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    size++;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    sha256 = StagedUpload.toHex(digest);
+                    complete = true;
+                }
+            };
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not create staging file for " + fileName, ex);
+        }
+    }
+
+    /**
+     * Discards the staged file when the upload fails or is removed from the file list.
+     */
+    public void attachTo(Upload upload) {
+        upload.addFailedListener(event -> discard());
+        upload.addFileRejectedListener(event -> discard());
+        upload.addFileRemovedListener(event -> discard());
+    }
+
+    public boolean hasFile() {
+        return complete && file != null && fileName != null && !fileName.isEmpty();
+    }
+
+    public Path getFile() {
+        return hasFile() ? file : null;
+    }
+
+    /**
+     * Returns the completed upload, or null if there is none.
+     */
+    public StagedUpload getUpload() {
+        return hasFile() ? new StagedUpload(file, fileName, mimeType, size, sha256) : null;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Forgets the staged file after it has been saved; the service has already moved it away.
+     */
+    public void release() {
+        file = null;
+        fileName = null;
+        mimeType = null;
+        size = 0;
+        sha256 = null;
+        complete = false;
+    }
+
+    /**
+     * Deletes the staged file, if any, and resets the buffer.
+     */
+    public void discard() {
+        materialService.discardStagingFile(file);
+        release();
+    }
+}
@@ -44,6 +44,10 @@ CREATE TABLE IF NOT EXISTS learning_materials (
     FOREIGN KEY (uploaded_by) REFERENCES users(id)
 );
 
+-- The LearningMaterial entity maps to learning_material, which Hibernate creates before this script
+-- runs; finds the materials referring to a stored file
+CREATE INDEX IF NOT EXISTS idx_learning_material_file_path ON learning_material (file_path);
+
 -- Quizzes table
 CREATE TABLE IF NOT EXISTS quizzes (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -65,10 +69,30 @@ CREATE TABLE IF NOT EXISTS quiz_questions (
     question_type VARCHAR(50) NOT NULL,
     correct_answer VARCHAR(255) NOT NULL,
     points INT DEFAULT 1,
+    difficulty INT,
     version INT DEFAULT 1,
     FOREIGN KEY (quiz_id) REFERENCES quizzes(id)
 );
 
+-- Question bank tags table
+CREATE TABLE IF NOT EXISTS quiz_question_tags (
+    question_id BIGINT NOT NULL,
+    tag VARCHAR(255),
+    FOREIGN KEY (question_id) REFERENCES quiz_questions(id)
+);
+
+-- Finds the bank questions carrying a tag (see QuestionBankIndex)
+CREATE INDEX IF NOT EXISTS idx_question_tag ON quiz_question_tags (tag);
+
+-- Quiz sampling rules table
+CREATE TABLE IF NOT EXISTS quiz_sampling_rules (
+    quiz_id BIGINT NOT NULL,
+    tag VARCHAR(255),
+    difficulty INT,
+    question_count INT NOT NULL,
+    FOREIGN KEY (quiz_id) REFERENCES quizzes(id)
+);
+
 -- Quiz answers table
 CREATE TABLE IF NOT EXISTS quiz_answers (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -80,6 +104,28 @@ CREATE TABLE IF NOT EXISTS quiz_answers (
     FOREIGN KEY (question_id) REFERENCES quiz_questions(id)
 );
 
+-- Item analysis totals, per quiz and question (see ItemAnalysis)
+CREATE TABLE IF NOT EXISTS quiz_item_stats (
+    quiz_id BIGINT NOT NULL,
+    question_id BIGINT NOT NULL,
+    attempts BIGINT NOT NULL,
+    correct_count BIGINT NOT NULL,
+    score_sum BIGINT NOT NULL,
+    score_square_sum BIGINT NOT NULL,
+    correct_score_sum BIGINT NOT NULL,
+    PRIMARY KEY (quiz_id, question_id)
+);
+
+-- Selections of each option of choice questions
+CREATE TABLE IF NOT EXISTS quiz_item_options (
+    quiz_id BIGINT NOT NULL,
+    question_id BIGINT NOT NULL,
+    option_text VARCHAR(255) NOT NULL,
+    selections BIGINT NOT NULL,
+    PRIMARY KEY (quiz_id, question_id, option_text),
+    FOREIGN KEY (quiz_id, question_id) REFERENCES quiz_item_stats(quiz_id, question_id)
+);
+
 -- Quiz attempts table
 CREATE TABLE IF NOT EXISTS quiz_attempts (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -89,7 +135,38 @@ CREATE TABLE IF NOT EXISTS quiz_attempts (
     completion_time TIMESTAMP,
     score INT,
     is_completed BOOLEAN DEFAULT FALSE,
+    shuffle_seed BIGINT,
+    sampled_question_ids VARBINARY(2048),
     version INT DEFAULT 1,
     FOREIGN KEY (quiz_id) REFERENCES quizzes(id),
     FOREIGN KEY (student_id) REFERENCES users(id)
-); 
\ No newline at end of file
+); 
+
+-- Covers "has this student completed this quiz", and loading a quiz into QuizCompletionIndex
+CREATE INDEX IF NOT EXISTS idx_attempt_quiz_completed_student ON quiz_attempts (quiz_id, is_completed, student_id);
+
+-- Answers of submitted quiz attempts
+CREATE TABLE IF NOT EXISTS quiz_attempt_answers (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    attempt_id BIGINT NOT NULL,
+    question_id BIGINT NOT NULL,
+    answer_text VARCHAR(4000),
+    is_correct BOOLEAN DEFAULT FALSE,
+    version INT DEFAULT 1,
+    FOREIGN KEY (attempt_id) REFERENCES quiz_attempts(id),
+    FOREIGN KEY (question_id) REFERENCES quiz_questions(id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_attempt_answer_attempt ON quiz_attempt_answers (attempt_id);
+
+-- Answers autosaved while an attempt is in progress (see AnswerAutosave)
+CREATE TABLE IF NOT EXISTS quiz_draft_answers (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    attempt_id BIGINT NOT NULL,
+    question_id BIGINT NOT NULL,
+    answer_text VARCHAR(4000),
+    version INT DEFAULT 1,
+    CONSTRAINT uk_draft_answer_attempt_question UNIQUE (attempt_id, question_id),
+    FOREIGN KEY (attempt_id) REFERENCES quiz_attempts(id),
+    FOREIGN KEY (question_id) REFERENCES quiz_questions(id)
+);
@@ -0,0 +1,88 @@
+package com.example.application.controllers;
+
+import com.example.application.data.LearningMaterial;
+import com.example.application.services.DownloadBandwidthScheduler;
+import com.example.application.services.LearningMaterialService;
+import com.example.application.services.MaterialArchiveService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class FileControllerTest {
+
+    private static final long ASYNC_TIMEOUT_MILLIS = 100;
+
+    private final LearningMaterialService materialService = mock(LearningMaterialService.class);
+    private final MaterialArchiveService archiveService = mock(MaterialArchiveService.class);
+    private DownloadBandwidthScheduler scheduler;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new DownloadBandwidthScheduler(new SimpleMeterRegistry());
+        // Slow enough that the archive below takes several times the async timeout
+        ReflectionTestUtils.setField(scheduler, "bandwidth", DataSize.ofKilobytes(256));
+        ReflectionTestUtils.setField(scheduler, "maxStreamsPerUser", 1);
+
+        FileController controller = new FileController();
+        ReflectionTestUtils.setField(controller, "materialService", materialService);
+        ReflectionTestUtils.setField(controller, "bandwidthScheduler", scheduler);
+        ReflectionTestUtils.setField(controller, "archiveService", archiveService);
+        mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setAsyncRequestTimeout(ASYNC_TIMEOUT_MILLIS)
+                .build();
+    }
+
+    @Test
+    void sendsAnArchiveThatOutlivesTheAsyncTimeoutInFull() throws Exception {
+        byte[] archive = new byte[192 * 1024];
+        when(materialService.findMaterialsBySubject("Mathematics")).thenReturn(List.of(new LearningMaterial()));
+        when(archiveService.writeArchive(anyList(), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            for (int i = 0; i < archive.length; i += 16 * 1024) {
+                out.write(archive, i, 16 * 1024);
+            }
+            return 1;
+        });
+
+        long started = System.nanoTime();
+        MvcResult result = mvc.perform(get("/download/archive").param("subject", "Mathematics"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertTrue((System.nanoTime() - started) / 1_000_000 > 2 * ASYNC_TIMEOUT_MILLIS);
+        assertEquals("application/zip", result.getResponse().getContentType());
+        assertArrayEquals(archive, result.getResponse().getContentAsByteArray());
+        assertEquals(0, scheduler.getActiveStreams(), "the slot is released once the archive is sent");
+    }
+
+    @Test
+    void releasesTheSlotWhenWritingTheArchiveFails() throws Exception {
+        when(materialService.findMaterialsBySubject(any())).thenReturn(List.of());
+        when(archiveService.writeArchive(anyList(), any())).thenThrow(new IOException("client went away"));
+
+        assertThrows(Exception.class, () -> mvc.perform(get("/download/archive")));
+
+        assertEquals(0, scheduler.getActiveStreams());
+        doReturn(0).when(archiveService).writeArchive(anyList(), any());
+        mvc.perform(get("/download/archive")).andExpect(status().isOk());
+    }
+}
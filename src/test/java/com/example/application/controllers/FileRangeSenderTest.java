@@ -0,0 +1,315 @@
+package com.example.application.controllers;
+
+import com.example.application.services.DownloadBandwidthScheduler;
+import com.example.application.services.HotFileCache;
+import com.example.application.storage.FileSystemMaterialStore;
+import com.example.application.storage.MaterialStore;
+import com.example.application.storage.StoredFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.UrlResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRangeSenderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MaterialStore store;
+    private StoredFile file;
+    private byte[] content;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        content = new byte[64 * 1024];
+        new Random(42).nextBytes(content);
+        store = new FileSystemMaterialStore(tempDir.resolve("store"));
+        Path staged = tempDir.resolve("lecture.pdf");
+        Files.write(staged, content);
+        store.put("lecture.pdf", staged);
+        file = store.stat("lecture.pdf").orElseThrow();
+    }
+
+    @Test
+    void sendsWholeFileWithoutRange() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FileRangeSender.send(new MockHttpServletRequest("GET", "/download/lecture.pdf"), response, store, file, "application/pdf", null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals(content.length, response.getContentLengthLong());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void sendsSingleRangeAsPartialContent() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        request.addHeader("Range", "bytes=100-199");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FileRangeSender.send(request, response, store, file, "application/pdf", null);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 100-199/" + content.length, response.getHeader("Content-Range"));
+        assertEquals(100, response.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray());
+    }
+
+    @Test
+    void sendsMultipleRangesAsByteranges() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        request.addHeader("Range", "bytes=0-9,-10");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FileRangeSender.send(request, response, store, file, "application/pdf", null);
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+        String body = new String(response.getContentAsByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(body.contains("Content-Range: bytes 0-9/" + content.length));
+        assertTrue(body.contains("Content-Range: bytes " + (content.length - 10) + "-" + (content.length - 1) + "/" + content.length));
+        assertTrue(body.contains(new String(Arrays.copyOfRange(content, 0, 10), StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    void rejectsRangePastEndOfFile() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        request.addHeader("Range", "bytes=" + content.length + "-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FileRangeSender.send(request, response, store, file, "application/pdf", null);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + content.length, response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void ignoresRangeWhenIfRangeTagDoesNotMatch() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        request.addHeader("Range", "bytes=100-199");
+        request.addHeader("If-Range", "\"stale\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FileRangeSender.send(request, response, store, file, "application/pdf", "\"current\"");
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void honoursRangeWhenIfRangeTagMatches() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        request.addHeader("Range", "bytes=100-199");
+        request.addHeader("If-Range", "\"current\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FileRangeSender.send(request, response, store, file, "application/pdf", "\"current\"");
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray());
+    }
+
+    @Test
+    void honoursRangeOnlyWhenIfRangeDateIsTheLastModification() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        request.addHeader("Range", "bytes=100-199");
+        request.addHeader("If-Range", httpDate(file.lastModified()));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FileRangeSender.send(request, response, store, file, "application/pdf", null);
+
+        assertEquals(206, response.getStatus());
+
+        MockHttpServletRequest later = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        later.addHeader("Range", "bytes=100-199");
+        later.addHeader("If-Range", httpDate(file.lastModified() + 60_000));
+        MockHttpServletResponse full = new MockHttpServletResponse();
+
+        FileRangeSender.send(later, full, store, file, "application/pdf", null);
+
+        assertEquals(200, full.getStatus());
+        assertArrayEquals(content, full.getContentAsByteArray());
+    }
+
+    @Test
+    void handsSingleRangeToSendfileWhenSupported() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        request.setAttribute(FileRangeSender.SENDFILE_SUPPORT_ATTR, Boolean.TRUE);
+        request.addHeader("Range", "bytes=10-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        FileRangeSender.send(request, response, store, file, "application/pdf", null);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(10L, request.getAttribute(FileRangeSender.SENDFILE_START_ATTR));
+        assertEquals((long) content.length, request.getAttribute(FileRangeSender.SENDFILE_END_ATTR));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void copiesPacedDownloadsEvenWhenSendfileIsSupported() throws IOException {
+        DownloadBandwidthScheduler scheduler = scheduler(DataSize.ofMegabytes(64));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        request.setAttribute(FileRangeSender.SENDFILE_SUPPORT_ATTR, Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        try (DownloadBandwidthScheduler.Stream stream = scheduler.open("user:student").orElseThrow()) {
+            FileRangeSender.send(request, response, store, file, "application/pdf", null,
+                    new FileRangeSender.Delivery(stream, null));
+        }
+
+        // Sendfile would bypass the pacing
+        assertNull(request.getAttribute(FileRangeSender.SENDFILE_FILENAME_ATTR));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void handsUnpacedDownloadsToSendfile() throws IOException {
+        DownloadBandwidthScheduler scheduler = scheduler(DataSize.ofBytes(0));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        request.setAttribute(FileRangeSender.SENDFILE_SUPPORT_ATTR, Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        DownloadBandwidthScheduler.Stream stream = scheduler.open("user:student").orElseThrow();
+        FileRangeSender.send(request, response, store, file, "application/pdf", null,
+                new FileRangeSender.Delivery(stream, null));
+
+        assertEquals((long) content.length, request.getAttribute(FileRangeSender.SENDFILE_END_ATTR));
+        assertEquals(0, response.getContentAsByteArray().length);
+        // The slot stays taken until the request completes
+        assertTrue(scheduler.open("user:student").isEmpty());
+        stream.close();
+        assertEquals(0, scheduler.getActiveStreams());
+    }
+
+    @Test
+    void countsOnlyTheRangeSentFromTheCache() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        HotFileCache cache = new HotFileCache(store, registry, DataSize.ofMegabytes(1), DataSize.ofMegabytes(1));
+        cache.get(file);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download/lecture.pdf");
+        request.addHeader("Range", "bytes=100-199");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        try (HotFileCache.Lease cached = cache.get(file).orElseThrow()) {
+            FileRangeSender.send(request, response, store, file, "application/pdf", null,
+                    new FileRangeSender.Delivery(null, cached));
+        }
+
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray());
+        assertEquals(100, registry.get("gradsy.download.cache.served").counter().count());
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+                .format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    private static DownloadBandwidthScheduler scheduler(DataSize bandwidth) {
+        DownloadBandwidthScheduler scheduler = new DownloadBandwidthScheduler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "bandwidth", bandwidth);
+        ReflectionTestUtils.setField(scheduler, "maxStreamsPerUser", 1);
+        return scheduler;
+    }
+
+    /**
+     * Compares the old {@code UrlResource} download path with {@link FileRangeSender} on a 10 MB file.
+     * Run with {@code mvn test -Dtest=FileRangeSenderTest -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAgainstUrlResource() throws IOException {
+        Path staged = tempDir.resolve("large.pdf");
+        byte[] block = new byte[1024 * 1024];
+        new Random(7).nextBytes(block);
+        try (OutputStream out = Files.newOutputStream(staged)) {
+            for (int i = 0; i < 10; i++) {
+                out.write(block);
+            }
+        }
+        store.put("large.pdf", staged);
+        StoredFile largeFile = store.stat("large.pdf").orElseThrow();
+        Path large = store.localPath("large.pdf").orElseThrow();
+        int iterations = 200;
+        ResourceHttpMessageConverter converter = new ResourceHttpMessageConverter();
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                DiscardingResponse response = new DiscardingResponse();
+                converter.write(new UrlResource(large.toUri()), MediaType.APPLICATION_OCTET_STREAM,
+                        new ServletServerHttpResponse(response));
+                assertEquals(Files.size(large), response.written);
+            }
+            long legacyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                DiscardingResponse response = new DiscardingResponse();
+                FileRangeSender.send(new MockHttpServletRequest("GET", "/download/large.pdf"), response, store, largeFile, "application/pdf", null);
+                assertEquals(Files.size(large), response.written);
+            }
+            long senderNanos = System.nanoTime() - start;
+
+            double megabytes = iterations * Files.size(large) / (1024.0 * 1024.0);
+            System.out.printf("round %d: UrlResource %.0f MB/s, FileRangeSender %.0f MB/s%n", round,
+                    megabytes / (legacyNanos / 1e9), megabytes / (senderNanos / 1e9));
+        }
+    }
+
+    /** Counts the body instead of buffering it, so the benchmark measures the copy path only. */
+    private static class DiscardingResponse extends MockHttpServletResponse {
+        long written;
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    written++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    written += len;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener listener) {
+                }
+            };
+        }
+    }
+}
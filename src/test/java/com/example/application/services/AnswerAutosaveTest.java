@@ -0,0 +1,142 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.QuizAttempt;
+import com.example.application.data.QuizQuestion;
+import com.example.application.data.UserRole;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.example.application.services.QuizFixtures.question;
+import static com.example.application.services.QuizFixtures.quiz;
+import static com.example.application.services.QuizFixtures.user;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never"
+})
+@Import({QuizServiceTestConfiguration.class, AnswerAutosave.class})
+class AnswerAutosaveTest {
+
+    @Autowired
+    private QuizService quizService;
+
+    @Autowired
+    private AnswerAutosave autosave;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void coalescesClicksIntoOneWritePerAnswer() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        Quiz quiz = quiz("Planets", user(entityManager, "autosave-teacher", UserRole.TEACHER));
+        for (String answer : List.of("Mercury", "Jupiter", "Mars")) {
+            quiz.addQuestion(question("Which planet?", "MULTIPLE_CHOICE", answer));
+        }
+        entityManager.persist(quiz);
+        QuizAttempt attempt = quizService.startQuizAttempt(quiz, user(entityManager, "autosave-student", UserRole.STUDENT));
+        List<QuizQuestion> questions = quiz.getQuestions();
+        entityManager.flush();
+
+        // A student changing their mind a hundred times over three questions
+        for (int click = 0; click < 100; click++) {
+            autosave.record(attempt.getId(), questions.get(click % 3).getId(), "Choice " + click);
+        }
+        assertEquals(0, autosave.flush(false), "nothing is due while the student keeps clicking");
+
+        statistics.clear();
+        assertEquals(3, autosave.flush(true));
+        entityManager.flush();
+        assertEquals(3, statistics.getEntityInsertCount());
+
+        autosave.record(attempt.getId(), questions.get(0).getId(), "Mercury");
+        assertEquals(Map.of(questions.get(0).getId(), "Mercury",
+                        questions.get(1).getId(), "Choice 97",
+                        questions.get(2).getId(), "Choice 98"),
+                autosave.restore(attempt.getId()), "buffered answers win over saved ones");
+
+        statistics.clear();
+        assertEquals(1, autosave.flush(true));
+        entityManager.flush();
+        assertEquals(0, statistics.getEntityInsertCount());
+        assertEquals(1, statistics.getEntityUpdateCount());
+        entityManager.clear();
+        assertEquals("Mercury", quizService.findDraftAnswers(attempt.getId()).get(questions.get(0).getId()));
+
+        // Clearing an answer removes its saved draft
+        autosave.record(attempt.getId(), questions.get(2).getId(), null);
+        assertFalse(autosave.restore(attempt.getId()).containsKey(questions.get(2).getId()));
+        assertEquals(1, autosave.flush(true));
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(Set.of(questions.get(0).getId(), questions.get(1).getId()),
+                quizService.findDraftAnswers(attempt.getId()).keySet());
+
+        // Submitting replaces the drafts
+        assertEquals(33, quizService.completeQuizAttempt(attempt.getId(), autosave.restore(attempt.getId())).score());
+        entityManager.flush();
+        assertTrue(quizService.findDraftAnswers(attempt.getId()).isEmpty());
+        autosave.record(attempt.getId(), questions.get(1).getId(), "Jupiter");
+        assertEquals(0, autosave.flush(true), "submitted attempts are not autosaved");
+    }
+
+    @Test
+    void keepsSavingOtherAttemptsWhenOneCannotBeStored() {
+        QuizService failingForOne = mock(QuizService.class);
+        when(failingForOne.saveDraftAnswers(any())).thenAnswer(call -> {
+            Map<Long, Map<Long, String>> answers = call.getArgument(0);
+            if (answers.containsKey(2L)) {
+                throw new IllegalStateException("Answer can't be stored");
+            }
+            return answers.size();
+        });
+        AnswerAutosave isolated = new AnswerAutosave(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(isolated, "quizService", failingForOne);
+
+        assertThrows(IllegalArgumentException.class, () -> isolated.record(1L, 1L, "x".repeat(4001)));
+        for (long attemptId = 1; attemptId <= 3; attemptId++) {
+            isolated.record(attemptId, 1L, "answer");
+        }
+        assertEquals(2, isolated.flush(true), "the attempts that can be stored are");
+        for (int retry = 1; retry < AnswerAutosave.MAX_FAILURES; retry++) {
+            assertEquals(0, isolated.flush(true));
+        }
+        assertEquals(0, isolated.flush(true));
+        // The first batch, the attempt alone, and then its retries until it is dropped
+        verify(failingForOne, times(1 + AnswerAutosave.MAX_FAILURES)).saveDraftAnswers(argThat(answers -> answers.containsKey(2L)));
+    }
+
+    @Test
+    void restoresAnswersWhileTheyAreBeingWritten() {
+        QuizService uncommitted = mock(QuizService.class);
+        AnswerAutosave isolated = new AnswerAutosave(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(isolated, "quizService", uncommitted);
+        // The write hasn't committed, so the table doesn't have the answers yet
+        when(uncommitted.findDraftAnswers(anyCollection())).thenAnswer(call -> new HashMap<>());
+        List<Map<Long, String>> restored = new ArrayList<>();
+        when(uncommitted.saveDraftAnswers(any())).thenAnswer(call -> {
+            restored.add(isolated.restore(1L));
+            return 1;
+        });
+
+        isolated.record(1L, 7L, "answer");
+        assertEquals(1, isolated.flush(true));
+        assertEquals(List.of(Map.of(7L, "answer")), restored);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.QuizQuestion;
+import com.example.application.data.QuizRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AnswerKeyTest {
+
+    private final QuestionGraders graders = new QuestionGraders(new SimpleMeterRegistry());
+
+    @Test
+    void gradesNormalizedAnswersByPoints() {
+        AnswerKey key = AnswerKey.compile(quiz(0, question(7L, "New  Delhi", 3), question(3L, "42", 1)), graders);
+
+        AnswerKey.Grade grade = key.grade(Map.of(7L, " new delhi\t", 3L, "41", 99L, "ignored"));
+
+        assertEquals(4, key.getTotalPoints());
+        assertEquals(3, grade.earnedPoints());
+        assertEquals(75, grade.score());
+        assertTrue(grade.correct()[key.indexOf(7L)]);
+        assertFalse(grade.correct()[key.indexOf(3L)]);
+        assertEquals("41", grade.answers()[key.indexOf(3L)]);
+        assertTrue(key.indexOf(99L) < 0);
+    }
+
+    @Test
+    void normalizesWithoutCopyingWhatIsAlreadyNormal() {
+        String normal = "already normal";
+        assertSame(normal, AnswerKey.normalize(normal));
+        assertEquals("two words", AnswerKey.normalize("  Two \n  WORDS "));
+        assertNull(AnswerKey.normalize(null));
+    }
+
+    @Test
+    void cacheRecompilesWhenTheQuizVersionMoves() {
+        QuizRepository repository = mock(QuizRepository.class);
+        when(repository.findByIdWithQuestions(1L))
+                .thenReturn(Optional.of(quiz(0, question(1L, "a", 1))))
+                .thenReturn(Optional.of(quiz(1, question(1L, "b", 1))));
+        AnswerKeyCache cache = new AnswerKeyCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "quizRepository", repository);
+        ReflectionTestUtils.setField(cache, "questionGraders", graders);
+
+        assertSame(cache.get(1L, 0), cache.get(1L, 0));
+        verify(repository, times(1)).findByIdWithQuestions(1L);
+
+        AnswerKey changed = cache.get(1L, 1);
+        assertEquals(1, changed.getVersion());
+        assertEquals(100, changed.grade(Map.of(1L, "B")).score());
+    }
+
+    private static QuizQuestion question(Long id, String correctAnswer, int points) {
+        QuizQuestion question = new QuizQuestion();
+        question.setId(id);
+        question.setCorrectAnswer(correctAnswer);
+        question.setPoints(points);
+        return question;
+    }
+
+    private static Quiz quiz(int version, QuizQuestion... questions) {
+        Quiz quiz = new Quiz();
+        quiz.setId(1L);
+        ReflectionTestUtils.setField(quiz, "version", version);
+        for (QuizQuestion question : questions) {
+            quiz.addQuestion(question);
+        }
+        return quiz;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.application.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttemptShuffleTest {
+
+    private static final List<Integer> QUESTIONS = IntStream.range(0, 20).boxed().toList();
+
+    @Test
+    void rebuildsTheSameOrderFromTheSeed() {
+        List<Integer> order = AttemptShuffle.questions(QUESTIONS, 42L);
+
+        assertEquals(order, AttemptShuffle.questions(QUESTIONS, 42L));
+        assertEquals(new HashSet<>(QUESTIONS), new HashSet<>(order));
+        assertNotEquals(QUESTIONS, order);
+        assertEquals(AttemptShuffle.options(QUESTIONS, 42L, 7), AttemptShuffle.options(QUESTIONS, 42L, 7));
+        // Without a seed the canonical order is kept
+        assertEquals(QUESTIONS, AttemptShuffle.questions(QUESTIONS, null));
+    }
+
+    @Test
+    void givesAttemptsAndQuestionsDifferentOrders() {
+        Set<List<Integer>> attempts = new HashSet<>();
+        Set<List<Integer>> questions = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            attempts.add(AttemptShuffle.questions(QUESTIONS, (long) i));
+            questions.add(AttemptShuffle.options(QUESTIONS, 42L, i));
+        }
+        assertEquals(20, attempts.size());
+        assertEquals(20, questions.size());
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.application.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedUploadServiceTest {
+
+    private static final int CHUNK = 256 * 1024;
+
+    @TempDir
+    Path uploadDir;
+
+    private LearningMaterialService materialService;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() {
+        materialService = new LearningMaterialService(uploadDir.toString());
+        content = new byte[CHUNK * 5 + 1234];
+        new Random(11).nextBytes(content);
+    }
+
+    @Test
+    void assemblesChunksSentOutOfOrderAndInParallel() throws Exception {
+        ChunkedUploadService service = newService();
+        ChunkedUploadSession session = service.start("teacher", "lecture.mp4", "video/mp4", content.length);
+        assertEquals(6, session.getChunkCount());
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Object>> writes = IntStream.of(5, 2, 0, 4, 1, 3)
+                    .mapToObj(index -> executor.submit(() -> {
+                        service.writeChunk(session, index, chunk(index));
+                        return null;
+                    }))
+                    .toList();
+            for (Future<Object> write : writes) {
+                write.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        service.complete(session);
+        StagedUpload upload = service.claim(session.getId(), "teacher").orElseThrow();
+
+        assertArrayEquals(content, Files.readAllBytes(upload.file()));
+        assertEquals(content.length, upload.size());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)), upload.sha256());
+        assertTrue(service.find(session.getId(), "teacher").isEmpty());
+    }
+
+    @Test
+    void resumesAfterRestartWithOnlyMissingChunks() throws IOException {
+        ChunkedUploadService service = newService();
+        ChunkedUploadSession session = service.start("teacher", "lecture.mp4", "video/mp4", content.length);
+        service.writeChunk(session, 0, chunk(0));
+        service.writeChunk(session, 3, chunk(3));
+
+        ChunkedUploadService restarted = newService();
+        ChunkedUploadSession resumed = restarted.find(session.getId(), "teacher").orElseThrow();
+
+        assertEquals(List.of(0, 3), resumed.getReceived().stream().boxed().toList());
+        assertThrows(IllegalStateException.class, () -> restarted.complete(resumed));
+        for (int index : new int[] {1, 2, 4, 5}) {
+            restarted.writeChunk(resumed, index, chunk(index));
+        }
+        restarted.complete(resumed);
+        assertArrayEquals(content, Files.readAllBytes(restarted.claim(session.getId(), "teacher").orElseThrow().file()));
+    }
+
+    @Test
+    void rejectsShortChunksAndOtherUsers() throws IOException {
+        ChunkedUploadService service = newService();
+        ChunkedUploadSession session = service.start("teacher", "lecture.mp4", "video/mp4", content.length);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(session, 1, new ByteArrayInputStream(new byte[10])));
+        assertFalse(session.isReceived(1));
+        assertTrue(service.find(session.getId(), "student").isEmpty());
+        assertTrue(service.find("../../etc/passwd", "teacher").isEmpty());
+    }
+
+    @Test
+    void capsOpenUploadsPerUserAndReservedSpace() throws IOException {
+        ChunkedUploadService service = newService();
+        ReflectionTestUtils.setField(service, "maxReserved", DataSize.ofBytes(content.length * 4L));
+        ChunkedUploadSession first = service.start("teacher", "a.mp4", "video/mp4", content.length);
+        service.start("teacher", "b.mp4", "video/mp4", content.length);
+
+        assertThrows(IllegalStateException.class, () -> service.start("teacher", "c.mp4", "video/mp4", 1));
+        service.start("other-teacher", "c.mp4", "video/mp4", content.length);
+        assertThrows(IllegalStateException.class, () -> service.start("other-teacher", "d.mp4", "video/mp4", content.length + 1));
+
+        // Cancelling an upload frees its slot and its space
+        service.abort(first);
+        service.start("teacher", "d.mp4", "video/mp4", content.length);
+
+        ChunkedUploadService restarted = newService();
+        restarted.loadOpenSessions();
+        assertThrows(IllegalStateException.class, () -> restarted.start("teacher", "e.mp4", "video/mp4", 1));
+    }
+
+    private ChunkedUploadService newService() {
+        ChunkedUploadService service = new ChunkedUploadService();
+        ReflectionTestUtils.setField(service, "materialService", materialService);
+        ReflectionTestUtils.setField(service, "chunkSize", DataSize.ofBytes(CHUNK));
+        ReflectionTestUtils.setField(service, "maxSize", DataSize.ofGigabytes(1));
+        ReflectionTestUtils.setField(service, "maxOpenPerUser", 2);
+        ReflectionTestUtils.setField(service, "maxReserved", DataSize.ofGigabytes(1));
+        return service;
+    }
+
+    private ByteArrayInputStream chunk(int index) {
+        int start = index * CHUNK;
+        return new ByteArrayInputStream(Arrays.copyOfRange(content, start, Math.min(content.length, start + CHUNK)));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.application.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadBandwidthSchedulerTest {
+
+    private SimpleMeterRegistry registry;
+    private DownloadBandwidthScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        scheduler = new DownloadBandwidthScheduler(registry);
+        ReflectionTestUtils.setField(scheduler, "bandwidth", DataSize.ofMegabytes(2));
+        ReflectionTestUtils.setField(scheduler, "maxStreamsPerUser", 4);
+    }
+
+    @Test
+    void userWithManyStreamsGetsNoMoreThanUserWithOne() throws Exception {
+        AtomicLong greedy = new AtomicLong();
+        AtomicLong modest = new AtomicLong();
+        long deadline = System.nanoTime() + Duration.ofMillis(1500).toNanos();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            threads.add(download("greedy", greedy, deadline));
+        }
+        threads.add(download("modest", modest, deadline));
+        double mostWaiting = 0;
+        while (System.nanoTime() < deadline) {
+            mostWaiting = Math.max(mostWaiting, registry.get("gradsy.download.waiting").gauge().value());
+            Thread.sleep(10);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long total = greedy.get() + modest.get();
+        // 1.5 s at 2 MB/s, plus the initial bursts
+        assertTrue(total < 2 * 1024 * 1024 * 1.5 + 512 * 1024, "sent " + total + " bytes");
+        double ratio = (double) greedy.get() / modest.get();
+        assertTrue(ratio > 0.6 && ratio < 1.6, "greedy/modest = " + ratio);
+        assertEquals(total, registry.get("gradsy.download.sent").counter().count(), 0.0);
+        assertEquals(0, registry.get("gradsy.download.active").gauge().value());
+        assertEquals(0, registry.get("gradsy.download.users").gauge().value());
+        assertTrue(mostWaiting > 0, "streams held back by pacing show up as waiting");
+        assertEquals(0, registry.get("gradsy.download.waiting").gauge().value());
+    }
+
+    @Test
+    void streamsBeyondTheUsersSlotsAreTurnedAwayUntilOneCloses() {
+        ReflectionTestUtils.setField(scheduler, "maxStreamsPerUser", 1);
+
+        Optional<DownloadBandwidthScheduler.Stream> first = scheduler.open("teacher");
+        assertTrue(first.isPresent());
+        assertTrue(scheduler.open("teacher").isEmpty());
+        assertTrue(scheduler.open("student").isPresent());
+        assertEquals(2, registry.get("gradsy.download.active").gauge().value());
+        assertEquals(1, registry.get("gradsy.download.rejected").counter().count());
+
+        first.get().close();
+        first.get().close();
+        Optional<DownloadBandwidthScheduler.Stream> second = scheduler.open("teacher");
+        assertTrue(second.isPresent());
+        second.get().close();
+    }
+
+    private Thread download(String user, AtomicLong sent, long deadline) {
+        Thread thread = new Thread(() -> {
+            byte[] chunk = new byte[8 * 1024];
+            try (DownloadBandwidthScheduler.Stream stream = scheduler.open(user).orElseThrow()) {
+                OutputStream out = stream.wrap(OutputStream.nullOutputStream());
+                while (System.nanoTime() < deadline) {
+                    out.write(chunk);
+                    sent.addAndGet(chunk.length);
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.application.services;
+
+import com.example.application.storage.FileSystemMaterialStore;
+import com.example.application.storage.MaterialStore;
+import com.example.application.storage.StoredFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotFileCacheTest {
+
+    private static final String KEY = "a".repeat(64);
+
+    @TempDir
+    Path uploadDir;
+
+    @TempDir
+    Path staging;
+
+    private MaterialStore store;
+    private SimpleMeterRegistry registry;
+    private HotFileCache cache;
+
+    @BeforeEach
+    void setUp() {
+        store = new FileSystemMaterialStore(uploadDir);
+        registry = new SimpleMeterRegistry();
+        cache = new HotFileCache(store, registry, DataSize.ofKilobytes(64), DataSize.ofKilobytes(16));
+    }
+
+    @Test
+    void cachesFilesFromTheirSecondRequest() throws IOException {
+        StoredFile file = put(KEY, "lecture notes".getBytes());
+
+        assertTrue(cache.get(file).isEmpty());
+        try (HotFileCache.Lease second = cache.get(file).orElseThrow()) {
+            assertTrue(second.content().isDirect());
+        }
+
+        // Served from memory even once the stored file is gone
+        store.delete(KEY);
+        try (HotFileCache.Lease third = cache.get(file).orElseThrow()) {
+            byte[] content = new byte[third.content().remaining()];
+            third.content().get(content);
+            assertEquals("lecture notes", new String(content));
+        }
+
+        assertEquals(1, registry.get("cache.gets").tags("cache", "gradsy.download.cache", "result", "hit").functionCounter().count());
+        assertEquals(13, registry.get("gradsy.download.cache.bytes").gauge().value());
+    }
+
+    @Test
+    void invalidatedAndOversizedFilesAreReadFromStorage() throws IOException {
+        StoredFile file = put(KEY, "v1".getBytes());
+        cache.get(file);
+        cache.get(file).orElseThrow().close();
+
+        cache.invalidate(KEY);
+        assertTrue(cache.get(file).isEmpty());
+
+        StoredFile large = put("b".repeat(64), new byte[32 * 1024]);
+        cache.get(large);
+        assertTrue(cache.get(large).isEmpty());
+    }
+
+    @Test
+    void freesEvictedFilesOnceTheirLastDownloadIsDone() throws IOException {
+        byte[] bytes = new byte[12 * 1024];
+        Arrays.fill(bytes, (byte) 7);
+        StoredFile file = put(KEY, bytes);
+        cache.get(file);
+        HotFileCache.Lease lease = cache.get(file).orElseThrow();
+
+        cache.invalidate(KEY);
+        // Still being sent, so still allocated and readable
+        assertEquals(12 * 1024, registry.get("gradsy.download.cache.allocated").gauge().value());
+        assertEquals(0, registry.get("gradsy.download.cache.bytes").gauge().value());
+        assertEquals(7, lease.content().get(100));
+
+        lease.close();
+        lease.close();
+        assertEquals(0, registry.get("gradsy.download.cache.allocated").gauge().value());
+
+        // Files pushed out to make room are freed as well
+        for (int i = 0; i < 8; i++) {
+            StoredFile other = put(Integer.toString(i).repeat(64), bytes);
+            cache.get(other);
+            cache.get(other).ifPresent(HotFileCache.Lease::close);
+        }
+        assertTrue(registry.get("gradsy.download.cache.allocated").gauge().value() <= 64 * 1024);
+        assertEquals(registry.get("gradsy.download.cache.bytes").gauge().value(),
+                registry.get("gradsy.download.cache.allocated").gauge().value());
+    }
+
+    private StoredFile put(String key, byte[] content) throws IOException {
+        Path staged = Files.write(staging.resolve(key), content);
+        store.put(key, staged);
+        return store.stat(key).orElseThrow();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.application.services;
+
+import com.example.application.storage.FileSystemMaterialStore;
+import com.example.application.storage.MaterialStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntegrityScrubberTest {
+
+    @TempDir
+    Path uploadDir;
+
+    @TempDir
+    Path staging;
+
+    private MaterialStore store;
+    private SimpleMeterRegistry registry;
+    private IntegrityScrubber scrubber;
+
+    @BeforeEach
+    void setUp() {
+        store = new FileSystemMaterialStore(uploadDir);
+        registry = new SimpleMeterRegistry();
+        scrubber = new IntegrityScrubber(registry);
+        ReflectionTestUtils.setField(scrubber, "materialStore", store);
+        ReflectionTestUtils.setField(scrubber, "downloads", new DownloadBandwidthScheduler(registry));
+        ReflectionTestUtils.setField(scrubber, "bytesPerSecond", DataSize.ofMegabytes(0));
+        ReflectionTestUtils.setField(scrubber, "busyDownloads", 8);
+    }
+
+    @Test
+    void reportsFilesThatNoLongerMatchTheirChecksum() throws Exception {
+        String intact = put(sha256("intact notes"), "intact notes".getBytes(StandardCharsets.UTF_8));
+        String truncated = put(sha256("complete notes"), "complete no".getBytes(StandardCharsets.UTF_8));
+        put(MaterialCompressor.gzipKey(intact), gzip("intact notes"));
+        String badVariant = put(MaterialCompressor.gzipKey(truncated), gzip("something else"));
+        put("1700000000000_legacy.pdf", "no checksum".getBytes(StandardCharsets.UTF_8));
+
+        scrubber.runPass();
+
+        List<String> failed = scrubber.getFailures().stream().map(IntegrityScrubber.ScrubFailure::key).sorted().toList();
+        assertEquals(List.of(truncated, badVariant), failed);
+        assertEquals(2, scrubber.getLastPassVerified());
+        assertEquals(2, registry.get("gradsy.storage.scrub.failures").counter().count());
+        assertEquals(2, registry.get("gradsy.storage.scrub.corrupt").gauge().value());
+
+        // Seen again: still one failure each, not a new detection
+        scrubber.runPass();
+        assertEquals(2, registry.get("gradsy.storage.scrub.failures").counter().count());
+
+        // Removed files drop off the report
+        store.delete(truncated);
+        store.delete(badVariant);
+        scrubber.runPass();
+        assertTrue(scrubber.getFailures().isEmpty());
+        assertNotNull(scrubber.getLastPassCompleted());
+    }
+
+    @Test
+    void reportsUnreadableGzipVariants() throws Exception {
+        String key = put(sha256("lecture"), "lecture".getBytes(StandardCharsets.UTF_8));
+        put(MaterialCompressor.gzipKey(key), "not gzip at all".getBytes(StandardCharsets.UTF_8));
+
+        scrubber.runPass();
+
+        IntegrityScrubber.ScrubFailure failure = scrubber.getFailures().get(0);
+        assertEquals(MaterialCompressor.gzipKey(key), failure.key());
+        assertTrue(failure.problem().startsWith("Unreadable"), failure.problem());
+    }
+
+    private String put(String key, byte[] content) throws IOException {
+        store.put(key, Files.write(staging.resolve(key), content));
+        return key;
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(String content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.User;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.example.application.services.QuizFixtures.persistedQuiz;
+import static com.example.application.services.QuizFixtures.question;
+import static com.example.application.services.QuizFixtures.students;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RecordApplicationEvents
+@Import(QuizServiceTestConfiguration.class)
+class ItemAnalysisTest {
+
+    @Autowired
+    private QuizService quizService;
+
+    @Autowired
+    private ItemAnalysis itemAnalysis;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @Test
+    void keepsRunningTotalsThatMatchTheStoredAnswers() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        // Completions of other tests sharing the application context
+        itemAnalysis.flush();
+        Quiz quiz = persistedQuiz(tx, entityManager, "Capitals",
+                question("Capital of France", QuestionGraders.MULTIPLE_CHOICE, "Paris"),
+                question("Capitals in Europe", QuestionGraders.MULTIPLE_SELECT, "Rome;Oslo"));
+        Long france = quiz.getQuestions().get(0).getId();
+        Long europe = quiz.getQuestions().get(1).getId();
+
+        List<Map<Long, String>> submissions = List.of(
+                Map.of(france, "Paris", europe, "Rome;Oslo"),
+                Map.of(france, "Paris", europe, "Rome"),
+                Map.of(france, "Lyon", europe, "Oslo;Rome"),
+                Map.of(france, "Lyon", europe, "Rome;Lima"),
+                Map.of(france, "Paris"));
+        List<User> students = students(tx, entityManager, "analysis-student", submissions.size());
+        for (int i = 0; i < submissions.size(); i++) {
+            Long attempt = quizService.startQuizAttempt(quiz, students.get(i)).getId();
+            quizService.completeQuizAttempt(attempt, submissions.get(i));
+        }
+        assertEquals(1, itemAnalysis.flush());
+        assertEquals(0, itemAnalysis.flush(), "nothing left to write");
+
+        statistics.clear();
+        List<ItemAnalysis.Item> items = itemAnalysis.analyse(quiz.getId());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertSame(items, itemAnalysis.analyse(quiz.getId()));
+
+        ItemAnalysis.Item first = items.get(0);
+        assertEquals(france, first.questionId());
+        assertEquals("Capital of France", first.questionText());
+        assertEquals(5, first.attempts());
+        assertEquals(3, first.correct());
+        assertEquals(0.6, first.difficulty(), 1e-9);
+        assertEquals(Map.of("Paris", 3L, "Lyon", 2L), first.options());
+        // Scores 100, 50, 50, 0, 50: the correct answers come from the stronger attempts
+        assertEquals(pearson(new double[] {1, 1, 0, 0, 1}, new double[] {100, 50, 50, 0, 50}), first.discrimination(), 1e-9);
+
+        ItemAnalysis.Item second = items.get(1);
+        assertEquals(4, second.attempts());
+        assertEquals(2, second.correct());
+        assertEquals(Map.of("Rome", 4L, "Oslo", 2L, "Lima", 1L), second.options());
+
+        // Recomputed from the stored answers, the totals come out the same
+        itemAnalysis.rebuild(quiz.getId());
+        assertEquals(items, itemAnalysis.analyse(quiz.getId()));
+
+        // A completion the rebuild counted already isn't added again when its event comes in late
+        QuizAttemptCompletedEvent late = events.stream(QuizAttemptCompletedEvent.class)
+                .filter(event -> event.quizId().equals(quiz.getId()))
+                .findFirst().orElseThrow();
+        itemAnalysis.attemptCompleted(late);
+        assertEquals(0, itemAnalysis.flush());
+        assertEquals(items, itemAnalysis.analyse(quiz.getId()));
+    }
+
+    @Test
+    void hasNoDiscriminationWhileEveryoneAnswersAlike() {
+        assertTrue(Double.isNaN(ItemAnalysis.pointBiserial(3, 3, 150, 7500, 150)));
+        assertTrue(Double.isNaN(ItemAnalysis.pointBiserial(2, 1, 100, 5000, 50)), "all scores equal");
+        assertEquals(pearson(new double[] {0, 1}, new double[] {20, 80}), ItemAnalysis.pointBiserial(2, 1, 100, 6800, 80), 1e-9);
+    }
+
+    private static double pearson(double[] x, double[] y) {
+        double mx = 0;
+        double my = 0;
+        for (int i = 0; i < x.length; i++) {
+            mx += x[i] / x.length;
+            my += y[i] / y.length;
+        }
+        double sxy = 0;
+        double sxx = 0;
+        double syy = 0;
+        for (int i = 0; i < x.length; i++) {
+            sxy += (x[i] - mx) * (y[i] - my);
+            sxx += (x[i] - mx) * (x[i] - mx);
+            syy += (y[i] - my) * (y[i] - my);
+        }
+        return sxy / Math.sqrt(sxx * syy);
+    }
+}
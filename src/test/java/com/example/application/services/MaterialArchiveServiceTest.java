@@ -0,0 +1,89 @@
+package com.example.application.services;
+
+import com.example.application.data.LearningMaterial;
+import com.example.application.storage.FileSystemMaterialStore;
+import com.example.application.storage.MaterialStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaterialArchiveServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    @TempDir
+    Path staging;
+
+    private MaterialStore store;
+    private MaterialArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() {
+        store = new FileSystemMaterialStore(uploadDir);
+        archiveService = new MaterialArchiveService();
+        ReflectionTestUtils.setField(archiveService, "materialStore", store);
+    }
+
+    @Test
+    void storesCompressedFormatsAndDeflatesTheRest() throws IOException {
+        LearningMaterial notes = material("a".repeat(64), "notes.txt", "text/plain", "derivatives ".repeat(200));
+        LearningMaterial photo = material("b".repeat(64), "board.jpg", "image/jpeg", "not really a jpeg");
+        LearningMaterial sameName = material("c".repeat(64), "notes.txt", "text/plain", "integrals");
+        LearningMaterial noFile = new LearningMaterial();
+        LearningMaterial missing = new LearningMaterial();
+        missing.setFilePath("d".repeat(64));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, archiveService.writeArchive(List.of(notes, photo, sameName, noFile, missing), out));
+
+        Map<String, Integer> methods = new LinkedHashMap<>();
+        Map<String, String> contents = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                methods.put(entry.getName(), entry.getMethod());
+                contents.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        assertEquals(List.of("notes.txt", "board.jpg", "notes (2).txt"), List.copyOf(methods.keySet()));
+        assertEquals(ZipEntry.DEFLATED, methods.get("notes.txt"));
+        assertEquals(ZipEntry.STORED, methods.get("board.jpg"));
+        assertEquals("derivatives ".repeat(200), contents.get("notes.txt"));
+        assertEquals("not really a jpeg", contents.get("board.jpg"));
+        assertEquals("integrals", contents.get("notes (2).txt"));
+    }
+
+    @Test
+    void recognisesCompressedFormats() {
+        assertTrue(MaterialArchiveService.isCompressed("lecture.MP4", null));
+        assertTrue(MaterialArchiveService.isCompressed("slides", "image/png"));
+        assertFalse(MaterialArchiveService.isCompressed("diagram.svg", "image/svg+xml"));
+        assertFalse(MaterialArchiveService.isCompressed("handout.pdf", "application/pdf"));
+    }
+
+    private LearningMaterial material(String key, String fileName, String fileType, String content) throws IOException {
+        Path staged = Files.writeString(staging.resolve(key), content);
+        store.put(key, staged);
+        LearningMaterial material = new LearningMaterial();
+        material.setFilePath(key);
+        material.setFileName(fileName);
+        material.setFileType(fileType);
+        return material;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.application.services;
+
+import com.example.application.storage.FileSystemMaterialStore;
+import com.example.application.storage.MaterialStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaterialCompressorTest {
+
+    private static final String KEY = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @TempDir
+    Path uploadDir;
+
+    private MaterialStore store;
+    private MaterialCompressor compressor;
+
+    @BeforeEach
+    void setUp() {
+        store = new FileSystemMaterialStore(uploadDir);
+        LearningMaterialService materialService = new LearningMaterialService(uploadDir.toString());
+        compressor = new MaterialCompressor();
+        ReflectionTestUtils.setField(compressor, "materialStore", store);
+        ReflectionTestUtils.setField(compressor, "materialService", materialService);
+    }
+
+    @Test
+    void storesGzipVariantOfCompressibleFile() throws IOException {
+        byte[] content = "Lecture 4: thermodynamics and entropy. ".repeat(5000).getBytes(StandardCharsets.UTF_8);
+        store.put(KEY, Files.write(uploadDir.resolve(".staging").resolve("a.part"), content));
+
+        compressor.compress(KEY);
+
+        assertTrue(store.stat(MaterialCompressor.gzipKey(KEY)).orElseThrow().size() < content.length / 10);
+        try (InputStream in = new GZIPInputStream(store.open(MaterialCompressor.gzipKey(KEY), 0, Long.MAX_VALUE))) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void skipsIncompressibleFile() throws IOException {
+        byte[] content = new byte[512 * 1024];
+        new Random(3).nextBytes(content);
+        store.put(KEY, Files.write(uploadDir.resolve(".staging").resolve("a.part"), content));
+
+        compressor.compress(KEY);
+
+        assertTrue(store.stat(MaterialCompressor.gzipKey(KEY)).isEmpty());
+        try (var staged = Files.list(uploadDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+    }
+}
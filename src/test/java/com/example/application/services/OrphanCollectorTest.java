@@ -0,0 +1,141 @@
+package com.example.application.services;
+
+import com.example.application.data.LearningMaterialRepository;
+import com.example.application.storage.FileSystemMaterialStore;
+import com.example.application.storage.MaterialStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrphanCollectorTest {
+
+    private static final String REFERENCED = "1".repeat(64);
+    private static final String ORPHAN = "2".repeat(64);
+    private static final String YOUNG_ORPHAN = "3".repeat(64);
+
+    @TempDir
+    Path uploadDir;
+
+    private MaterialStore store;
+    private LearningMaterialRepository repository;
+    private SimpleMeterRegistry registry;
+    private OrphanCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        store = new FileSystemMaterialStore(uploadDir);
+        repository = mock(LearningMaterialRepository.class);
+        when(repository.findFilePathsAfter(anyString(), any(Pageable.class))).thenAnswer(invocation -> {
+            String after = invocation.getArgument(0);
+            return List.of(REFERENCED, "legacy_notes.pdf").stream().sorted().filter(key -> key.compareTo(after) > 0).toList();
+        });
+        Set<String> referenced = Set.of(REFERENCED, "legacy_notes.pdf");
+        when(repository.countByFilePath(anyString()))
+                .thenAnswer(invocation -> referenced.contains(invocation.<String>getArgument(0)) ? 1L : 0L);
+
+        LearningMaterialService materialService = new LearningMaterialService(uploadDir.toString());
+        ReflectionTestUtils.setField(materialService, "learningMaterialRepository", repository);
+        ReflectionTestUtils.setField(materialService, "materialStore", store);
+
+        registry = new SimpleMeterRegistry();
+        collector = new OrphanCollector(registry);
+        ReflectionTestUtils.setField(collector, "materialStore", store);
+        ReflectionTestUtils.setField(collector, "learningMaterialRepository", repository);
+        ReflectionTestUtils.setField(collector, "materialService", materialService);
+        ReflectionTestUtils.setField(collector, "minAge", Duration.ofHours(1));
+        ReflectionTestUtils.setField(collector, "quarantinePeriod", Duration.ofDays(7));
+        ReflectionTestUtils.setField(collector, "keysPerSecond", 0);
+    }
+
+    @Test
+    void quarantinesOnlyOldUnreferencedFiles() throws Exception {
+        Instant dayAgo = Instant.now().minus(Duration.ofDays(1));
+        store(REFERENCED, 10, dayAgo);
+        store(MaterialCompressor.gzipKey(REFERENCED), 5, dayAgo);
+        store(ORPHAN, 20, dayAgo);
+        store(MaterialCompressor.gzipKey(ORPHAN), 8, dayAgo);
+        store(YOUNG_ORPHAN, 30, Instant.now());
+        store("legacy_notes.pdf", 40, dayAgo);
+        store("legacy_unused.pdf", 50, dayAgo);
+
+        int quarantined = collector.quarantineOrphans(Instant.now());
+
+        assertEquals(3, quarantined);
+        assertTrue(store.stat(REFERENCED).isPresent());
+        assertTrue(store.stat(MaterialCompressor.gzipKey(REFERENCED)).isPresent());
+        assertTrue(store.stat(YOUNG_ORPHAN).isPresent());
+        assertTrue(store.stat("legacy_notes.pdf").isPresent());
+        assertTrue(store.stat(ORPHAN).isEmpty());
+        assertEquals(Set.of(ORPHAN, MaterialCompressor.gzipKey(ORPHAN), "legacy_unused.pdf"),
+                Set.copyOf(store.listQuarantined().map(file -> file.key()).toList()));
+    }
+
+    @Test
+    void purgesAfterQuarantinePeriodAndReportsReclaimedBytes() throws Exception {
+        store(ORPHAN, 20, Instant.now().minus(Duration.ofDays(2)));
+        collector.quarantineOrphans(Instant.now());
+
+        assertEquals(0, collector.purgeExpired(Instant.now()));
+        long reclaimed = collector.purgeExpired(Instant.now().plus(Duration.ofDays(8)));
+
+        assertEquals(20, reclaimed);
+        assertEquals(0, store.listQuarantined().count());
+        assertEquals(20.0, registry.get("gradsy.storage.gc.reclaimed").counter().count());
+    }
+
+    @Test
+    void restoresQuarantinedFileThatIsReferencedAgain() throws Exception {
+        store(REFERENCED, 10, Instant.now().minus(Duration.ofDays(2)));
+        store.quarantine(REFERENCED);
+
+        assertEquals(0, collector.purgeExpired(Instant.now().plus(Duration.ofDays(8))));
+
+        assertTrue(store.stat(REFERENCED).isPresent());
+    }
+
+    @Test
+    void collectsInTheBackgroundOneWalkAtATime() throws Exception {
+        Instant dayAgo = Instant.now().minus(Duration.ofDays(1));
+        store(REFERENCED, 10, dayAgo);
+        store(ORPHAN, 20, dayAgo);
+        store("legacy_notes.pdf", 40, dayAgo);
+        ReflectionTestUtils.setField(collector, "keysPerSecond", 4);
+        try {
+            assertTrue(collector.startCollection());
+            assertFalse(collector.startCollection(), "already running");
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (collector.isRunning() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertFalse(collector.isRunning());
+            assertTrue(store.stat(ORPHAN).isEmpty());
+        } finally {
+            collector.shutdown();
+        }
+    }
+
+    private void store(String key, int size, Instant modified) throws IOException {
+        Path staged = Files.write(uploadDir.resolve(".staging").resolve(key), new byte[size]);
+        store.put(key, staged);
+        Files.setLastModifiedTime(store.localPath(key).orElseThrow(), FileTime.from(modified));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.QuizAttempt;
+import com.example.application.data.SamplingRule;
+import com.example.application.data.User;
+import com.example.application.data.UserRole;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static com.example.application.services.QuizFixtures.question;
+import static com.example.application.services.QuizFixtures.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+@Import(QuizServiceTestConfiguration.class)
+class QuestionBankIndexTest {
+
+    @Autowired
+    private QuizService quizService;
+
+    @Autowired
+    private QuestionBankIndex questionBankIndex;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void drawsEachAttemptsQuestionsFromTheBankAndGradesOnlyThose() {
+        User teacher = user(entityManager, "bank-teacher", UserRole.TEACHER);
+        Quiz bank = new Quiz();
+        bank.setTitle("Algebra bank");
+        for (int i = 0; i < 12; i++) {
+            bank.addQuestion(question("Algebra " + i, "x" + i, Set.of("Algebra"), i % 3 + 1));
+        }
+        bank.addQuestion(question("Geometry", "circle", Set.of("geometry"), 1));
+        quizService.saveQuiz(bank, teacher);
+
+        Quiz quiz = new Quiz();
+        quiz.setTitle("Algebra practice");
+        quiz.addQuestion(question("Own question", "own", Set.of(), null));
+        quiz.setSamplingRules(new ArrayList<>(List.of(new SamplingRule("algebra", null, 3), new SamplingRule("algebra", 2, 2))));
+        quiz = quizService.saveQuiz(quiz, teacher);
+        entityManager.flush();
+
+        assertEquals(12, questionBankIndex.candidates(new SamplingRule("algebra", null, 1)).length);
+        assertEquals(4, questionBankIndex.candidates(new SamplingRule("algebra", 2, 1)).length);
+        long[] drawn = questionBankIndex.sample(quiz.getSamplingRules(), new Random(7));
+        assertArrayEquals(drawn, questionBankIndex.sample(quiz.getSamplingRules(), new Random(7)), "the same seed draws the same questions");
+        assertTrue(drawn.length >= 3 && drawn.length <= 5);
+        assertEquals(drawn.length, Arrays.stream(drawn).distinct().count());
+
+        QuizAttempt attempt = quizService.startQuizAttempt(quiz, user(entityManager, "bank-student", UserRole.STUDENT));
+        entityManager.flush();
+        entityManager.clear();
+        long[] sampled = entityManager.find(QuizAttempt.class, attempt.getId()).getSampledQuestionIds();
+        assertArrayEquals(attempt.getSampledQuestionIds(), sampled);
+
+        QuizSnapshot snapshot = quizService.findSnapshot(quiz.getId()).orElseThrow();
+        List<QuizSnapshot.Question> asked = snapshot.getQuestions(attempt.getShuffleSeed(), sampled);
+        assertEquals(1 + sampled.length, asked.size());
+
+        // Every question asked answered right, plus a bank question that wasn't asked
+        Map<Long, String> answers = new HashMap<>();
+        for (QuizSnapshot.Question question : asked) {
+            answers.put(question.id(), question.text().equals("Own question") ? "own" : "x" + question.text().substring("Algebra ".length()));
+        }
+        bank.getQuestions().stream()
+                .filter(question -> question.getQuestionText().startsWith("Algebra") && Arrays.binarySearch(sampled, question.getId()) < 0)
+                .findFirst()
+                .ifPresent(question -> answers.put(question.getId(), question.getCorrectAnswer()));
+        AnswerKey.Grade grade = quizService.completeQuizAttempt(attempt.getId(), answers);
+        assertEquals(1 + sampled.length, grade.totalPoints());
+        assertEquals(100, grade.score());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.application.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuestionGradersTest {
+
+    private final QuestionGraders graders = new QuestionGraders(new SimpleMeterRegistry());
+
+    @Test
+    void gradesEachQuestionTypeByItsOwnRules() {
+        QuestionGrader.Matcher select = graders.matcher(QuestionGraders.MULTIPLE_SELECT, "Red; green;blue");
+        assertTrue(select.matches("blue;RED;green"));
+        assertFalse(select.matches("red;green"));
+        assertFalse(select.matches("red;green;blue;yellow"));
+
+        QuestionGrader.Matcher numeric = graders.matcher(QuestionGraders.NUMERIC, "9.81 +- 0.05");
+        assertTrue(numeric.matches(" 9.78"));
+        assertFalse(numeric.matches("9.9"));
+        assertFalse(numeric.matches("about ten"));
+        assertTrue(graders.matcher(QuestionGraders.NUMERIC, "42").matches("42.0"));
+
+        QuestionGrader.Matcher regex = graders.matcher(QuestionGraders.REGEX, "colou?r");
+        assertTrue(regex.matches("color "));
+        assertFalse(regex.matches("colors"));
+        assertTrue(graders.matcher(QuestionGraders.REGEX, "a(b").matches("a(b"), "an invalid pattern is matched literally");
+
+        assertTrue(graders.matcher("SHORT_ANSWER", "New  Delhi").matches(" new delhi"));
+        assertTrue(graders.matcher(null, "Paris").matches("PARIS"));
+        assertFalse(graders.matcher("MULTIPLE_CHOICE", null).matches("anything"));
+    }
+
+    @Test
+    void givesUpOnRegexMatchesThatBacktrackForTooLong() {
+        QuestionGrader.Matcher catastrophic = graders.matcher(QuestionGraders.REGEX, "(a+)+$");
+        assertTrue(catastrophic.matches("aaaa"));
+
+        long started = System.nanoTime();
+        assertFalse(catastrophic.matches("a".repeat(40) + "!"));
+        assertTrue(System.nanoTime() - started < QuestionGraders.RegexGrader.MATCH_TIMEOUT.toNanos() * 20,
+                "took " + (System.nanoTime() - started) / 1_000_000 + " ms");
+    }
+
+    @Test
+    void compilesEachCorrectAnswerOnceAndTakesCustomGraders() {
+        assertSame(graders.matcher(QuestionGraders.REGEX, "\\d+"), graders.matcher(QuestionGraders.REGEX, "\\d+"));
+        assertNotSame(graders.matcher(QuestionGraders.REGEX, "\\d+"), graders.matcher(QuestionGraders.REGEX, "\\d*"));
+
+        QuestionGrader prefix = new QuestionGrader() {
+            @Override
+            public String getType() {
+                return "PREFIX";
+            }
+
+            @Override
+            public Matcher compile(String correctAnswer) {
+                return answer -> answer.startsWith(correctAnswer);
+            }
+        };
+        ReflectionTestUtils.setField(graders, "customGraders", List.of(prefix));
+        graders.registerCustomGraders();
+        assertTrue(graders.matcher("PREFIX", "photo").matches("photosynthesis"));
+    }
+}
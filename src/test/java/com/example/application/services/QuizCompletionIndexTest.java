@@ -0,0 +1,66 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.User;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.example.application.services.QuizFixtures.persistedQuiz;
+import static com.example.application.services.QuizFixtures.question;
+import static com.example.application.services.QuizFixtures.students;
+import static org.junit.jupiter.api.Assertions.*;
+
+// The index follows completions after commit, so the test commits its data
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(QuizServiceTestConfiguration.class)
+class QuizCompletionIndexTest {
+
+    @Autowired
+    private QuizService quizService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void answersFromMemoryAndFollowsCompletions() {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<User> students = students(tx, entityManager, "index-student", 2);
+        User first = students.get(0);
+        User second = students.get(1);
+        Quiz quiz = persistedQuiz(tx, entityManager, "Oceans", question("Largest ocean", "Pacific"));
+        Long completedEarlier = quizService.startQuizAttempt(quiz, first).getId();
+        quizService.completeQuizAttempt(completedEarlier, Map.of());
+
+        // Loaded from the database on first use
+        assertTrue(quizService.hasStudentCompletedQuiz(quiz, first));
+        assertFalse(quizService.hasStudentCompletedQuiz(quiz, second));
+
+        Long attempt = quizService.startQuizAttempt(quiz, second).getId();
+        quizService.completeQuizAttempt(attempt, Map.of(quiz.getQuestions().get(0).getId(), "Pacific"));
+
+        statistics.clear();
+        assertTrue(quizService.hasStudentCompletedQuiz(quiz, second));
+        assertTrue(quizService.hasStudentCompletedQuiz(quiz, first));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.application.services;
+
+import com.example.application.data.QuizAttemptRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class QuizDeadlineSchedulerTest {
+
+    @Test
+    void submitsAttemptsWhoseTimeRanOutWhileDown() {
+        QuizAttemptRepository repository = mock(QuizAttemptRepository.class);
+        QuizAttemptRepository.OpenAttempt overdue = openAttempt(1L, LocalDateTime.now().minusHours(2), 60);
+        QuizAttemptRepository.OpenAttempt running = openAttempt(2L, LocalDateTime.now(), 60);
+        when(repository.findOpenTimedAttempts()).thenReturn(List.of(overdue, running));
+        AnswerAutosave autosave = mock(AnswerAutosave.class);
+        when(autosave.restore(anyCollection())).thenReturn(Map.of(1L, Map.of(10L, "saved answer")));
+        SubmissionPipeline pipeline = mock(SubmissionPipeline.class);
+        when(pipeline.submit(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        QuizDeadlineScheduler scheduler = new QuizDeadlineScheduler(new SimpleMeterRegistry(), Duration.ofMillis(20));
+        ReflectionTestUtils.setField(scheduler, "quizAttemptRepository", repository);
+        ReflectionTestUtils.setField(scheduler, "answerAutosave", autosave);
+        ReflectionTestUtils.setField(scheduler, "submissionPipeline", pipeline);
+        ReflectionTestUtils.setField(scheduler, "grace", Duration.ofSeconds(30));
+        try {
+            scheduler.start();
+            scheduler.track(3L, LocalDateTime.now().minusMinutes(5), 5);
+            scheduler.cancel(3L);
+
+            verify(pipeline, timeout(5000)).submit(eq(1L), eq(Map.of(10L, "saved answer")));
+            verify(autosave, timeout(5000)).discard(1L);
+            verify(pipeline, after(200).never()).submit(eq(2L), any());
+            verify(pipeline, never()).submit(eq(3L), any());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void retriesAttemptsWhoseSubmissionFailedUnlessAlreadySubmitted() {
+        AnswerAutosave autosave = mock(AnswerAutosave.class);
+        when(autosave.restore(anyCollection())).thenReturn(Map.of());
+        SubmissionPipeline pipeline = mock(SubmissionPipeline.class);
+        when(pipeline.submit(eq(1L), any())).thenReturn(CompletableFuture.failedFuture(new DataAccessResourceFailureException("rolled back")));
+        when(pipeline.submit(eq(2L), any())).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("already submitted")));
+
+        QuizDeadlineScheduler scheduler = new QuizDeadlineScheduler(new SimpleMeterRegistry(), Duration.ofMillis(20));
+        ReflectionTestUtils.setField(scheduler, "answerAutosave", autosave);
+        ReflectionTestUtils.setField(scheduler, "submissionPipeline", pipeline);
+        scheduler.expire(List.of(1L, 2L));
+
+        // Only the attempt still open is back on the wheel
+        TimingWheel<?> wheel = (TimingWheel<?>) ReflectionTestUtils.getField(scheduler, "wheel");
+        assertEquals(1, wheel.size());
+        scheduler.cancel(1L);
+        assertEquals(0, wheel.size());
+    }
+
+    private static QuizAttemptRepository.OpenAttempt openAttempt(Long id, LocalDateTime startTime, int durationMinutes) {
+        QuizAttemptRepository.OpenAttempt attempt = mock(QuizAttemptRepository.OpenAttempt.class);
+        when(attempt.getId()).thenReturn(id);
+        when(attempt.getStartTime()).thenReturn(startTime);
+        when(attempt.getDurationMinutes()).thenReturn(durationMinutes);
+        return attempt;
+    }
+}
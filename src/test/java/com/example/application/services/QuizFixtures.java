@@ -0,0 +1,99 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.QuizQuestion;
+import com.example.application.data.User;
+import com.example.application.data.UserRole;
+import jakarta.persistence.EntityManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Users, quizzes and questions for the tests run against {@link QuizServiceTestConfiguration}.
+ */
+final class QuizFixtures {
+
+    // Committed fixtures outlive their test, so generated names must not repeat within the context
+    private static final AtomicInteger TEACHERS = new AtomicInteger();
+
+    private QuizFixtures() {
+    }
+
+    /**
+     * A user persisted with {@code entityManager}, which must be in a transaction.
+     */
+    static User user(EntityManager entityManager, String username, UserRole role) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("secret");
+        user.setEmail(username + "@example.com");
+        user.setRole(role);
+        entityManager.persist(user);
+        return user;
+    }
+
+    /**
+     * A quiz with {@code questions}, not yet persisted.
+     */
+    static Quiz quiz(String title, User createdBy, QuizQuestion... questions) {
+        Quiz quiz = new Quiz();
+        quiz.setTitle(title);
+        quiz.setCreatedBy(createdBy);
+        for (QuizQuestion question : questions) {
+            quiz.addQuestion(question);
+        }
+        return quiz;
+    }
+
+    /**
+     * A quiz with {@code questions}, created by a new teacher and committed in its own transaction
+     * for tests whose code under test runs after commit or on other threads.
+     */
+    static Quiz persistedQuiz(TransactionTemplate tx, EntityManager entityManager, String title, QuizQuestion... questions) {
+        return tx.execute(status -> {
+            Quiz quiz = quiz(title, user(entityManager, "teacher-" + TEACHERS.incrementAndGet(), UserRole.TEACHER), questions);
+            entityManager.persist(quiz);
+            return quiz;
+        });
+    }
+
+    /**
+     * {@code count} students named {@code prefix-0} onwards, committed in their own transaction.
+     */
+    static List<User> students(TransactionTemplate tx, EntityManager entityManager, String prefix, int count) {
+        return tx.execute(status -> {
+            List<User> students = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                students.add(user(entityManager, prefix + "-" + i, UserRole.STUDENT));
+            }
+            return students;
+        });
+    }
+
+    static QuizQuestion question(String text, String type, String correctAnswer) {
+        QuizQuestion question = new QuizQuestion();
+        question.setQuestionText(text);
+        question.setQuestionType(type);
+        question.setCorrectAnswer(correctAnswer);
+        return question;
+    }
+
+    static QuizQuestion question(String text, String correctAnswer) {
+        return question(text, "SHORT_ANSWER", correctAnswer);
+    }
+
+    /**
+     * A question bank question.
+     */
+    static QuizQuestion question(String text, String correctAnswer, Set<String> tags, Integer difficulty) {
+        QuizQuestion question = question(text, correctAnswer);
+        question.setTags(new HashSet<>(tags));
+        question.setDifficulty(difficulty);
+        return question;
+    }
+}
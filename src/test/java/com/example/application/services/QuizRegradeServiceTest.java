@@ -0,0 +1,98 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.QuizAttempt;
+import com.example.application.data.QuizAttemptAnswerRepository;
+import com.example.application.data.QuizQuestion;
+import com.example.application.data.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.application.services.QuizFixtures.persistedQuiz;
+import static com.example.application.services.QuizFixtures.question;
+import static com.example.application.services.QuizFixtures.students;
+import static org.junit.jupiter.api.Assertions.*;
+
+// The job runs on its own threads, so the data it regrades has to be committed
+@DataJpaTest(properties = {
+        "spring.sql.init.mode=never",
+        "app.quiz.regrade.chunk-size=7",
+        "app.quiz.regrade.parallelism=3"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({QuizServiceTestConfiguration.class, QuizRegradeService.class})
+class QuizRegradeServiceTest {
+
+    private static final int ATTEMPTS = 40;
+
+    @Autowired
+    private QuizService quizService;
+
+    @Autowired
+    private QuizRegradeService regradeService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void rescoresCompletedAttemptsAfterTheAnswerKeyIsFixed() throws InterruptedException {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Quiz quiz = persistedQuiz(tx, entityManager, "Capitals",
+                question("Capital of Australia", "Sydney"), question("Capital of France", "Paris"));
+        List<QuizQuestion> questions = new ArrayList<>(quiz.getQuestions());
+        questions.sort(Comparator.comparing(QuizQuestion::getId));
+        Long australia = questions.get(0).getId();
+        Long france = questions.get(1).getId();
+
+        List<User> students = students(tx, entityManager, "regrade-student", ATTEMPTS + 1);
+
+        // Every student answers France right; half of them also answer Australia right
+        List<Long> attemptIds = new ArrayList<>();
+        for (int i = 0; i < ATTEMPTS; i++) {
+            String answer = i % 2 == 0 ? "Canberra" : "Sydney";
+            QuizAttempt attempt = quizService.startQuizAttempt(quiz, students.get(i));
+            quizService.completeQuizAttempt(attempt.getId(), Map.of(australia, answer, france, "Paris"));
+            attemptIds.add(attempt.getId());
+        }
+        // One attempt still in progress must be left alone
+        Long openAttempt = quizService.startQuizAttempt(quiz, students.get(ATTEMPTS)).getId();
+
+        tx.executeWithoutResult(status -> entityManager
+                .createQuery("UPDATE QuizQuestion q SET q.correctAnswer = 'Canberra' WHERE q.id = :id")
+                .setParameter("id", australia)
+                .executeUpdate());
+
+        QuizRegradeService.RegradeJob job = regradeService.startRegrade(quiz.getId());
+        assertTrue(job.await(30, TimeUnit.SECONDS));
+        assertEquals(QuizRegradeService.RegradeJob.State.COMPLETED, job.getState(), job.getFailure());
+        assertEquals(ATTEMPTS, job.getTotal());
+        assertEquals(ATTEMPTS, job.getChanged());
+        assertEquals(0, job.getSkipped());
+
+        for (int i = 0; i < ATTEMPTS; i++) {
+            QuizAttempt attempt = quizService.findAttemptByIdWithDetails(attemptIds.get(i)).orElseThrow();
+            assertEquals(i % 2 == 0 ? 100 : 50, attempt.getScore());
+            QuizAttemptAnswerRepository.AnswerView answer = quizService.findAnswersForAttempt(attempt.getId()).get(australia);
+            assertEquals(i % 2 == 0, answer.isCorrect());
+        }
+        QuizAttempt open = quizService.findAttemptByIdWithDetails(openAttempt).orElseThrow();
+        assertFalse(open.isCompleted());
+        assertNull(open.getScore());
+    }
+}
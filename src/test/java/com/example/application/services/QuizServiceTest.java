@@ -0,0 +1,206 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.QuizAnswer;
+import com.example.application.data.QuizAttempt;
+import com.example.application.data.QuizAttemptAnswerRepository;
+import com.example.application.data.QuizQuestion;
+import com.example.application.data.User;
+import com.example.application.data.UserRole;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.application.services.QuizFixtures.question;
+import static com.example.application.services.QuizFixtures.quiz;
+import static com.example.application.services.QuizFixtures.user;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.example.application.services.QuizServiceTest$AnswerInserts",
+        "spring.sql.init.mode=never"
+})
+@Import(QuizServiceTestConfiguration.class)
+class QuizServiceTest {
+
+    private static final int QUESTIONS = 30;
+
+    @Autowired
+    private QuizService quizService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+    private QuizAttempt attempt;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        User teacher = user(entityManager, "teacher", UserRole.TEACHER);
+        User student = user(entityManager, "student", UserRole.STUDENT);
+        Quiz quiz = quiz("Algebra", teacher);
+        for (int i = 0; i < QUESTIONS; i++) {
+            quiz.addQuestion(question("Question " + i, "answer " + i));
+        }
+        entityManager.persist(quiz);
+        attempt = quizService.startQuizAttempt(quiz, student);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void storesAllAnswersOfASubmissionInOneBatch() {
+        Map<Long, String> answers = new HashMap<>();
+        Quiz quiz = quizService.findByIdWithQuestions(attempt.getQuiz().getId()).orElseThrow();
+        for (QuizQuestion question : quiz.getQuestions()) {
+            answers.put(question.getId(), question.getQuestionText().equals("Question 0") ? "wrong" : question.getCorrectAnswer());
+        }
+        entityManager.clear();
+
+        statistics.clear();
+        AnswerInserts.prepared.set(0);
+        AnswerKey.Grade grade = quizService.completeQuizAttempt(attempt.getId(), answers);
+        entityManager.flush();
+
+        assertEquals(QUESTIONS, statistics.getEntityInsertCount());
+        // A batched insert is prepared once for the whole batch; without batching every answer
+        // would be a statement of its own
+        assertEquals(1, AnswerInserts.prepared.get());
+        assertEquals(96, grade.score());
+
+        entityManager.clear();
+        QuizAttempt completed = quizService.findAttemptByIdWithDetails(attempt.getId()).orElseThrow();
+        assertTrue(completed.isCompleted());
+        assertEquals(96, completed.getScore());
+
+        entityManager.clear();
+        statistics.clear();
+        Map<Long, QuizAttemptAnswerRepository.AnswerView> stored = quizService.findAnswersForAttempt(attempt.getId());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(answers.keySet(), stored.keySet());
+        for (Map.Entry<Long, String> answer : answers.entrySet()) {
+            assertEquals(answer.getValue(), stored.get(answer.getKey()).getAnswerText());
+            assertEquals(!answer.getValue().equals("wrong"), stored.get(answer.getKey()).isCorrect());
+        }
+    }
+
+    @Test
+    void rejectsASecondSubmission() {
+        quizService.completeQuizAttempt(attempt.getId(), Map.of());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThrows(IllegalStateException.class, () -> quizService.completeQuizAttempt(attempt.getId(), Map.of()));
+    }
+
+    @Test
+    void movesTheQuizVersionWhenOnlyAQuestionChanges() {
+        Long quizId = attempt.getQuiz().getId();
+        Quiz quiz = quizService.findByIdWithQuestions(quizId).orElseThrow();
+        int version = quiz.getVersion();
+        QuizQuestion first = quiz.getQuestions().stream()
+                .filter(question -> question.getQuestionText().equals("Question 0"))
+                .findFirst()
+                .orElseThrow();
+        QuizAttempt earlier = quizService.startQuizAttempt(quiz, attempt.getStudent());
+        entityManager.flush();
+        assertEquals(0, quizService.completeQuizAttempt(earlier.getId(), Map.of(first.getId(), "edited")).score());
+
+        first.setCorrectAnswer("edited");
+        Quiz saved = quizService.saveQuiz(quiz, quiz.getCreatedBy());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertTrue(saved.getVersion() > version);
+        assertTrue(quizService.completeQuizAttempt(attempt.getId(), Map.of(first.getId(), "edited")).score() > 0);
+    }
+
+    @Test
+    void sharesOneSnapshotUntilTheQuizIsSaved() {
+        Long quizId = attempt.getQuiz().getId();
+        QuizSnapshot snapshot = quizService.findSnapshot(quizId).orElseThrow();
+        assertEquals(QUESTIONS, snapshot.getQuestions().size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getQuestions().clear());
+
+        statistics.clear();
+        assertSame(snapshot, quizService.findSnapshot(quizId).orElseThrow());
+        // Only the version is read
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        Quiz quiz = quizService.findByIdWithQuestions(quizId).orElseThrow();
+        quiz.setTitle("Linear Algebra");
+        quizService.saveQuiz(quiz, quiz.getCreatedBy());
+        entityManager.flush();
+
+        QuizSnapshot published = quizService.findSnapshot(quizId).orElseThrow();
+        assertEquals("Linear Algebra", published.getTitle());
+        assertTrue(published.getVersion() > snapshot.getVersion());
+        // Sessions still holding the earlier snapshot see the quiz as they started it
+        assertEquals("Algebra", snapshot.getTitle());
+        assertTrue(quizService.findSnapshot(-1L).isEmpty());
+    }
+
+    @Test
+    void readsAQuizWithItsAnswerOptionsInTwoQueriesWhateverItsSize() {
+        User creator = entityManager.find(User.class, attempt.getStudent().getId());
+        for (int size : new int[] {1, 10, 40}) {
+            Quiz quiz = quiz("Quiz of " + size, creator);
+            for (int i = 0; i < size; i++) {
+                QuizQuestion question = question("Question " + i, "MULTIPLE_CHOICE", "option 0");
+                // Stored out of order
+                for (int o = size % 5 + 1; o >= 0; o--) {
+                    QuizAnswer option = new QuizAnswer();
+                    option.setAnswerText("option " + o);
+                    option.setDisplayOrder(o);
+                    question.addAnswer(option);
+                }
+                quiz.addQuestion(question);
+            }
+            entityManager.persist(quiz);
+            entityManager.flush();
+            entityManager.clear();
+
+            statistics.clear();
+            QuizSnapshot snapshot = quizService.findSnapshot(quiz.getId()).orElseThrow();
+            // The version lookup, then the quiz with its questions and all their options
+            assertEquals(3, statistics.getPrepareStatementCount(), "statements for " + size + " questions");
+            assertEquals(0, statistics.getEntityLoadCount());
+            assertEquals(size, snapshot.getQuestions().size());
+            for (QuizSnapshot.Question question : snapshot.getQuestions()) {
+                assertEquals(size % 5 + 2, question.choices().size());
+                assertEquals("option 0", question.choices().get(0));
+                assertEquals("option " + (size % 5 + 1), question.choices().get(question.choices().size() - 1));
+            }
+        }
+    }
+
+    /**
+     * Counts how often the answer insert is prepared, unaffected by whatever else the shared
+     * session factory runs.
+     */
+    public static class AnswerInserts implements StatementInspector {
+
+        static final AtomicInteger prepared = new AtomicInteger();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.toLowerCase().startsWith("insert into quiz_attempt_answers")) {
+                prepared.incrementAndGet();
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.application.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * {@link QuizService} and the services it grades and indexes through, for {@code @DataJpaTest}s.
+ * Tests needing more import them alongside.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+@Import({QuizService.class, AnswerKeyCache.class, QuizCompletionIndex.class, QuizSnapshotCache.class, QuestionBankIndex.class,
+        QuestionGraders.class, ItemAnalysis.class, SimpleMeterRegistry.class})
+public class QuizServiceTestConfiguration {
+}
@@ -0,0 +1,127 @@
+package com.example.application.services;
+
+import com.example.application.data.Quiz;
+import com.example.application.data.QuizAttempt;
+import com.example.application.data.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.application.services.QuizFixtures.persistedQuiz;
+import static com.example.application.services.QuizFixtures.question;
+import static com.example.application.services.QuizFixtures.students;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// Submissions are committed by the pipeline's own thread, so test data has to be committed too
+@DataJpaTest(properties = {
+        "spring.sql.init.mode=never",
+        "app.quiz.submission.max-batch-size=16"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({QuizServiceTestConfiguration.class, SubmissionPipeline.class})
+class SubmissionPipelineTest {
+
+    private static final int STUDENTS = 50;
+
+    @Autowired
+    private QuizService quizService;
+
+    @Autowired
+    private SubmissionPipeline pipeline;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void commitsABurstOfSubmissionsInGroups() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Quiz quiz = persistedQuiz(tx, entityManager, "Rivers", question("Longest river", "Nile"));
+        Long questionId = quiz.getQuestions().get(0).getId();
+
+        List<Long> attemptIds = new ArrayList<>();
+        for (User student : students(tx, entityManager, "pipeline-student", STUDENTS)) {
+            attemptIds.add(quizService.startQuizAttempt(quiz, student).getId());
+        }
+
+        List<CompletableFuture<AnswerKey.Grade>> results = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            results.add(pipeline.submit(attemptIds.get(i), Map.of(questionId, i % 5 == 0 ? "Amazon" : "nile")));
+        }
+        CompletableFuture<AnswerKey.Grade> again = pipeline.submit(attemptIds.get(1), Map.of(questionId, "Amazon"));
+
+        for (int i = 0; i < STUDENTS; i++) {
+            assertEquals(i % 5 == 0 ? 0 : 100, results.get(i).get(30, TimeUnit.SECONDS).score());
+            QuizAttempt attempt = quizService.findAttemptByIdWithDetails(attemptIds.get(i)).orElseThrow();
+            assertTrue(attempt.isCompleted());
+            assertEquals(i % 5 == 0 ? 0 : 100, attempt.getScore());
+        }
+        ExecutionException duplicate = assertThrows(ExecutionException.class, () -> again.get(30, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, duplicate.getCause());
+
+        // Every submission went through a group, never larger than the configured batch size
+        assertEquals(STUDENTS + 1, (long) registry.get("gradsy.quiz.submissions.batch").summary().totalAmount());
+        assertTrue(registry.get("gradsy.quiz.submissions.batch").summary().max() <= 16);
+        assertEquals(0, pipeline.getQueueDepth());
+    }
+
+    @Test
+    void failsOnlyTheSubmissionThatCannotBeStored() throws Exception {
+        QuizService failingForOne = mock(QuizService.class);
+        when(failingForOne.completeQuizAttempts(any())).thenAnswer(call -> {
+            Map<Long, Map<Long, String>> submissions = call.getArgument(0);
+            if (submissions.containsKey(2L)) {
+                throw new IllegalStateException("rolled back");
+            }
+            if (submissions.containsKey(9L)) {
+                throw new AssertionError("not a RuntimeException");
+            }
+            Map<Long, AnswerKey.Grade> grades = new HashMap<>();
+            submissions.keySet().forEach(attemptId -> grades.put(attemptId, new AnswerKey.Grade(new String[0], new boolean[0], 1, 1)));
+            return grades;
+        });
+        SubmissionPipeline isolated = new SubmissionPipeline(new SimpleMeterRegistry(), 100, 10);
+        ReflectionTestUtils.setField(isolated, "quizService", failingForOne);
+
+        assertThrows(ExecutionException.class, () -> isolated.submit(4L, Map.of(1L, "x".repeat(4001))).get(1, TimeUnit.SECONDS));
+        // Queued before the writer starts, so they are committed as one group
+        List<CompletableFuture<AnswerKey.Grade>> group = List.of(
+                isolated.submit(1L, Map.of()), isolated.submit(2L, Map.of()), isolated.submit(3L, Map.of()));
+        isolated.start();
+        try {
+            assertEquals(100, group.get(0).get(30, TimeUnit.SECONDS).score());
+            assertThrows(ExecutionException.class, () -> group.get(1).get(30, TimeUnit.SECONDS));
+            assertEquals(100, group.get(2).get(30, TimeUnit.SECONDS).score());
+
+            // An Error fails its group without stopping the writer
+            assertThrows(ExecutionException.class, () -> isolated.submit(9L, Map.of()).get(30, TimeUnit.SECONDS));
+            assertEquals(100, isolated.submit(5L, Map.of()).get(30, TimeUnit.SECONDS).score());
+        } finally {
+            isolated.shutdown();
+        }
+    }
+}
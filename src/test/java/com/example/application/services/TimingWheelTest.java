@@ -0,0 +1,49 @@
+package com.example.application.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private static final long TICK = 1_000;
+
+    @Test
+    void expiresEachKeyOnItsTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0);
+        wheel.schedule("soon", 2 * TICK);
+        wheel.schedule("later", 5 * TICK + 1);
+        // Beyond one turn of the wheel, so it shares a bucket with "soon"
+        wheel.schedule("next turn", 10 * TICK);
+        wheel.schedule("overdue", -5 * TICK);
+
+        assertEquals(List.of("overdue"), wheel.advance(TICK));
+        assertEquals(List.of("soon"), wheel.advance(2 * TICK));
+        assertEquals(List.of(), wheel.advance(5 * TICK));
+        assertEquals(List.of("later"), wheel.advance(6 * TICK));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("next turn"), wheel.advance(10 * TICK));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelsAndReschedules() {
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK, 8, 0);
+        for (long key = 0; key < 100; key++) {
+            wheel.schedule(key, (key % 20 + 1) * TICK);
+        }
+        for (long key = 0; key < 100; key += 2) {
+            assertTrue(wheel.cancel(key));
+        }
+        assertFalse(wheel.cancel(0L));
+        wheel.schedule(1L, 50 * TICK);
+
+        // Catching up after a long pause still finds everything that is due
+        List<Long> expired = wheel.advance(30 * TICK);
+        assertEquals(49, expired.size());
+        assertTrue(expired.stream().allMatch(key -> key % 2 == 1 && key != 1));
+        assertEquals(List.of(1L), wheel.advance(50 * TICK));
+    }
+}
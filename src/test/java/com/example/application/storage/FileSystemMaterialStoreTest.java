@@ -0,0 +1,75 @@
+package com.example.application.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemMaterialStoreTest {
+
+    private static final String KEY = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @TempDir
+    Path root;
+
+    @TempDir
+    Path staging;
+
+    @Test
+    void storesContentKeysUnderTheirHashPrefix() throws IOException {
+        FileSystemMaterialStore store = new FileSystemMaterialStore(root);
+
+        store.put(KEY, staged("test"));
+
+        assertTrue(Files.isRegularFile(root.resolve("9f").resolve("86").resolve(KEY)));
+        assertEquals(4, store.stat(KEY).orElseThrow().size());
+        try (InputStream in = store.open(KEY, 1, 2)) {
+            assertEquals("es", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void keepsExistingObjectAndDropsStagedDuplicate() throws IOException {
+        FileSystemMaterialStore store = new FileSystemMaterialStore(root);
+        store.put(KEY, staged("test"));
+
+        Path duplicate = staged("test");
+        store.put(KEY, duplicate);
+
+        assertFalse(Files.exists(duplicate));
+        assertTrue(store.stat(KEY).isPresent());
+    }
+
+    @Test
+    void movesFlatFilesIntoShardsOnStartup() throws IOException {
+        Files.writeString(root.resolve("0b1e_notes.pdf"), "legacy");
+        Files.createDirectories(root.resolve(".staging"));
+        Files.writeString(root.resolve(".staging").resolve("upload-1.part"), "partial");
+
+        FileSystemMaterialStore store = new FileSystemMaterialStore(root);
+
+        assertFalse(Files.exists(root.resolve("0b1e_notes.pdf")));
+        assertEquals(6, store.stat("0b1e_notes.pdf").orElseThrow().size());
+        assertTrue(Files.exists(root.resolve(".staging").resolve("upload-1.part")));
+    }
+
+    @Test
+    void rejectsKeysOutsideTheStore() {
+        FileSystemMaterialStore store = new FileSystemMaterialStore(root);
+
+        assertThrows(IllegalArgumentException.class, () -> store.stat("../application.properties"));
+        assertThrows(IllegalArgumentException.class, () -> store.stat(".staging"));
+    }
+
+    private Path staged(String content) throws IOException {
+        Path file = Files.createTempFile(staging, "staged-", ".part");
+        Files.writeString(file, content);
+        return file;
+    }
+}
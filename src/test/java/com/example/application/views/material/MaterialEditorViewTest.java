@@ -4,9 +4,9 @@ import com.example.application.data.LearningMaterial;
 import com.example.application.data.User;
 import com.example.application.security.SecurityService;
 import com.example.application.services.LearningMaterialService;
+import com.example.application.services.StagedUpload;
+import com.example.application.views.upload.DiskUploadBuffer;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
-import com.vaadin.flow.component.upload.receivers.FileData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -18,6 +18,8 @@ import org.springframework.security.core.userdetails.UserDetails;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -28,17 +30,13 @@ class MaterialEditorViewTest {
     @Mock private LearningMaterialService materialService;
     @Mock private SecurityService securityService;
     @Mock private UserDetails userDetails;
-    @Mock private MemoryBuffer buffer; // Mock MemoryBuffer
-    @Mock private FileData fileData; // Mock FileData
+    @Mock private DiskUploadBuffer buffer; // Mock DiskUploadBuffer
 
     private MaterialEditorView view;
     
     // Argument captors for verification
     @Captor ArgumentCaptor<LearningMaterial> materialCaptor;
-    @Captor ArgumentCaptor<InputStream> inputStreamCaptor;
-    @Captor ArgumentCaptor<String> fileNameCaptor;
-    @Captor ArgumentCaptor<String> mimeTypeCaptor;
-    @Captor ArgumentCaptor<Long> fileSizeCaptor;
+    @Captor ArgumentCaptor<StagedUpload> uploadCaptor;
     @Captor ArgumentCaptor<User> userCaptor;
 
     @Test
@@ -91,13 +89,11 @@ class MaterialEditorViewTest {
         byte[] fileBytes = testContent.getBytes();
         String fileName = "test.txt";
         String mimeType = "text/plain";
-        InputStream testInputStream = new ByteArrayInputStream(fileBytes);
+        Path stagedFile = Files.createTempFile("upload-", ".part");
+        Files.write(stagedFile, fileBytes);
 
-        when(buffer.getInputStream()).thenReturn(new ByteArrayInputStream(fileBytes)); // Return new stream each time
-        when(buffer.getFileData()).thenReturn(fileData);
-        when(buffer.getFileName()).thenReturn(fileName);
-        when(fileData.getMimeType()).thenReturn(mimeType);
-        // No direct getLength in FileData mock, we calculate from bytes
+        when(buffer.hasFile()).thenReturn(true);
+        when(buffer.getUpload()).thenReturn(new StagedUpload(stagedFile, fileName, mimeType, fileBytes.length, "0".repeat(64)));
 
         // Set form fields
         view.getTitleField().setValue("Test Title");
@@ -109,21 +105,18 @@ class MaterialEditorViewTest {
         // Verify that the material service is called with correct arguments
         verify(materialService).saveLearningMaterial(
             materialCaptor.capture(), 
-            inputStreamCaptor.capture(), 
-            fileNameCaptor.capture(), 
-            mimeTypeCaptor.capture(), 
-            fileSizeCaptor.capture(), 
+            uploadCaptor.capture(), 
             userCaptor.capture()
         );
 
         // Assert captured values
         assertEquals("Test Title", materialCaptor.getValue().getTitle());
         assertEquals("Test Description", materialCaptor.getValue().getDescription());
-        assertEquals(fileName, fileNameCaptor.getValue());
-        assertEquals(mimeType, mimeTypeCaptor.getValue());
-        assertEquals(fileBytes.length, fileSizeCaptor.getValue());
-        // Assert InputStream content if needed (read bytes and compare)
-        assertArrayEquals(fileBytes, inputStreamCaptor.getValue().readAllBytes());
+        assertEquals(fileName, uploadCaptor.getValue().fileName());
+        assertEquals(mimeType, uploadCaptor.getValue().contentType());
+        assertEquals(fileBytes.length, uploadCaptor.getValue().size());
+        // Assert staged file content (the view hands over the file, not a copy of its bytes)
+        assertArrayEquals(fileBytes, Files.readAllBytes(uploadCaptor.getValue().file()));
         assertEquals(mockUser.getUsername(), userCaptor.getValue().getUsername());
 
     }
@@ -137,9 +130,8 @@ class MaterialEditorViewTest {
         mockUser.setUsername("testuser");
         
         // Setup Buffer Mocks for NO file upload scenario
-        when(buffer.getInputStream()).thenReturn(null);
-        when(buffer.getFileData()).thenReturn(null);
-        when(buffer.getFileName()).thenReturn(null);
+        when(buffer.hasFile()).thenReturn(false);
+        when(buffer.getUpload()).thenReturn(null);
 
         // Set form fields
         view.getTitleField().setValue("No File Title");
@@ -151,10 +143,7 @@ class MaterialEditorViewTest {
         // Verify service call with null/0 for file details
         verify(materialService).saveLearningMaterial(
             materialCaptor.capture(), 
-            isNull(), // Expect null InputStream
-            isNull(), // Expect null filename
-            isNull(), // Expect null mimeType
-            eq(0L),   // Expect 0 fileSize
+            (StagedUpload) isNull(), // Expect no staged upload
             userCaptor.capture()
         );
 
@@ -181,6 +170,6 @@ class MaterialEditorViewTest {
     }
 
     // Helper methods in MaterialEditorView needed for testing:
-    // public void setBufferForTesting(MemoryBuffer buffer) { this.buffer = buffer; }
+    // public void setBufferForTesting(DiskUploadBuffer buffer) { this.buffer = buffer; }
     // public Button getSaveButton() { /* return reference to save button */ }
 } 
\ No newline at end of file